@@ -0,0 +1,31 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.User;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * User 实体监听器：在 INSERT / UPDATE 之前把用户名和邮箱写入布隆过滤器
+ *
+ * 挂在实体上可以覆盖所有写入路径（包括异步任务和批量导入），
+ * 在写入前更新保证并发校验不会漏判；事务回滚留下的位只会增加误判，不影响正确性。
+ * 由 Hibernate 通过 Spring 的 BeanContainer 获取，因此可以注入 Spring Bean；
+ * 监听器在 EntityManagerFactory 初始化时创建，依赖需要延迟注入以避免循环依赖。
+ */
+@Component
+public class UserBloomFilterListener {
+
+    private final UserBloomFilters userBloomFilters;
+
+    public UserBloomFilterListener(@Lazy UserBloomFilters userBloomFilters) {
+        this.userBloomFilters = userBloomFilters;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void beforeWrite(User user) {
+        userBloomFilters.put(user);
+    }
+}
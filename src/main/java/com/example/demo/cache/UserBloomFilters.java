@@ -0,0 +1,154 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.projection.UserKeys;
+import com.example.demo.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * 用户名 / 邮箱布隆过滤器
+ *
+ * 创建用户前的唯一性校验先查询布隆过滤器，只有"可能存在"时才执行 exists 查询，
+ * 常见的"不存在"情况不再访问数据库。
+ *
+ * 过滤器在应用启动后从数据库预热，之后由 {@link UserBloomFilterListener} 在每次写入前更新。
+ * 预热完成之前所有判断都会回退到数据库查询。
+ *
+ * 指标：
+ * - users.bloom.checks{filter, result=negative|maybe}：过滤器判断次数
+ * - users.bloom.false.positives{filter}：过滤器判断可能存在、数据库确认不存在的次数
+ * - users.bloom.fpp{filter, type=estimated|observed}：按置位比例估算的误判率与实际观测到的误判率
+ */
+@Slf4j
+@Component
+public class UserBloomFilters {
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Filter usernames;
+    private final Filter emails;
+
+    private volatile boolean ready;
+
+    public UserBloomFilters(UserRepository userRepository,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.users.bloom.expected-insertions:1000000}") long expectedInsertions,
+                            @Value("${app.users.bloom.fpp:0.01}") double fpp) {
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.usernames = new Filter("username", new BloomFilter(expectedInsertions, fpp), meterRegistry);
+        this.emails = new Filter("email", new BloomFilter(expectedInsertions, fpp), meterRegistry);
+        log.info("布隆过滤器初始化，预期容量: {}, 预期误判率: {}, 位数: {}, 哈希函数数: {}",
+                expectedInsertions, fpp, usernames.bloomFilter.bitSize(), usernames.bloomFilter.hashCount());
+    }
+
+    /**
+     * 启动完成后从数据库预热
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        long startTime = System.currentTimeMillis();
+        long count = readOnlyTransaction.execute(status -> {
+            long seeded = 0;
+            try (Stream<UserKeys> keys = userRepository.streamAllKeys()) {
+                for (UserKeys key : (Iterable<UserKeys>) keys::iterator) {
+                    usernames.add(key.getUsername());
+                    emails.add(key.getEmail());
+                    seeded++;
+                }
+            }
+            return seeded;
+        });
+        ready = true;
+        log.info("布隆过滤器预热完成，用户数: {}, 耗时: {}ms", count, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 记录即将写入的用户
+     */
+    public void put(User user) {
+        usernames.add(user.getUsername());
+        emails.add(user.getEmail());
+    }
+
+    /**
+     * 判断用户名是否已存在，过滤器判断"可能存在"时才调用 dbCheck
+     */
+    public boolean usernameExists(String username, Predicate<String> dbCheck) {
+        return usernames.exists(username, dbCheck);
+    }
+
+    /**
+     * 判断邮箱是否已存在，过滤器判断"可能存在"时才调用 dbCheck
+     */
+    public boolean emailExists(String email, Predicate<String> dbCheck) {
+        return emails.exists(email, dbCheck);
+    }
+
+    private final class Filter {
+
+        private final BloomFilter bloomFilter;
+        private final Counter negatives;
+        private final Counter maybes;
+        private final Counter falsePositives;
+
+        private Filter(String name, BloomFilter bloomFilter, MeterRegistry meterRegistry) {
+            this.bloomFilter = bloomFilter;
+            this.negatives = meterRegistry.counter("users.bloom.checks", "filter", name, "result", "negative");
+            this.maybes = meterRegistry.counter("users.bloom.checks", "filter", name, "result", "maybe");
+            this.falsePositives = meterRegistry.counter("users.bloom.false.positives", "filter", name);
+            Gauge.builder("users.bloom.fpp", bloomFilter, BloomFilter::expectedFpp)
+                    .tag("filter", name).tag("type", "estimated")
+                    .register(meterRegistry);
+            Gauge.builder("users.bloom.fpp", this, Filter::observedFpp)
+                    .tag("filter", name).tag("type", "observed")
+                    .register(meterRegistry);
+        }
+
+        private void add(String value) {
+            if (value != null) {
+                bloomFilter.add(value);
+            }
+        }
+
+        private boolean exists(String value, Predicate<String> dbCheck) {
+            if (!ready || value == null) {
+                return dbCheck.test(value);
+            }
+            if (!bloomFilter.mightContain(value)) {
+                negatives.increment();
+                return false;
+            }
+            maybes.increment();
+            boolean exists = dbCheck.test(value);
+            if (!exists) {
+                falsePositives.increment();
+            }
+            return exists;
+        }
+
+        /**
+         * 实际误判率 = 误判次数 / 真实不存在的判断次数
+         */
+        private double observedFpp() {
+            double trueNegatives = negatives.count() + falsePositives.count();
+            return trueNegatives == 0 ? 0 : falsePositives.count() / trueNegatives;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 用户读穿透缓存
+ *
+ * 以 ID 为主键、用户名为二级索引，容量受 max-size 限制（LRU 淘汰），每条记录在 ttl 后过期。
+ * 缓存中保存的是用户的副本，调用方修改返回对象不会影响缓存；
+ * 同时可以惰性保存预序列化的 JSON，热点读取时既不访问数据库也不再执行 Jackson 序列化。
+ *
+ * 写操作通过 {@link #evict(User)} 失效缓存：立即失效一次，事务结束后再失效一次，
+ * 避免事务提交前被并发读取重新加载旧数据。
+ *
+ * 命中/未命中/淘汰统计通过 Micrometer 的 cache.gets、cache.evictions、cache.size 指标暴露（tag cache=users）。
+ */
+@Slf4j
+@Component
+public class UserCache {
+
+    private static final String CACHE_NAME = "users";
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    /**
+     * 访问顺序的 LinkedHashMap 实现 LRU，所有访问都持有 lock（不用 synchronized，避免虚拟线程 pinning）
+     */
+    private final LinkedHashMap<Long, Entry> entries;
+    private final Map<String, Long> idsByUsername = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 每次失效都会递增，加载前后比较该值，防止把失效前读到的旧数据写回缓存
+     */
+    private final AtomicLong invalidationEpoch = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public UserCache(ObjectMapper objectMapper,
+                     MeterRegistry meterRegistry,
+                     @Value("${app.users.cache.enabled:true}") boolean enabled,
+                     @Value("${app.users.cache.max-size:10000}") int maxSize,
+                     @Value("${app.users.cache.ttl:5m}") Duration ttl) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > UserCache.this.maxSize) {
+                    idsByUsername.remove(eldest.getValue().user.getUsername());
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .tag("cache", CACHE_NAME).tag("result", "hit")
+                .description("用户缓存命中次数")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                .tag("cache", CACHE_NAME).tag("result", "miss")
+                .description("用户缓存未命中次数")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum)
+                .tag("cache", CACHE_NAME)
+                .description("用户缓存因容量或过期被淘汰的次数")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, UserCache::size)
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+
+        log.info("用户缓存初始化，enabled: {}, maxSize: {}, ttl: {}", enabled, maxSize, ttl);
+    }
+
+    /**
+     * 按 ID 读取，未命中时通过 loader 从数据库加载并写入缓存
+     */
+    public Optional<Entry> getById(Long id, Supplier<Optional<User>> loader) {
+        if (!enabled) {
+            return loader.get().map(this::newEntry);
+        }
+        lock.lock();
+        try {
+            Entry entry = liveEntry(id);
+            if (entry != null) {
+                hits.increment();
+                return Optional.of(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return load(loader);
+    }
+
+    /**
+     * 按用户名读取，未命中时通过 loader 从数据库加载并写入缓存
+     */
+    public Optional<Entry> getByUsername(String username, Supplier<Optional<User>> loader) {
+        if (!enabled) {
+            return loader.get().map(this::newEntry);
+        }
+        lock.lock();
+        try {
+            Long id = idsByUsername.get(username);
+            Entry entry = id != null ? liveEntry(id) : null;
+            if (entry != null) {
+                hits.increment();
+                return Optional.of(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return load(loader);
+    }
+
+    /**
+     * 失效与该用户相关的缓存（按 ID 和用户名）
+     *
+     * 在事务中调用时，事务结束后会再失效一次。
+     */
+    public void evict(User user) {
+        if (!enabled || user == null) {
+            return;
+        }
+        invalidate(user.getId(), user.getUsername());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Long id = user.getId();
+            String username = user.getUsername();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(id, username);
+                }
+            });
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            invalidationEpoch.incrementAndGet();
+            entries.clear();
+            idsByUsername.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Optional<Entry> load(Supplier<Optional<User>> loader) {
+        long epoch = invalidationEpoch.get();
+        Optional<Entry> loaded = loader.get().map(this::newEntry);
+        loaded.ifPresent(entry -> {
+            lock.lock();
+            try {
+                // 加载期间发生过失效，数据可能已过时，只返回不缓存
+                if (invalidationEpoch.get() == epoch) {
+                    entries.put(entry.user.getId(), entry);
+                    idsByUsername.put(entry.user.getUsername(), entry.user.getId());
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+        return loaded;
+    }
+
+    private void invalidate(Long id, String username) {
+        lock.lock();
+        try {
+            invalidationEpoch.incrementAndGet();
+            if (id != null) {
+                Entry removed = entries.remove(id);
+                if (removed != null) {
+                    idsByUsername.remove(removed.user.getUsername());
+                }
+            }
+            if (username != null) {
+                Long cachedId = idsByUsername.remove(username);
+                if (cachedId != null) {
+                    entries.remove(cachedId);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回未过期的缓存项，已过期的顺便移除；调用方需持有 lock
+     */
+    private Entry liveEntry(Long id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.loadedAt > ttlNanos) {
+            entries.remove(id);
+            idsByUsername.remove(entry.user.getUsername());
+            evictions.increment();
+            return null;
+        }
+        return entry;
+    }
+
+    private Entry newEntry(User user) {
+        return new Entry(copyOf(user), objectMapper);
+    }
+
+    private static User copyOf(User user) {
+        return new User(user.getId(), user.getUsername(), user.getEmail(),
+                user.getPhone(), user.getAge(), user.getActive(), user.getVersion());
+    }
+
+    /**
+     * 缓存项：用户副本 + 惰性生成的预序列化 JSON
+     */
+    public static final class Entry {
+
+        private final User user;
+        private final ObjectMapper objectMapper;
+        private final long loadedAt = System.nanoTime();
+        private volatile SerializableString json;
+
+        private Entry(User user, ObjectMapper objectMapper) {
+            this.user = user;
+            this.objectMapper = objectMapper;
+        }
+
+        /**
+         * 返回用户的新副本
+         */
+        public User getUser() {
+            return copyOf(user);
+        }
+
+        /**
+         * 返回预序列化的用户 JSON，首次访问时生成
+         */
+        public SerializableString getJson() {
+            SerializableString current = json;
+            if (current == null) {
+                try {
+                    // 并发首次访问时可能重复序列化，结果相同，无需加锁
+                    current = new SerializedString(objectMapper.writeValueAsString(user));
+                    // 预先编码为 UTF-8 字节，后续写出直接复制
+                    current.asUnquotedUTF8();
+                    json = current;
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("用户序列化失败: " + user.getId(), e);
+                }
+            }
+            return current;
+        }
+    }
+}
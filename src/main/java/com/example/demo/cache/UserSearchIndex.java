@@ -0,0 +1,459 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.projection.UserKeys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * 用户名 / 邮箱的内存搜索索引（输入提示）
+ *
+ * - 关键字不少于 3 个字符：三元组（trigram）倒排索引，取关键字各三元组中最短的倒排表作为候选，
+ *   再逐个校验用户名或邮箱是否包含关键字（子串匹配，忽略大小写）
+ * - 1~2 个字符：按用户名 / 邮箱的前缀匹配（有序 Map 的区间查询）
+ * 结果中前缀匹配的排在前面，直接从有序 Map 中按小写用户名 / 邮箱的顺序取出；
+ * 不足 limit 个时再按倒排表中的顺序（大致为创建顺序）补充子串匹配，凑满 limit 个即停止扫描，
+ * 因此常见的三元组（如邮箱中的 "com"）不会导致扫描整个倒排表。子串匹配部分不排序。
+ *
+ * 每个用户占一个槽位，倒排表存放槽位号（int），更新和删除只把旧槽位标记为失效，
+ * 失效槽位多于有效槽位时整体重建。用户名 / 邮箱另存一份小写副本，校验候选时不再逐个转换。
+ * 用户数超过 max-entries 时释放索引，搜索回退到数据库查询（与索引相同：不足 3 个字符为前缀匹配）；
+ * 之后有用户被删除时，定期检查用户数，降到 max-entries 以下后重新构建索引。
+ *
+ * 内存上限：失效槽位在压缩前仍占用数组和倒排表，槽位数最多约为 max(2 × 有效用户数, 有效用户数 + 1024)，
+ * 即最坏情况下约为 max-entries 个用户所需内存的 2 倍。
+ *
+ * 启动后从数据库预热，之后由 {@link UserSearchListener} 在事务提交后增量更新。
+ *
+ * 指标：
+ * users.search{source=index|database} - 搜索耗时（发布 p50 / p95 / p99）
+ */
+@Slf4j
+@Component
+public class UserSearchIndex {
+
+    private static final int MIN_TRIGRAM_QUERY = 3;
+    private static final int COMPACT_MIN_DEAD = 1024;
+    private static final char KEY_SEPARATOR = '\0';
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int maxEntries;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Timer indexTimer;
+    private final Timer databaseTimer;
+
+    private final Map<Long, Integer> slotById = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private long[] ids = new long[1024];
+    private String[] usernames = new String[1024];
+    private String[] emails = new String[1024];
+    private String[] lowerUsernames = new String[1024];
+    private String[] lowerEmails = new String[1024];
+    private int nextSlot;
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private final TreeMap<String, Integer> prefixes = new TreeMap<>();
+
+    private volatile boolean ready;
+    private volatile boolean overflowed;
+    /**
+     * 超过上限后是否有用户被删除，只有删除才可能让用户数回到上限以下
+     */
+    private volatile boolean removedSinceOverflow;
+
+    public UserSearchIndex(UserRepository userRepository,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.users.search.max-entries:500000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxEntries = maxEntries;
+        this.indexTimer = searchTimer(meterRegistry, "index");
+        this.databaseTimer = searchTimer(meterRegistry, "database");
+    }
+
+    private static Timer searchTimer(MeterRegistry meterRegistry, String source) {
+        return Timer.builder("users.search")
+                .tag("source", source)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 启动完成后从数据库构建索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long startTime = System.currentTimeMillis();
+        // 构建期间的搜索回退到数据库，不等待写锁
+        ready = false;
+        lock.writeLock().lock();
+        try {
+            overflowed = false;
+            removedSinceOverflow = false;
+            clear();
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<UserKeys> keys = userRepository.streamAllKeys()) {
+                    for (UserKeys key : (Iterable<UserKeys>) keys::iterator) {
+                        if (!put(key.getId(), key.getUsername(), key.getEmail())) {
+                            break;
+                        }
+                    }
+                }
+            });
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("用户搜索索引构建完成，用户数: {}, 三元组数: {}, 耗时: {}ms{}", slotById.size(), postings.size(),
+                System.currentTimeMillis() - startTime, overflowed ? "（超过上限，搜索回退到数据库）" : "");
+    }
+
+    /**
+     * 超过上限后有用户被删除时，检查用户数是否已降到上限以下，是则重新构建索引
+     */
+    @Scheduled(fixedDelayString = "${app.users.search.overflow-check-ms:60000}",
+            initialDelayString = "${app.users.search.overflow-check-ms:60000}")
+    public void rebuildIfShrunk() {
+        if (!overflowed || !removedSinceOverflow) {
+            return;
+        }
+        removedSinceOverflow = false;
+        long count = userRepository.count();
+        if (count < maxEntries) {
+            log.info("用户数 {} 已低于搜索索引上限 {}，重新构建索引", count, maxEntries);
+            rebuild();
+        }
+    }
+
+    /**
+     * 记录一次写入，当前有事务时在提交后应用
+     */
+    public void recordChange(User user, boolean removed) {
+        if (user.getId() == null) {
+            return;
+        }
+        Change change = new Change(user.getId(), user.getUsername(), user.getEmail(), removed);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(List.of(change));
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingChanges pending && pending.owner() == this) {
+                pending.changes.add(change);
+                return;
+            }
+        }
+        PendingChanges pending = new PendingChanges();
+        pending.changes.add(change);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+
+    /**
+     * 搜索用户名或邮箱包含关键字的用户（不足 3 个字符时为前缀匹配）
+     *
+     * @return 匹配的用户（id / username / email），最多 limit 条
+     */
+    public List<Map<String, Object>> search(String query, int limit) {
+        String keyword = query == null ? "" : query.strip().toLowerCase(Locale.ROOT);
+        if (keyword.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        if (!ready || overflowed) {
+            return databaseTimer.record(() -> (keyword.length() < MIN_TRIGRAM_QUERY
+                    ? userRepository.findViewsByUsernameStartingWithIgnoreCaseOrEmailStartingWithIgnoreCaseOrderByIdAsc(
+                            keyword, keyword, Limit.of(limit))
+                    : userRepository.findViewsByUsernameContainingIgnoreCaseOrEmailContainingIgnoreCaseOrderByIdAsc(
+                            keyword, keyword, Limit.of(limit)))
+                    .stream()
+                    .map(view -> result(view.id(), view.username(), view.email()))
+                    .toList());
+        }
+        long startTime = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            List<Integer> matches = keyword.length() < MIN_TRIGRAM_QUERY
+                    ? prefixMatches(keyword, limit)
+                    : substringMatches(keyword, limit);
+            return matches.stream().map(slot -> result(ids[slot], usernames[slot], emails[slot])).toList();
+        } finally {
+            lock.readLock().unlock();
+            indexTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 索引状态与搜索耗时分位数（毫秒）
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("latencyMs", Map.of("index", percentiles(indexTimer), "database", percentiles(databaseTimer)));
+        lock.readLock().lock();
+        try {
+            status.put("ready", ready);
+            status.put("overflowed", overflowed);
+            status.put("entries", slotById.size());
+            status.put("maxEntries", maxEntries);
+            status.put("trigrams", postings.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        return status;
+    }
+
+    private static Map<String, Double> percentiles(Timer timer) {
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            percentiles.put("p" + Math.round(value.percentile() * 100),
+                    Math.round(value.value(TimeUnit.MILLISECONDS) * 1000) / 1000.0);
+        }
+        return percentiles;
+    }
+
+    private List<Integer> prefixMatches(String keyword, int limit) {
+        return prefixMatches(keyword, limit, new HashSet<>());
+    }
+
+    /**
+     * 用户名或邮箱以关键字开头的用户，按匹配到的小写用户名 / 邮箱排序，最多 limit 个
+     *
+     * @param matched 已选中的槽位，同一用户的用户名和邮箱都匹配时只计一次
+     */
+    private List<Integer> prefixMatches(String keyword, int limit, Set<Integer> matched) {
+        List<Integer> result = new ArrayList<>();
+        for (Integer slot : prefixes.subMap(keyword, keyword + Character.MAX_VALUE).values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (live.get(slot) && matched.add(slot)) {
+                result.add(slot);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 先取前缀匹配，不足 limit 个时再扫描最短的倒排表补充子串匹配，凑满即停止
+     */
+    private List<Integer> substringMatches(String keyword, int limit) {
+        IntList candidates = null;
+        for (long trigram : trigrams(keyword)) {
+            IntList posting = postings.get(trigram);
+            if (posting == null) {
+                return List.of();
+            }
+            if (candidates == null || posting.size < candidates.size) {
+                candidates = posting;
+            }
+        }
+        Set<Integer> matched = new HashSet<>();
+        List<Integer> result = prefixMatches(keyword, limit, matched);
+        for (int i = 0; i < candidates.size && result.size() < limit; i++) {
+            int slot = candidates.values[i];
+            if (live.get(slot) && !matched.contains(slot)
+                    && (lowerUsernames[slot].contains(keyword) || lowerEmails[slot].contains(keyword))) {
+                result.add(slot);
+            }
+        }
+        return result;
+    }
+
+    private void apply(List<Change> changes) {
+        lock.writeLock().lock();
+        try {
+            for (Change change : changes) {
+                if (overflowed) {
+                    removedSinceOverflow |= change.removed();
+                    continue;
+                }
+                remove(change.id());
+                if (!change.removed()) {
+                    put(change.id(), change.username(), change.email());
+                }
+            }
+            if (nextSlot - slotById.size() > Math.max(slotById.size(), COMPACT_MIN_DEAD)) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 写入一个用户，超过上限时释放整个索引并返回 false
+     */
+    private boolean put(Long id, String username, String email) {
+        if (overflowed) {
+            return false;
+        }
+        if (username == null) {
+            return true;
+        }
+        if (slotById.size() >= maxEntries) {
+            log.warn("用户搜索索引超过上限 {}，释放索引，搜索回退到数据库", maxEntries);
+            overflowed = true;
+            clear();
+            return false;
+        }
+        int slot = nextSlot++;
+        if (slot >= ids.length) {
+            int length = ids.length * 2;
+            ids = Arrays.copyOf(ids, length);
+            usernames = Arrays.copyOf(usernames, length);
+            emails = Arrays.copyOf(emails, length);
+            lowerUsernames = Arrays.copyOf(lowerUsernames, length);
+            lowerEmails = Arrays.copyOf(lowerEmails, length);
+        }
+        String lowerUsername = username.toLowerCase(Locale.ROOT);
+        String lowerEmail = email == null ? "" : email.toLowerCase(Locale.ROOT);
+        ids[slot] = id;
+        usernames[slot] = username;
+        emails[slot] = email;
+        lowerUsernames[slot] = lowerUsername;
+        lowerEmails[slot] = lowerEmail;
+        live.set(slot);
+        slotById.put(id, slot);
+
+        Set<Long> keys = trigrams(lowerUsername);
+        prefixes.put(lowerUsername + KEY_SEPARATOR + slot, slot);
+        if (email != null) {
+            keys.addAll(trigrams(lowerEmail));
+            prefixes.put(lowerEmail + KEY_SEPARATOR + slot, slot);
+        }
+        for (long key : keys) {
+            postings.computeIfAbsent(key, k -> new IntList()).add(slot);
+        }
+        return true;
+    }
+
+    private void remove(Long id) {
+        Integer slot = slotById.remove(id);
+        if (slot == null) {
+            return;
+        }
+        live.clear(slot);
+        prefixes.remove(lowerUsernames[slot] + KEY_SEPARATOR + slot);
+        if (emails[slot] != null) {
+            prefixes.remove(lowerEmails[slot] + KEY_SEPARATOR + slot);
+        }
+    }
+
+    /**
+     * 去掉失效槽位：按现有的有效用户重新分配槽位并重建倒排表
+     */
+    private void compact() {
+        long[] liveIds = new long[slotById.size()];
+        String[] liveUsernames = new String[liveIds.length];
+        String[] liveEmails = new String[liveIds.length];
+        int count = 0;
+        for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+            liveIds[count] = ids[slot];
+            liveUsernames[count] = usernames[slot];
+            liveEmails[count] = emails[slot];
+            count++;
+        }
+        clear();
+        for (int i = 0; i < count; i++) {
+            put(liveIds[i], liveUsernames[i], liveEmails[i]);
+        }
+        log.debug("用户搜索索引已压缩，用户数: {}", count);
+    }
+
+    private void clear() {
+        slotById.clear();
+        live.clear();
+        postings.clear();
+        prefixes.clear();
+        ids = new long[1024];
+        usernames = new String[1024];
+        emails = new String[1024];
+        lowerUsernames = new String[1024];
+        lowerEmails = new String[1024];
+        nextSlot = 0;
+    }
+
+    /**
+     * 文本中所有连续 3 个字符组成的三元组，每个三元组按字符编码拼成一个 long
+     */
+    static Set<Long> trigrams(String text) {
+        Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + MIN_TRIGRAM_QUERY <= text.length(); i++) {
+            trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return trigrams;
+    }
+
+    private static Map<String, Object> result(Long id, String username, String email) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", id);
+        result.put("username", username);
+        result.put("email", email);
+        return result;
+    }
+
+    /**
+     * 只追加的 int 列表，作为倒排表
+     */
+    private static final class IntList {
+
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private record Change(Long id, String username, String email, boolean removed) {
+    }
+
+    /**
+     * 一个事务内的所有写入，提交后一次性应用到索引
+     */
+    private final class PendingChanges implements TransactionSynchronization {
+
+        private final List<Change> changes = new ArrayList<>();
+
+        private UserSearchIndex owner() {
+            return UserSearchIndex.this;
+        }
+
+        @Override
+        public void afterCommit() {
+            apply(changes);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * User 实体监听器：把写入交给 {@link UserSearchIndex}，事务提交后增量更新搜索索引
+ *
+ * 监听器在 EntityManagerFactory 初始化时创建，依赖需要延迟注入以避免循环依赖。
+ */
+@Component
+public class UserSearchListener {
+
+    private final UserSearchIndex userSearchIndex;
+
+    public UserSearchListener(@Lazy UserSearchIndex userSearchIndex) {
+        this.userSearchIndex = userSearchIndex;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void afterWrite(User user) {
+        userSearchIndex.recordChange(user, false);
+    }
+
+    @PostRemove
+    public void afterRemove(User user) {
+        userSearchIndex.recordChange(user, true);
+    }
+}
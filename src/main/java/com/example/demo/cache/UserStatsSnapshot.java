@@ -0,0 +1,253 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.projection.UserStatsRow;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * 用户统计的内存列式快照
+ *
+ * 每个用户占一个槽位，年龄存放在 int[] 中（空槽位和未填写年龄用负数标记），启用状态存放在 BitSet 中。
+ * - 用户总数、启用人数在写入时增量维护，查询为 O(1)
+ * - 年龄分布对 int[] 做一次顺序扫描，不访问数据库
+ *
+ * 启动后从数据库预热（只读 id / age / active 三列），之后由 {@link UserStatsListener} 在事务提交后增量更新，
+ * 回滚的写入不会进入快照。预热在写锁内完成，预热期间提交的写入在预热结束后按提交顺序应用。
+ * 快照只反映已提交的数据，事务内刚写入的用户在提交前不计入。
+ */
+@Slf4j
+@Component
+public class UserStatsSnapshot {
+
+    private static final int FREE = -1;
+    private static final int NO_AGE = -2;
+    private static final int AGE_BUCKET_WIDTH = 10;
+    private static final int AGE_BUCKETS = 11;
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private final BitSet used = new BitSet();
+    private final BitSet active = new BitSet();
+    private int[] ages = new int[1024];
+    private int highWater;
+    private int total;
+    private int activeCount;
+
+    private volatile boolean ready;
+
+    public UserStatsSnapshot(UserRepository userRepository,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        Arrays.fill(ages, FREE);
+        meterRegistry.gauge("users.stats.total", this, snapshot -> snapshot.ready ? snapshot.total : Double.NaN);
+        meterRegistry.gauge("users.stats.active", this, snapshot -> snapshot.ready ? snapshot.activeCount : Double.NaN);
+    }
+
+    /**
+     * 启动完成后从数据库预热
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        long startTime = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<UserStatsRow> rows = userRepository.streamAllStats()) {
+                    rows.forEach(row -> upsert(row.getId(), row.getAge(), Boolean.TRUE.equals(row.getActive())));
+                }
+            });
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("用户统计快照预热完成，用户数: {}, 耗时: {}ms", total, System.currentTimeMillis() - startTime);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 记录一次写入，当前有事务时在提交后应用
+     */
+    public void recordChange(User user, boolean removed) {
+        if (user.getId() == null) {
+            return;
+        }
+        Change change = new Change(user.getId(), user.getAge(), Boolean.TRUE.equals(user.getActive()), removed);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(List.of(change));
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingChanges pending && pending.owner() == this) {
+                pending.changes.add(change);
+                return;
+            }
+        }
+        PendingChanges pending = new PendingChanges();
+        pending.changes.add(change);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+
+    /**
+     * 用户总数，快照未就绪时返回 -1
+     */
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return ready ? total : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 用户统计：总数、启用比例、年龄分布（按 10 岁分桶，100 岁及以上归入最后一桶）
+     */
+    public Map<String, Object> stats() {
+        if (!ready) {
+            throw new IllegalStateException("用户统计快照尚未就绪");
+        }
+        lock.readLock().lock();
+        try {
+            int[] buckets = new int[AGE_BUCKETS];
+            int withAge = 0;
+            long ageSum = 0;
+            int minAge = Integer.MAX_VALUE;
+            int maxAge = Integer.MIN_VALUE;
+            int[] column = ages;
+            for (int i = 0; i < highWater; i++) {
+                int age = column[i];
+                if (age >= 0) {
+                    withAge++;
+                    ageSum += age;
+                    minAge = Math.min(minAge, age);
+                    maxAge = Math.max(maxAge, age);
+                    buckets[Math.min(age / AGE_BUCKET_WIDTH, AGE_BUCKETS - 1)]++;
+                }
+            }
+
+            Map<String, Integer> distribution = new LinkedHashMap<>();
+            for (int i = 0; i < AGE_BUCKETS; i++) {
+                String label = i == AGE_BUCKETS - 1 ? (i * AGE_BUCKET_WIDTH) + "+"
+                        : (i * AGE_BUCKET_WIDTH) + "-" + (i * AGE_BUCKET_WIDTH + AGE_BUCKET_WIDTH - 1);
+                distribution.put(label, buckets[i]);
+            }
+            Map<String, Object> age = new LinkedHashMap<>();
+            age.put("count", withAge);
+            age.put("unknown", total - withAge);
+            age.put("min", withAge == 0 ? null : minAge);
+            age.put("max", withAge == 0 ? null : maxAge);
+            age.put("mean", withAge == 0 ? null : Math.round(ageSum * 100.0 / withAge) / 100.0);
+            age.put("distribution", distribution);
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("total", total);
+            stats.put("active", activeCount);
+            stats.put("inactive", total - activeCount);
+            stats.put("activeRatio", total == 0 ? 0.0 : Math.round(activeCount * 10000.0 / total) / 10000.0);
+            stats.put("age", age);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(List<Change> changes) {
+        lock.writeLock().lock();
+        try {
+            for (Change change : changes) {
+                if (change.removed()) {
+                    remove(change.id());
+                } else {
+                    upsert(change.id(), change.age(), change.active());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void upsert(Long id, Integer age, boolean isActive) {
+        Integer slot = slots.get(id);
+        if (slot == null) {
+            slot = used.nextClearBit(0);
+            if (slot >= ages.length) {
+                int oldLength = ages.length;
+                ages = Arrays.copyOf(ages, oldLength * 2);
+                Arrays.fill(ages, oldLength, ages.length, FREE);
+            }
+            used.set(slot);
+            slots.put(id, slot);
+            highWater = Math.max(highWater, slot + 1);
+            total++;
+        } else if (active.get(slot)) {
+            activeCount--;
+        }
+        ages[slot] = age != null && age >= 0 ? age : NO_AGE;
+        active.set(slot, isActive);
+        if (isActive) {
+            activeCount++;
+        }
+    }
+
+    private void remove(Long id) {
+        Integer slot = slots.remove(id);
+        if (slot == null) {
+            return;
+        }
+        if (active.get(slot)) {
+            activeCount--;
+        }
+        active.clear(slot);
+        used.clear(slot);
+        ages[slot] = FREE;
+        total--;
+    }
+
+    private record Change(Long id, Integer age, boolean active, boolean removed) {
+    }
+
+    /**
+     * 一个事务内的所有写入，提交后一次性应用到快照
+     */
+    private final class PendingChanges implements TransactionSynchronization {
+
+        private final List<Change> changes = new ArrayList<>();
+
+        private UserStatsSnapshot owner() {
+            return UserStatsSnapshot.this;
+        }
+
+        @Override
+        public void afterCommit() {
+            apply(changes);
+        }
+    }
+}
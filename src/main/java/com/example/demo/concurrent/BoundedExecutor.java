@@ -0,0 +1,178 @@
+package com.example.demo.concurrent;
+
+import com.example.demo.util.ContextSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 有界线程池：饱和时按 {@link SaturationPolicy} 处理新任务，由 {@link ExecutorRegistry} 创建
+ *
+ * 饱和有两种情况：
+ * - 队列已满且线程数已达上限
+ * - 预计排队时间超过 max-queue-wait（大于 0 时）。预计排队时间 = 队列长度 × 任务平均执行时间 ÷ 最大线程数，
+ *   平均执行时间是最近任务执行时间的指数移动平均。队列还没满但排在后面的任务已经等不起时，提前按策略处理
+ *
+ * 任务继承提交线程的上下文（{@link ContextSnapshot}），并记录排队和执行时间。
+ */
+class BoundedExecutor extends ThreadPoolTaskExecutor {
+
+    private static final long BLOCK_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final String name;
+    private final SaturationPolicy policy;
+    private final long maxQueueWaitNanos;
+    private final long blockTimeoutNanos;
+
+    private final AtomicLong averageRunNanos = new AtomicLong();
+    private volatile AdmissionQueue queue;
+
+    private final Timer waitTimer;
+    private final Timer runTimer;
+    private final Counter rejected;
+    private final Counter callerRuns;
+    private final Counter blocked;
+
+    BoundedExecutor(String name, ExecutorRegistry.PoolSpec spec, long maxQueueWaitNanos, long blockTimeoutNanos,
+                    MeterRegistry meterRegistry) {
+        this.name = name;
+        this.policy = spec.saturation();
+        this.maxQueueWaitNanos = maxQueueWaitNanos;
+        this.blockTimeoutNanos = blockTimeoutNanos;
+
+        this.waitTimer = Timer.builder("executor.task.wait").tag("name", name).register(meterRegistry);
+        this.runTimer = Timer.builder("executor.task.run").tag("name", name).register(meterRegistry);
+        this.rejected = meterRegistry.counter("executor.rejected", "name", name);
+        this.callerRuns = meterRegistry.counter("executor.saturated", "name", name, "action", "caller-runs");
+        this.blocked = meterRegistry.counter("executor.saturated", "name", name, "action", "blocked");
+        TimeGauge.builder("executor.queue.wait.estimated", this, TimeUnit.NANOSECONDS,
+                        BoundedExecutor::estimatedWaitNanos)
+                .tag("name", name)
+                .register(meterRegistry);
+
+        setCorePoolSize(spec.corePoolSize());
+        setMaxPoolSize(spec.maxPoolSize());
+        setQueueCapacity(spec.queueCapacity());
+        setThreadNamePrefix(name + "-");
+        setTaskDecorator(this::decorate);
+        setRejectedExecutionHandler(this::saturated);
+    }
+
+    /**
+     * 预计新任务的排队时间
+     */
+    long estimatedWaitNanos() {
+        AdmissionQueue current = queue;
+        if (current == null || current.isEmpty()) {
+            return 0;
+        }
+        return current.size() * averageRunNanos.get() / Math.max(1, getMaxPoolSize());
+    }
+
+    @Override
+    protected BlockingQueue<Runnable> createQueue(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            return super.createQueue(queueCapacity);
+        }
+        AdmissionQueue created = new AdmissionQueue(queueCapacity);
+        this.queue = created;
+        return created;
+    }
+
+    private Runnable decorate(Runnable task) {
+        ContextSnapshot snapshot = ContextSnapshot.capture();
+        long submittedAt = System.nanoTime();
+        return () -> {
+            long startedAt = System.nanoTime();
+            waitTimer.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+            try {
+                snapshot.run(task);
+            } finally {
+                long runNanos = System.nanoTime() - startedAt;
+                runTimer.record(runNanos, TimeUnit.NANOSECONDS);
+                // 权重 1/8 的指数移动平均
+                averageRunNanos.getAndUpdate(average -> average == 0 ? runNanos : average + (runNanos - average) / 8);
+            }
+        };
+    }
+
+    /**
+     * 线程池的 RejectedExecutionHandler：队列拒绝（已满或预计排队过久）且线程数已达上限时调用
+     */
+    private void saturated(Runnable task, ThreadPoolExecutor pool) {
+        if (pool.isShutdown()) {
+            rejected.increment();
+            throw new RejectedExecutionException("线程池 " + name + " 已关闭");
+        }
+        switch (policy) {
+            case CALLER_RUNS -> {
+                callerRuns.increment();
+                task.run();
+                return;
+            }
+            case BLOCK -> {
+                if (enqueueWithin(task, pool)) {
+                    blocked.increment();
+                    return;
+                }
+            }
+            case ABORT -> {
+                rejected.increment();
+                throw new RejectedExecutionException("线程池 " + name + " 已饱和");
+            }
+            case SHED -> {
+            }
+        }
+        rejected.increment();
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(estimatedWaitNanos() + 999_999_999));
+        throw new ExecutorSaturatedException(name, retryAfterSeconds);
+    }
+
+    /**
+     * 在 block-timeout 内等待队列腾出空间（且预计排队时间回到上限以内）
+     */
+    private boolean enqueueWithin(Runnable task, ThreadPoolExecutor pool) {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        while (!pool.isShutdown() && !Thread.currentThread().isInterrupted()) {
+            if (pool.getQueue().offer(task)) {
+                // 入队和关闭并发时撤回任务，交给调用方处理拒绝
+                return !pool.isShutdown() || !pool.remove(task);
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(remaining, BLOCK_RETRY_NANOS));
+        }
+        return false;
+    }
+
+    /**
+     * 预计排队时间超过上限时拒绝入队，由线程池扩容到最大线程数，仍不够时交给饱和策略
+     */
+    private final class AdmissionQueue extends LinkedBlockingQueue<Runnable> {
+
+        AdmissionQueue(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public boolean offer(Runnable task) {
+            return !overloaded() && super.offer(task);
+        }
+
+        private boolean overloaded() {
+            return maxQueueWaitNanos > 0 && estimatedWaitNanos() > maxQueueWaitNanos;
+        }
+    }
+}
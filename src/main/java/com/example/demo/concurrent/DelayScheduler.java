@@ -0,0 +1,200 @@
+package com.example.demo.concurrent;
+
+import com.example.demo.util.ContextSnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基于时间轮的延迟调度
+ *
+ * 代替异步流程中的 Thread.sleep：{@link #delay(Duration)} 返回到期时完成的 CompletableFuture，
+ * 等待期间不占用任何线程，所有延迟共用一个计时线程。
+ *
+ * - 时间轮有 wheel-size 个槽，每 tick-ms 前进一格；超过一圈的延迟记录剩余圈数，精度为一个 tick
+ * - 提交只写入无锁队列，由计时线程在下一个 tick 放入对应的槽
+ * - 到期的 future 交给 handoff-threads 个转交线程完成，计时线程只负责计时，不执行任何回调；
+ *   future 以提交线程的上下文（{@link ContextSnapshot}）完成，后续阶段用 *Async 方法交给线程池执行。
+ *   转交线程可以阻塞，线程池饱和时按线程池自己的策略处理（block 等待入队、caller-runs 在转交线程上执行）
+ *
+ * 指标：
+ * delay.scheduler.pending       - 尚未到期的延迟数
+ * delay.scheduler.handoff.queue - 已到期、等待转交线程完成的 future 数
+ */
+@Slf4j
+@Component
+public class DelayScheduler {
+
+    private final long tickNanos;
+    private final ArrayDeque<Timeout>[] wheel;
+    private final int mask;
+    private final Queue<Timeout> submitted = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread worker;
+    private final ThreadPoolTaskExecutor handoff;
+    private final long startTime;
+    private volatile boolean running = true;
+
+    @SuppressWarnings("unchecked")
+    public DelayScheduler(MeterRegistry meterRegistry,
+                          @Value("${app.delay.tick-ms:10}") long tickMs,
+                          @Value("${app.delay.wheel-size:512}") int wheelSize,
+                          @Value("${app.delay.handoff-threads:4}") int handoffThreads) {
+        if (tickMs < 1 || wheelSize < 1 || handoffThreads < 1) {
+            throw new IllegalArgumentException("无效的时间轮配置: tick-ms=" + tickMs + ", wheel-size=" + wheelSize
+                    + ", handoff-threads=" + handoffThreads);
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        // 槽数取 2 的幂，用位运算定位槽
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.wheel = new ArrayDeque[Math.max(size, 1)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        this.mask = wheel.length - 1;
+        meterRegistry.gauge("delay.scheduler.pending", pending);
+
+        // 队列不设上限：计时线程提交时既不能被拒绝也不能阻塞
+        this.handoff = new ThreadPoolTaskExecutor();
+        this.handoff.setCorePoolSize(handoffThreads);
+        this.handoff.setMaxPoolSize(handoffThreads);
+        this.handoff.setThreadNamePrefix("delay-handoff-");
+        this.handoff.setDaemon(true);
+        this.handoff.initialize();
+        meterRegistry.gauge("delay.scheduler.handoff.queue", handoff, ThreadPoolTaskExecutor::getQueueSize);
+
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::runWorker, "delay-timer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+        log.info("延迟调度时间轮已启动，tick: {}ms, 槽数: {}, 转交线程: {}", tickMs, wheel.length, handoffThreads);
+    }
+
+    /**
+     * 延迟 delay 后完成
+     */
+    public CompletableFuture<Void> delay(Duration delay) {
+        return delay(delay, null);
+    }
+
+    /**
+     * 延迟 delay 后以 value 完成，用于在流水线中传递上一阶段的结果
+     */
+    public <T> CompletableFuture<T> delay(Duration delay, T value) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("延迟调度已关闭"));
+            return future;
+        }
+        long deadline = System.nanoTime() - startTime + Math.max(0, delay.toNanos());
+        pending.incrementAndGet();
+        submitted.add(new Timeout(deadline, future, value, ContextSnapshot.capture()));
+        return future;
+    }
+
+    /**
+     * 尚未到期的延迟数
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+        handoff.shutdown();
+    }
+
+    private void runWorker() {
+        long tick = 0;
+        while (running) {
+            long sleepNanos = startTime + tickNanos * (tick + 1) - System.nanoTime();
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(sleepNanos);
+                continue;
+            }
+            transferSubmitted(tick);
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+        cancelAll();
+    }
+
+    /**
+     * 把新提交的延迟放入槽中（只在计时线程上调用）
+     */
+    private void transferSubmitted(long tick) {
+        Timeout timeout;
+        while ((timeout = submitted.poll()) != null) {
+            long expireTick = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.remainingRounds = (expireTick - tick) / wheel.length;
+            wheel[(int) (expireTick & mask)].addLast(timeout);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> bucket) {
+        for (int i = bucket.size(); i > 0; i--) {
+            Timeout timeout = bucket.pollFirst();
+            if (timeout.future.isDone()) {
+                // 调用方已取消
+                pending.decrementAndGet();
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                bucket.addLast(timeout);
+            } else {
+                pending.decrementAndGet();
+                handoff.execute(timeout::complete);
+            }
+        }
+    }
+
+    private void cancelAll() {
+        for (ArrayDeque<Timeout> bucket : wheel) {
+            bucket.forEach(timeout -> timeout.future.cancel(false));
+            bucket.clear();
+        }
+        submitted.forEach(timeout -> timeout.future.cancel(false));
+        submitted.clear();
+        pending.set(0);
+    }
+
+    private static final class Timeout {
+
+        private final long deadline;
+        private final CompletableFuture<Object> future;
+        private final Object value;
+        private final ContextSnapshot context;
+        private long remainingRounds;
+
+        @SuppressWarnings("unchecked")
+        private Timeout(long deadline, CompletableFuture<?> future, Object value, ContextSnapshot context) {
+            this.deadline = deadline;
+            this.future = (CompletableFuture<Object>) future;
+            this.value = value;
+            this.context = context;
+        }
+
+        private void complete() {
+            try {
+                // 同步的后续阶段在转交线程上执行，*Async 阶段在提交时捕获这里恢复的上下文
+                context.run(() -> future.complete(value));
+            } catch (RuntimeException e) {
+                log.error("延迟到期后的回调执行失败", e);
+            }
+        }
+    }
+}
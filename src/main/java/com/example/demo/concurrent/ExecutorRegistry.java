@@ -0,0 +1,153 @@
+package com.example.demo.concurrent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 具名线程池注册表
+ *
+ * 应用内的线程池都从这里按名称获取，首次获取时创建，整个应用生命周期内复用，请求路径上不再创建线程。
+ * 每个线程池：
+ * - 线程名为 "名称-N"
+ * - 任务继承提交线程的上下文（{@link com.example.demo.util.ContextSnapshot}）
+ * - 关闭应用时等待已提交的任务执行完（最多 60 秒）
+ * - 饱和时按 {@link SaturationPolicy} 处理新任务（见 {@link BoundedExecutor}）
+ *
+ * 规格可以通过 app.executors.pools 按名称覆盖，格式为 "名称=核心线程数:最大线程数:队列容量[:饱和策略]"。
+ *
+ * 指标（tag name 为线程池名称）：
+ * executor.active / executor.queued / executor.pool.size / executor.completed - 线程池状态（Micrometer）
+ * executor.task.wait               - 任务在队列中等待的时间
+ * executor.task.run                - 任务执行时间
+ * executor.queue.wait.estimated    - 按队列长度估算的新任务排队时间
+ * executor.saturated{action}       - 饱和时由调用方执行（caller-runs）或等待后入队（blocked）的任务数
+ * executor.rejected                - 被拒绝的任务数
+ */
+@Slf4j
+@Component
+public class ExecutorRegistry {
+
+    private static final int KEEP_ALIVE_SECONDS = 60;
+    private static final int AWAIT_TERMINATION_SECONDS = 60;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, PoolSpec> overrides;
+    private final long maxQueueWaitNanos;
+    private final long blockTimeoutNanos;
+    private final Map<String, ThreadPoolTaskExecutor> executors = new ConcurrentHashMap<>();
+
+    public ExecutorRegistry(MeterRegistry meterRegistry,
+                            @Value("${app.executors.pools:}") String pools,
+                            @Value("${app.executors.max-queue-wait-ms:0}") long maxQueueWaitMs,
+                            @Value("${app.executors.block-timeout-ms:500}") long blockTimeoutMs) {
+        this.meterRegistry = meterRegistry;
+        this.overrides = parsePools(pools);
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMs);
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+        if (!overrides.isEmpty()) {
+            log.info("线程池配置: {}, 最长预计排队: {}ms, 阻塞提交超时: {}ms", overrides, maxQueueWaitMs, blockTimeoutMs);
+        }
+    }
+
+    /**
+     * 线程池规格
+     */
+    public record PoolSpec(int corePoolSize, int maxPoolSize, int queueCapacity, SaturationPolicy saturation) {
+
+        public PoolSpec {
+            if (corePoolSize < 1 || maxPoolSize < corePoolSize || queueCapacity < 0 || saturation == null) {
+                throw new IllegalArgumentException("无效的线程池规格: "
+                        + corePoolSize + ":" + maxPoolSize + ":" + queueCapacity + ":" + saturation);
+            }
+        }
+
+        public PoolSpec(int corePoolSize, int maxPoolSize, int queueCapacity) {
+            this(corePoolSize, maxPoolSize, queueCapacity, SaturationPolicy.ABORT);
+        }
+
+        @Override
+        public String toString() {
+            return corePoolSize + ":" + maxPoolSize + ":" + queueCapacity + ":" + saturation;
+        }
+    }
+
+    /**
+     * 获取具名线程池，不存在时按规格创建（app.executors.pools 中的配置优先）
+     */
+    public ThreadPoolTaskExecutor executor(String name, PoolSpec defaults) {
+        return executors.computeIfAbsent(name, key -> create(key, overrides.getOrDefault(key, defaults)));
+    }
+
+    /**
+     * 各线程池当前状态
+     */
+    public Map<String, Map<String, Object>> status() {
+        Map<String, Map<String, Object>> status = new HashMap<>();
+        executors.forEach((name, executor) -> {
+            ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("active", pool.getActiveCount());
+            entry.put("poolSize", pool.getPoolSize());
+            entry.put("maxPoolSize", pool.getMaximumPoolSize());
+            entry.put("queued", pool.getQueue().size());
+            entry.put("queueRemaining", pool.getQueue().remainingCapacity());
+            entry.put("completed", pool.getCompletedTaskCount());
+            status.put(name, entry);
+        });
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.forEach((name, executor) -> {
+            log.info("关闭线程池: {}", name);
+            executor.shutdown();
+        });
+    }
+
+    private ThreadPoolTaskExecutor create(String name, PoolSpec spec) {
+        BoundedExecutor executor = new BoundedExecutor(name, spec, maxQueueWaitNanos, blockTimeoutNanos, meterRegistry);
+        executor.setKeepAliveSeconds(KEEP_ALIVE_SECONDS);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(AWAIT_TERMINATION_SECONDS);
+        executor.initialize();
+
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), name, Tags.empty()).bindTo(meterRegistry);
+        log.info("创建线程池: {}, 规格(核心:最大:队列:饱和策略): {}", name, spec);
+        return executor;
+    }
+
+    /**
+     * 解析 "async=5:10:100:block, demo=3:6:50" 形式的线程池配置，省略饱和策略时为 abort
+     */
+    static Map<String, PoolSpec> parsePools(String pools) {
+        Map<String, PoolSpec> specs = new HashMap<>();
+        for (String entry : pools.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int separator = trimmed.indexOf('=');
+            String[] sizes = separator > 0 ? trimmed.substring(separator + 1).trim().split(":") : new String[0];
+            if (sizes.length != 3 && sizes.length != 4) {
+                throw new IllegalArgumentException("无效的线程池配置: " + trimmed);
+            }
+            specs.put(trimmed.substring(0, separator).trim(), new PoolSpec(
+                    Integer.parseInt(sizes[0].trim()), Integer.parseInt(sizes[1].trim()), Integer.parseInt(sizes[2].trim()),
+                    sizes.length == 4 ? SaturationPolicy.parse(sizes[3]) : SaturationPolicy.ABORT));
+        }
+        return specs;
+    }
+}
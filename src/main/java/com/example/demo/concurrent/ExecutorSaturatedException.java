@@ -0,0 +1,43 @@
+package com.example.demo.concurrent;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 线程池饱和，任务被拒绝（{@link SaturationPolicy#SHED}，或 {@link SaturationPolicy#BLOCK} 等待超时）
+ *
+ * Spring 的执行器会把它包装为 TaskRejectedException，调用方通过 {@link #find(Throwable)} 在异常链中查找。
+ */
+public class ExecutorSaturatedException extends RejectedExecutionException {
+
+    private final String executor;
+    private final long retryAfterSeconds;
+
+    public ExecutorSaturatedException(String executor, long retryAfterSeconds) {
+        super("线程池 " + executor + " 繁忙，请 " + retryAfterSeconds + " 秒后重试");
+        this.executor = executor;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getExecutor() {
+        return executor;
+    }
+
+    /**
+     * 按当前队列长度和任务平均执行时间估算的排队时间，至少 1 秒
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * 在异常链中查找，没有时返回 null
+     */
+    public static ExecutorSaturatedException find(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ExecutorSaturatedException saturated) {
+                return saturated;
+            }
+        }
+        return null;
+    }
+}
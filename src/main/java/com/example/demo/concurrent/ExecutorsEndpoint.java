@@ -0,0 +1,26 @@
+package com.example.demo.concurrent;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 线程池状态端点
+ *
+ * GET /actuator/executors  各具名线程池的活跃线程数、队列长度和已完成任务数
+ */
+@Component
+@Endpoint(id = "executors")
+@RequiredArgsConstructor
+public class ExecutorsEndpoint {
+
+    private final ExecutorRegistry executorRegistry;
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> executors() {
+        return executorRegistry.status();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.concurrent;
+
+import java.util.Locale;
+
+/**
+ * 线程池饱和（队列已满，或预计排队时间超过 app.executors.max-queue-wait-ms）时对新任务的处理方式
+ */
+public enum SaturationPolicy {
+
+    /**
+     * 拒绝任务并抛出 TaskRejectedException（ThreadPoolExecutor 的默认行为）
+     */
+    ABORT,
+
+    /**
+     * 由提交任务的线程直接执行，提交方自然减速
+     */
+    CALLER_RUNS,
+
+    /**
+     * 提交线程最多等待 app.executors.block-timeout-ms 直到可以入队，超时后按 {@link #SHED} 处理
+     */
+    BLOCK,
+
+    /**
+     * 拒绝任务并抛出 {@link ExecutorSaturatedException}，接口返回 503 和 Retry-After
+     */
+    SHED;
+
+    /**
+     * 解析配置中的 "caller-runs" 形式
+     */
+    public static SaturationPolicy parse(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
@@ -1,9 +1,15 @@
 package com.example.demo.config;
 
+import com.example.demo.concurrent.ExecutorRegistry;
+import com.example.demo.concurrent.SaturationPolicy;
+import com.example.demo.util.ContextSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
 
@@ -11,40 +17,52 @@ import java.util.concurrent.Executor;
  * 异步配置类
  *
  * 启用 Spring 的异步方法支持，配置线程池用于执行异步任务。
+ *
+ * spring.threads.virtual.enabled=true 时，异步任务改为每个任务一个虚拟线程
+ * （Tomcat 请求线程由 Spring Boot 同时切换为虚拟线程），并发数由 app.async.virtual-concurrency-limit 限制。
  */
+@Slf4j
 @Configuration
 @EnableAsync
 public class AsyncConfig {
 
+    private static final String ASYNC_POOL = "async-trace";
+    private static final ExecutorRegistry.PoolSpec DEFAULT_POOL = new ExecutorRegistry.PoolSpec(5, 10, 100, SaturationPolicy.BLOCK);
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${app.async.virtual-concurrency-limit:200}")
+    private int virtualConcurrencyLimit;
+
     /**
      * 配置异步任务线程池
      */
     @Bean(name = "taskExecutor")
-    public Executor taskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-
-        // 核心线程数
-        executor.setCorePoolSize(5);
-
-        // 最大线程数
-        executor.setMaxPoolSize(10);
-
-        // 队列容量
-        executor.setQueueCapacity(100);
+    public Executor taskExecutor(ExecutorRegistry executorRegistry) {
+        if (virtualThreads) {
+            return virtualThreadExecutor();
+        }
 
-        // 线程名称前缀
-        executor.setThreadNamePrefix("async-trace-");
-
-        // 线程空闲时间（秒）
-        executor.setKeepAliveSeconds(60);
-
-        // 等待所有任务完成后再关闭线程池
-        executor.setWaitForTasksToCompleteOnShutdown(true);
-
-        // 等待时间（秒）
-        executor.setAwaitTerminationSeconds(60);
+        // 线程池由注册表管理（线程名、上下文传递、指标、关闭时等待任务完成），这里只做适配，
+        // 不把 ThreadPoolTaskExecutor 直接注册为 Bean，避免容器再次初始化它
+        return new TaskExecutorAdapter(executorRegistry.executor(ASYNC_POOL, DEFAULT_POOL));
+    }
 
-        executor.initialize();
+    /**
+     * 虚拟线程执行器：每个任务一个虚拟线程，阻塞在 JDBC / sleep 上时不占用平台线程
+     *
+     * 虚拟线程本身不限数量，但数据库连接池只有 maximum-pool-size 个连接，
+     * 超出并发上限的任务在提交时阻塞等待，而不是全部涌向连接池后等待超时。
+     */
+    private Executor virtualThreadExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(ASYNC_POOL + "-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(virtualConcurrencyLimit);
+        executor.setTaskDecorator(ContextSnapshot.TASK_DECORATOR);
+        // 关闭时等待正在执行的任务结束
+        executor.setTaskTerminationTimeout(60_000);
+        log.info("异步任务使用虚拟线程，并发上限: {}", virtualConcurrencyLimit);
         return executor;
     }
 }
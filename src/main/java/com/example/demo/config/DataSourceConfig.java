@@ -0,0 +1,91 @@
+package com.example.demo.config;
+
+import com.example.demo.datasource.ConnectionHoldTracker;
+import com.example.demo.datasource.ReadWriteRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 数据源配置类
+ *
+ * - primaryDataSource：主库连接池，使用 spring.datasource.* 配置
+ * - replicaDataSource：从库连接池，app.datasource.replica.enabled=true 时创建
+ * - dataSource：对外暴露的读写分离数据源，只读事务走从库，未开启从库时全部走主库，并跟踪每次连接的占用时间
+ *
+ * 需要直接访问连接池（例如读取 Hikari 状态）的组件应注入 primaryDataSource；
+ * 通过它执行 SQL 的组件需用 {@link ConnectionHoldTracker#track} 包装，否则这些连接不计入占用时间。
+ */
+@Slf4j
+@Configuration
+public class DataSourceConfig {
+
+    public static final String PRIMARY_DATA_SOURCE = "primaryDataSource";
+    public static final String REPLICA_DATA_SOURCE = "replicaDataSource";
+
+    /**
+     * 主库连接池
+     */
+    @Bean(name = PRIMARY_DATA_SOURCE)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * 从库连接池（本地使用另一个 H2 实例模拟只读副本）
+     */
+    @Bean(name = REPLICA_DATA_SOURCE)
+    @ConditionalOnProperty(name = "app.datasource.replica.enabled", havingValue = "true")
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${app.datasource.replica.url}") String url) {
+        return DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url)
+                .username(properties.determineUsername())
+                .password(properties.determinePassword())
+                .build();
+    }
+
+    /**
+     * 读写分离数据源
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier(PRIMARY_DATA_SOURCE) DataSource primaryDataSource,
+                                 @Qualifier(REPLICA_DATA_SOURCE) ObjectProvider<DataSource> replicaDataSource,
+                                 MeterRegistry meterRegistry,
+                                 ConnectionHoldTracker connectionHoldTracker) {
+        DataSource replica = replicaDataSource.getIfAvailable();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReadWriteRoutingDataSource.PRIMARY, primaryDataSource);
+        targets.put(ReadWriteRoutingDataSource.REPLICA, replica != null ? replica : primaryDataSource);
+
+        ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource(meterRegistry);
+        routingDataSource.setTargetDataSources(targets);
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+        log.info("读写分离数据源初始化，从库: {}", replica != null ? "已开启" : "未开启（只读事务使用主库）");
+
+        // 延迟到执行第一条 SQL 时才获取连接，此时事务的只读标记已经设置；
+        // 占用时间跟踪包在延迟代理内侧，只统计真正从连接池取出的连接
+        return new LazyConnectionDataSourceProxy(connectionHoldTracker.track(routingDataSource));
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.demo.config;
+
+import com.example.demo.jdbc.JdbcInstrumentation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.sentry.Sentry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+/**
+ * JDBC 埋点模式配置
+ *
+ * app.jdbc.instrumentation.mode=production 时：
+ * - 关闭 Hibernate 的 show_sql / format_sql / use_sql_comments，语句不再逐条格式化输出
+ * - 忽略 sentry-jdbc 为每条语句创建的 Span，改由 {@code SampledSpanJdbcEventListener} 采样并按事务聚合上报
+ */
+@Slf4j
+@Configuration
+public class JdbcInstrumentationConfig {
+
+    /**
+     * sentry-jdbc 逐条语句 Span 的 origin
+     */
+    private static final String SENTRY_JDBC_SPAN_ORIGIN = "auto.db.jdbc";
+
+    @Value("${app.jdbc.instrumentation.mode:full}")
+    private String mode;
+
+    @Value("${app.jdbc.instrumentation.sample-rate:0.1}")
+    private double sampleRate;
+
+    @Bean
+    public JdbcInstrumentation jdbcInstrumentation(MeterRegistry meterRegistry) {
+        JdbcInstrumentation instrumentation =
+                new JdbcInstrumentation(JdbcInstrumentation.Mode.parse(mode), sampleRate, meterRegistry);
+        JdbcInstrumentation.install(instrumentation);
+        return instrumentation;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer jdbcInstrumentationHibernateProperties() {
+        return properties -> {
+            if (isProduction()) {
+                properties.put(AvailableSettings.SHOW_SQL, false);
+                properties.put(AvailableSettings.FORMAT_SQL, false);
+                properties.put(AvailableSettings.USE_SQL_COMMENTS, false);
+            }
+        };
+    }
+
+    /**
+     * Sentry 在容器启动过程中初始化，启动完成后再调整其选项
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void configureSentry() {
+        if (isProduction()) {
+            Sentry.getCurrentScopes().getOptions().addIgnoredSpanOrigin(SENTRY_JDBC_SPAN_ORIGIN);
+        }
+        log.info("JDBC 埋点模式: {}, 采样率: {}", mode, sampleRate);
+    }
+
+    private boolean isProduction() {
+        return JdbcInstrumentation.Mode.parse(mode) == JdbcInstrumentation.Mode.PRODUCTION;
+    }
+}
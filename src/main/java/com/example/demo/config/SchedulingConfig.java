@@ -0,0 +1,14 @@
+package com.example.demo.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 定时任务配置类
+ *
+ * 启用 Spring 的 @Scheduled 支持，用于连接池自适应调整等后台周期任务。
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
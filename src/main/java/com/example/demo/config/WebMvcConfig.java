@@ -0,0 +1,25 @@
+package com.example.demo.config;
+
+import com.example.demo.jdbc.QueryBudgetInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Web MVC 配置：注册按请求统计 SQL 语句数的拦截器
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final QueryBudgetInterceptor queryBudgetInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 导入导出按分块 / 按批读写，语句数随数据量增长，不适用按请求的预算
+        registry.addInterceptor(queryBudgetInterceptor)
+                .addPathPatterns("/api/**")
+                .excludePathPatterns("/api/users/import", "/api/users/export");
+    }
+}
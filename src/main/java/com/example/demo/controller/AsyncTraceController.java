@@ -1,5 +1,9 @@
 package com.example.demo.controller;
 
+import com.example.demo.concurrent.DelayScheduler;
+import com.example.demo.concurrent.ExecutorRegistry;
+import com.example.demo.concurrent.ExecutorSaturatedException;
+import com.example.demo.concurrent.SaturationPolicy;
 import com.example.demo.entity.User;
 import com.example.demo.service.AsyncTraceService;
 import com.example.demo.service.UserService;
@@ -7,18 +11,23 @@ import io.sentry.Breadcrumb;
 import io.sentry.Sentry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 异步追踪测试控制器
@@ -34,8 +43,16 @@ import java.util.concurrent.Future;
 @RequiredArgsConstructor
 public class AsyncTraceController {
 
+    private static final String DEMO_POOL = "async-demo";
+    private static final ExecutorRegistry.PoolSpec DEMO_POOL_SPEC = new ExecutorRegistry.PoolSpec(3, 6, 100, SaturationPolicy.CALLER_RUNS);
+
     private final AsyncTraceService asyncTraceService;
     private final UserService userService;
+    private final ExecutorRegistry executorRegistry;
+    private final DelayScheduler delayScheduler;
+
+    @Value("${app.async-trace.await-timeout-ms:10000}")
+    private long awaitTimeoutMs;
 
     /**
      * 测试异步任务的 Trace 传播
@@ -47,12 +64,16 @@ public class AsyncTraceController {
      * 2. 然后启动异步任务，在异步线程中执行更多数据库操作
      * 3. 等待异步任务完成并返回结果
      *
+     * 返回 CompletableFuture（Spring MVC 异步请求）：请求线程在第一步后即归还，
+     * 之后的步骤在 async-demo 线程池中执行，步骤之间的等待用 {@link DelayScheduler} 实现，不占用线程。
+     * 等待异步任务的时间超过 app.async-trace.await-timeout-ms 时返回 503。
+     *
      * 在 Sentry 中应该能看到：
      * - 主线程的操作 span
      * - 异步线程的操作是否在同一个 trace 中
      */
     @GetMapping("/test")
-    public ResponseEntity<Map<String, Object>> testAsyncTrace(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> testAsyncTrace(
             @RequestParam(defaultValue = "testuser") String username) {
 
         log.info("════════════════════════════════════════");
@@ -61,12 +82,15 @@ public class AsyncTraceController {
         log.info("════════════════════════════════════════");
 
         Map<String, Object> result = new HashMap<>();
+        result.put("mainThread", Thread.currentThread().getName());
+        ThreadPoolTaskExecutor executor = demoExecutor();
 
         try {
             // ========== 主线程操作 ==========
             log.info("🚀 [主线程] 步骤1: 查询所有用户数量");
             long initialCount = userService.getAllUsers().size();
             log.info("🚀 [主线程] 当前用户总数: {}", initialCount);
+            result.put("initialCount", initialCount);
 
             // 添加面包屑
             Breadcrumb breadcrumb = new Breadcrumb();
@@ -75,68 +99,71 @@ public class AsyncTraceController {
             breadcrumb.setData("count", String.valueOf(initialCount));
             Sentry.addBreadcrumb(breadcrumb);
 
-            // 稍微延迟
-            Thread.sleep(200);
-
-            log.info("🚀 [主线程] 步骤2: 创建测试用户");
-            User user = new User();
-            user.setUsername(username);
-            user.setEmail(username + "@example.com");
-            user.setPhone("13800138000");
-            user.setAge(25);
-            user.setActive(true);
-            User createdUser = userService.createUser(user);
-            log.info("🚀 [主线程] 用户创建成功: {}, ID: {}", createdUser.getUsername(), createdUser.getId());
-
-            // 再次查询
-            log.info("🚀 [主线程] 步骤3: 再次查询用户总数");
-            long afterCreateCount = userService.getAllUsers().size();
-            log.info("🚀 [主线程] 创建后用户总数: {}", afterCreateCount);
-
-            // ========== 启动异步任务 ==========
-            log.info("🚀 [主线程] 步骤4: 启动异步任务");
-            log.info("🚀 [主线程] ⚠️  注意：异步任务可能在不同的 Trace 中");
-
-            // 调用异步方法
-            CompletableFuture<String> asyncFuture = asyncTraceService.asyncDatabaseOperation(username);
-
-            // 主线程继续执行其他操作
-            log.info("🚀 [主线程] 步骤5: 主线程继续执行（异步任务在后台运行）");
-            Thread.sleep(300);
-            log.info("🚀 [主线程] 查询单个用户: {}", username);
-            User foundUser = userService.getUserByUsername(username).orElse(null);
-            log.info("🚀 [主线程] 查询结果: {}", foundUser != null ? foundUser.getUsername() : "未找到");
-
-            // 等待异步任务完成
-            log.info("🚀 [主线程] 步骤6: 等待异步任务完成...");
-            String asyncResult = asyncFuture.get(); // 阻塞等待
-            log.info("🚀 [主线程] 异步任务结果: {}", asyncResult);
-
-            // 最终查询
-            log.info("🚀 [主线程] 步骤7: 最终查询用户总数");
-            long finalCount = userService.getAllUsers().size();
-            log.info("🚀 [主线程] 最终用户总数: {}", finalCount);
-
-            // 构建结果
-            result.put("mainThread", Thread.currentThread().getName());
-            result.put("initialCount", initialCount);
-            result.put("createdUserId", createdUser.getId());
-            result.put("afterCreateCount", afterCreateCount);
-            result.put("asyncResult", asyncResult);
-            result.put("finalCount", finalCount);
-            result.put("message", "异步 Trace 测试完成，请查看 Sentry 验证异步任务是否在同一 Trace 中");
-
-            log.info("════════════════════════════════════════");
-            log.info("✅ [主线程] 测试完成");
-            log.info("════════════════════════════════════════");
-
-            return ResponseEntity.ok(result);
+            // 稍微延迟，之后的步骤在线程池中执行
+            return delayScheduler.delay(Duration.ofMillis(200))
+                    .thenComposeAsync(ignored -> {
+                        log.info("🚀 [主流程] 步骤2: 创建测试用户");
+                        User user = new User();
+                        user.setUsername(username);
+                        user.setEmail(username + "@example.com");
+                        user.setPhone("13800138000");
+                        user.setAge(25);
+                        user.setActive(true);
+                        User createdUser = userService.createUser(user);
+                        log.info("🚀 [主流程] 用户创建成功: {}, ID: {}", createdUser.getUsername(), createdUser.getId());
+                        result.put("createdUserId", createdUser.getId());
+
+                        // 再次查询
+                        log.info("🚀 [主流程] 步骤3: 再次查询用户总数");
+                        long afterCreateCount = userService.getAllUsers().size();
+                        log.info("🚀 [主流程] 创建后用户总数: {}", afterCreateCount);
+                        result.put("afterCreateCount", afterCreateCount);
+
+                        // ========== 启动异步任务 ==========
+                        log.info("🚀 [主流程] 步骤4: 启动异步任务");
+                        CompletableFuture<String> asyncFuture = awaitAsync(asyncTraceService.asyncDatabaseOperation(username));
+                        // @Async 方法：由 Spring 代理提交到 taskExecutor
+                        CompletableFuture<Long> asyncCountFuture = awaitAsync(asyncTraceService.asyncUserCount());
+
+                        // 主流程继续执行其他操作
+                        log.info("🚀 [主流程] 步骤5: 主流程继续执行（异步任务在后台运行）");
+                        CompletableFuture<Void> lookup = delayScheduler.delay(Duration.ofMillis(300))
+                                .thenRunAsync(() -> {
+                                    log.info("🚀 [主流程] 查询单个用户: {}", username);
+                                    User foundUser = userService.getUserByUsername(username).orElse(null);
+                                    log.info("🚀 [主流程] 查询结果: {}", foundUser != null ? foundUser.getUsername() : "未找到");
+                                }, executor);
+
+                        // 等待异步任务完成
+                        log.info("🚀 [主流程] 步骤6: 等待异步任务完成...");
+                        return CompletableFuture.allOf(lookup, asyncFuture, asyncCountFuture)
+                                .thenApply(done -> {
+                                    log.info("🚀 [主流程] 异步任务结果: {}", asyncFuture.join());
+                                    log.info("🚀 [主流程] @Async 任务结果: {}", asyncCountFuture.join());
+                                    result.put("asyncResult", asyncFuture.join());
+                                    result.put("asyncCount", asyncCountFuture.join());
+                                    return done;
+                                });
+                    }, executor)
+                    .thenApplyAsync(ignored -> {
+                        // 最终查询
+                        log.info("🚀 [主流程] 步骤7: 最终查询用户总数");
+                        long finalCount = userService.getAllUsers().size();
+                        log.info("🚀 [主流程] 最终用户总数: {}", finalCount);
+
+                        result.put("finalCount", finalCount);
+                        result.put("message", "异步 Trace 测试完成，请查看 Sentry 验证异步任务是否在同一 Trace 中");
+
+                        log.info("════════════════════════════════════════");
+                        log.info("✅ [主流程] 测试完成");
+                        log.info("════════════════════════════════════════");
+
+                        return ResponseEntity.ok(result);
+                    }, executor)
+                    .exceptionally(e -> failed(result, e));
 
         } catch (Exception e) {
-            log.error("❌ [主线程] 测试失败", e);
-            Sentry.captureException(e);
-            result.put("error", e.getMessage());
-            return ResponseEntity.status(500).body(result);
+            return CompletableFuture.completedFuture(failed(result, e));
         }
     }
 
@@ -144,9 +171,11 @@ public class AsyncTraceController {
      * 测试多个异步任务的 Trace
      *
      * GET /api/async-trace/test-multiple?prefix=batch
+     *
+     * 与 /test 相同，返回 CompletableFuture，任务之间的间隔用 {@link DelayScheduler} 实现
      */
     @GetMapping("/test-multiple")
-    public ResponseEntity<Map<String, Object>> testMultipleAsync(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> testMultipleAsync(
             @RequestParam(defaultValue = "batch") String prefix) {
 
         log.info("════════════════════════════════════════");
@@ -154,6 +183,8 @@ public class AsyncTraceController {
         log.info("════════════════════════════════════════");
 
         Map<String, Object> result = new HashMap<>();
+        result.put("mainThread", Thread.currentThread().getName());
+        ThreadPoolTaskExecutor executor = demoExecutor();
 
         try {
             // 主线程创建用户
@@ -166,71 +197,84 @@ public class AsyncTraceController {
             user.setActive(true);
             User createdUser = userService.createUser(user);
             log.info("🚀 [主线程] 主线程用户创建成功: {}", createdUser.getId());
+            result.put("mainUserId", createdUser.getId());
 
-            // 启动多个异步任务
+            // 启动多个异步任务，每两个任务之间间隔 100ms
             log.info("🚀 [主线程] 启动第一个异步任务");
-            CompletableFuture<String> future1 = asyncTraceService.asyncDatabaseOperation(prefix + "_1");
-
-            Thread.sleep(100);
-
-            log.info("🚀 [主线程] 启动第二个异步任务");
-            CompletableFuture<String> future2 = asyncTraceService.asyncDatabaseOperation(prefix + "_2");
-
-            Thread.sleep(100);
-
-            log.info("🚀 [主线程] 启动第三个异步任务（多操作）");
-            CompletableFuture<String> future3 = asyncTraceService.asyncMultipleDbOperations(prefix + "_multi");
-
-            // 主线程继续工作
-            log.info("🚀 [主线程] 主线程继续执行查询");
-            Thread.sleep(300);
-            long count = userService.getAllUsers().size();
-            log.info("🚀 [主线程] 当前用户总数: {}", count);
+            CompletableFuture<String> future1 = awaitAsync(asyncTraceService.asyncDatabaseOperation(prefix + "_1"));
+
+            CompletableFuture<String> future2 = awaitAsync(delayScheduler.delay(Duration.ofMillis(100))
+                    .thenComposeAsync(ignored -> {
+                        log.info("🚀 [主流程] 启动第二个异步任务");
+                        return asyncTraceService.asyncDatabaseOperation(prefix + "_2");
+                    }, executor));
+
+            CompletableFuture<String> future3 = awaitAsync(delayScheduler.delay(Duration.ofMillis(200))
+                    .thenComposeAsync(ignored -> {
+                        log.info("🚀 [主流程] 启动第三个异步任务（多操作）");
+                        return asyncTraceService.asyncMultipleDbOperations(prefix + "_multi");
+                    }, executor));
+
+            // 主流程继续工作
+            CompletableFuture<Long> count = delayScheduler.delay(Duration.ofMillis(500))
+                    .thenApplyAsync(ignored -> {
+                        log.info("🚀 [主流程] 主流程继续执行查询");
+                        long userCount = userService.getAllUsers().size();
+                        log.info("🚀 [主流程] 当前用户总数: {}", userCount);
+                        return userCount;
+                    }, executor);
 
             // 等待所有异步任务完成
-            log.info("🚀 [主线程] 等待所有异步任务完成...");
-            String result1 = future1.get();
-            String result2 = future2.get();
-            String result3 = future3.get();
-
-            log.info("🚀 [主线程] 所有任务完成");
+            log.info("🚀 [主线程] 请求线程返回，等待所有异步任务完成...");
+            return CompletableFuture.allOf(future1, future2, future3, count)
+                    .thenApply(ignored -> {
+                        log.info("🚀 [主流程] 所有任务完成");
 
-            result.put("mainThread", Thread.currentThread().getName());
-            result.put("mainUserId", createdUser.getId());
-            result.put("mainUserCount", count);
-            result.put("asyncTask1", result1);
-            result.put("asyncTask2", result2);
-            result.put("asyncTask3", result3);
-            result.put("message", "多个异步任务测试完成，请查看 Sentry 验证是否在同一 Trace 中");
+                        result.put("mainUserCount", count.join());
+                        result.put("asyncTask1", future1.join());
+                        result.put("asyncTask2", future2.join());
+                        result.put("asyncTask3", future3.join());
+                        result.put("message", "多个异步任务测试完成，请查看 Sentry 验证是否在同一 Trace 中");
 
-            log.info("════════════════════════════════════════");
-            log.info("✅ [主线程] 多异步任务测试完成");
-            log.info("════════════════════════════════════════");
+                        log.info("════════════════════════════════════════");
+                        log.info("✅ [主流程] 多异步任务测试完成");
+                        log.info("════════════════════════════════════════");
 
-            return ResponseEntity.ok(result);
+                        return ResponseEntity.ok(result);
+                    })
+                    .exceptionally(e -> failed(result, e));
 
         } catch (Exception e) {
-            log.error("❌ [主线程] 多异步任务测试失败", e);
-            Sentry.captureException(e);
-            result.put("error", e.getMessage());
-            return ResponseEntity.status(500).body(result);
+            return CompletableFuture.completedFuture(failed(result, e));
         }
     }
 
     /**
-     * 测试手动创建线程的 Trace 传播
+     * 等待异步任务的上限，超时后请求返回 503；任务本身不会被取消
+     */
+    private <T> CompletableFuture<T> awaitAsync(CompletableFuture<T> future) {
+        return future.orTimeout(awaitTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 测试手动提交任务的 Trace 传播
+     *
+     * 任务提交到共享的 async-demo 线程池，不在请求中创建线程。
+     * 与 /test 相同，返回 CompletableFuture，五个测试依次执行，每个测试等待的时间受 app.async-trace.await-timeout-ms 限制。
      *
      * GET /api/async-trace/manual-thread
      */
     @GetMapping("/manual-thread")
-    public ResponseEntity<Map<String, Object>> testManualThread() {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> testManualThread() {
         log.info("════════════════════════════════════════");
         log.info("🧵 [主线程] 开始测试手动创建线程");
         log.info("🧵 [主线程] 线程: {}", Thread.currentThread().getName());
         log.info("════════════════════════════════════════");
 
         Map<String, Object> result = new HashMap<>();
+        result.put("mainThread", Thread.currentThread().getName());
         Map<String, String> threadResults = new HashMap<>();
+        ThreadPoolTaskExecutor demoExecutor = demoExecutor();
 
         try {
             // 添加面包屑
@@ -239,10 +283,10 @@ public class AsyncTraceController {
             breadcrumb.setCategory("thread-test");
             Sentry.addBreadcrumb(breadcrumb);
 
-            // 测试1: 手动创建 Thread
-            log.info("🧵 [主线程] 测试1: 手动创建 Thread");
+            // 测试1: 提交 lambda 任务
+            log.info("🧵 [主线程] 测试1: 提交 lambda 任务");
             final StringBuilder thread1Result = new StringBuilder();
-            Thread thread1 = new Thread(() -> {
+            CompletableFuture<Void> task1 = awaitAsync(demoExecutor.submitCompletable(() -> {
                 log.info("🧵 [手动Thread1] 线程名称: {}", Thread.currentThread().getName());
                 log.info("🧵 [手动Thread1] 尝试获取 Trace ID");
 
@@ -261,191 +305,165 @@ public class AsyncTraceController {
                     log.error("🧵 [手动Thread1] 执行失败", e);
                     thread1Result.append("失败: ").append(e.getMessage());
                 }
-            });
+            }));
 
-            thread1.start();
-            thread1.join();
-            threadResults.put("manualThread", thread1Result.toString());
+            return task1.thenCompose(done1 -> {
+                threadResults.put("manualThread", thread1Result.toString());
 
-            // 测试2: 使用 Runnable 和 Thread
-            log.info("🧵 [主线程] 测试2: 使用 Runnable");
-            final StringBuilder thread2Result = new StringBuilder();
-            Runnable runnable = () -> {
-                log.info("🧵 [Runnable] 线程名称: {}", Thread.currentThread().getName());
-                log.info("🧵 [Runnable] 尝试获取 Trace ID");
-
-                try {
-                    // 添加面包屑
-                    Breadcrumb b2 = new Breadcrumb();
-                    b2.setMessage("Runnable执行");
-                    b2.setCategory("runnable-thread");
-                    Sentry.addBreadcrumb(b2);
-
-                    // 执行数据库操作
-                    long count = userService.getAllUsers().size();
-                    thread2Result.append(String.format("Runnable完成 - 用户数: %d", count));
-                    log.info("🧵 [Runnable] {}", thread2Result);
-                } catch (Exception e) {
-                    log.error("🧵 [Runnable] 执行失败", e);
-                    thread2Result.append("失败: ").append(e.getMessage());
-                }
-            };
-
-            Thread thread2 = new Thread(runnable);
-            thread2.start();
-            thread2.join();
-            threadResults.put("runnableThread", thread2Result.toString());
-
-            // 测试3: 继承 Thread 类
-            log.info("🧵 [主线程] 测试3: 继承 Thread 类");
-            final StringBuilder thread3Result = new StringBuilder();
-            class MyThread extends Thread {
-                @Override
-                public void run() {
-                    log.info("🧵 [继承Thread] 线程名称: {}", Thread.currentThread().getName());
-                    log.info("🧵 [继承Thread] 尝试获取 Trace ID");
+                // 测试2: 使用 Runnable
+                log.info("🧵 [主流程] 测试2: 使用 Runnable");
+                final StringBuilder thread2Result = new StringBuilder();
+                Runnable runnable = () -> {
+                    log.info("🧵 [Runnable] 线程名称: {}", Thread.currentThread().getName());
+                    log.info("🧵 [Runnable] 尝试获取 Trace ID");
 
                     try {
-                        Breadcrumb b3 = new Breadcrumb();
-                        b3.setMessage("继承Thread执行");
-                        b3.setCategory("extended-thread");
-                        Sentry.addBreadcrumb(b3);
+                        // 添加面包屑
+                        Breadcrumb b2 = new Breadcrumb();
+                        b2.setMessage("Runnable执行");
+                        b2.setCategory("runnable-thread");
+                        Sentry.addBreadcrumb(b2);
 
-                        Thread.sleep(100);
+                        // 执行数据库操作
                         long count = userService.getAllUsers().size();
-                        thread3Result.append(String.format("继承Thread完成 - 用户数: %d", count));
-                        log.info("🧵 [继承Thread] {}", thread3Result);
+                        thread2Result.append(String.format("Runnable完成 - 用户数: %d", count));
+                        log.info("🧵 [Runnable] {}", thread2Result);
                     } catch (Exception e) {
-                        log.error("🧵 [继承Thread] 执行失败", e);
-                        thread3Result.append("失败: ").append(e.getMessage());
+                        log.error("🧵 [Runnable] 执行失败", e);
+                        thread2Result.append("失败: ").append(e.getMessage());
                     }
-                }
-            }
-
-            MyThread myThread = new MyThread();
-            myThread.start();
-            myThread.join();
-            threadResults.put("extendedThread", thread3Result.toString());
-
-            // 测试4: 多个并发手动线程
-            log.info("🧵 [主线程] 测试4: 多个并发手动线程");
-            final StringBuilder thread4Result = new StringBuilder();
-            Thread[] concurrentThreads = new Thread[3];
-            String[] concurrentResults = new String[3];
+                };
+
+                return awaitAsync(demoExecutor.submitCompletable(runnable))
+                        .thenRun(() -> threadResults.put("runnableThread", thread2Result.toString()));
+            }).thenCompose(done2 -> {
+                // 测试3: 实现 Runnable 的任务类
+                log.info("🧵 [主流程] 测试3: 实现 Runnable 的任务类");
+                final StringBuilder thread3Result = new StringBuilder();
+                class MyTask implements Runnable {
+                    @Override
+                    public void run() {
+                        log.info("🧵 [继承Thread] 线程名称: {}", Thread.currentThread().getName());
+                        log.info("🧵 [继承Thread] 尝试获取 Trace ID");
 
-            for (int i = 0; i < 3; i++) {
-                final int index = i;
-                concurrentThreads[i] = new Thread(() -> {
-                    log.info("🧵 [并发Thread-{}] 线程名称: {}", index, Thread.currentThread().getName());
-
-                    try {
-                        Breadcrumb b = new Breadcrumb();
-                        b.setMessage(String.format("并发Thread-%d执行", index));
-                        b.setCategory("concurrent-manual-thread");
-                        b.setData("threadIndex", String.valueOf(index));
-                        Sentry.addBreadcrumb(b);
+                        try {
+                            Breadcrumb b3 = new Breadcrumb();
+                            b3.setMessage("继承Thread执行");
+                            b3.setCategory("extended-thread");
+                            Sentry.addBreadcrumb(b3);
 
-                        Thread.sleep(50 * index);
-                        long count = userService.getAllUsers().size();
-                        concurrentResults[index] = String.format("Thread-%d完成 - 用户数: %d", index, count);
-                        log.info("🧵 [并发Thread-{}] {}", index, concurrentResults[index]);
-                    } catch (Exception e) {
-                        log.error("🧵 [并发Thread-{}] 失败", index, e);
-                        concurrentResults[index] = "Thread-" + index + "失败: " + e.getMessage();
+                            long count = userService.getAllUsers().size();
+                            thread3Result.append(String.format("继承Thread完成 - 用户数: %d", count));
+                            log.info("🧵 [继承Thread] {}", thread3Result);
+                        } catch (Exception e) {
+                            log.error("🧵 [继承Thread] 执行失败", e);
+                            thread3Result.append("失败: ").append(e.getMessage());
+                        }
                     }
-                });
-            }
+                }
 
-            // 启动所有线程
-            for (Thread t : concurrentThreads) {
-                t.start();
-            }
+                // 延迟 100ms 后执行，等待期间不占用线程池的线程
+                return awaitAsync(delayScheduler.delay(Duration.ofMillis(100)).thenRunAsync(new MyTask(), demoExecutor))
+                        .thenRun(() -> threadResults.put("extendedThread", thread3Result.toString()));
+            }).thenCompose(done3 -> {
+                // 测试4: 多个并发任务
+                log.info("🧵 [主流程] 测试4: 多个并发任务");
+                CompletableFuture<?>[] concurrentTasks = new CompletableFuture<?>[3];
+                String[] concurrentResults = new String[3];
 
-            // 等待所有线程完成
-            for (Thread t : concurrentThreads) {
-                t.join();
-            }
+                for (int i = 0; i < 3; i++) {
+                    final int index = i;
+                    concurrentTasks[i] = delayScheduler.delay(Duration.ofMillis(50L * index)).thenRunAsync(() -> {
+                        log.info("🧵 [并发Thread-{}] 线程名称: {}", index, Thread.currentThread().getName());
 
-            thread4Result.append(String.format("并发线程完成: [%s, %s, %s]",
-                concurrentResults[0], concurrentResults[1], concurrentResults[2]));
-            threadResults.put("concurrentThreads", thread4Result.toString());
+                        try {
+                            Breadcrumb b = new Breadcrumb();
+                            b.setMessage(String.format("并发Thread-%d执行", index));
+                            b.setCategory("concurrent-manual-thread");
+                            b.setData("threadIndex", String.valueOf(index));
+                            Sentry.addBreadcrumb(b);
 
-            // 测试5: 手动线程中再创建子线程
-            log.info("🧵 [主线程] 测试5: 手动线程中创建子线程");
-            final StringBuilder thread5Result = new StringBuilder();
-            Thread parentThread = new Thread(() -> {
-                log.info("🧵 [父线程] 线程名称: {}", Thread.currentThread().getName());
+                            long count = userService.getAllUsers().size();
+                            concurrentResults[index] = String.format("Thread-%d完成 - 用户数: %d", index, count);
+                            log.info("🧵 [并发Thread-{}] {}", index, concurrentResults[index]);
+                        } catch (Exception e) {
+                            log.error("🧵 [并发Thread-{}] 失败", index, e);
+                            concurrentResults[index] = "Thread-" + index + "失败: " + e.getMessage();
+                        }
+                    }, demoExecutor);
+                }
+
+                // 等待所有任务完成
+                return awaitAsync(CompletableFuture.allOf(concurrentTasks))
+                        .thenRun(() -> threadResults.put("concurrentThreads", String.format("并发线程完成: [%s, %s, %s]",
+                                concurrentResults[0], concurrentResults[1], concurrentResults[2])));
+            }).thenCompose(done4 -> {
+                // 测试5: 任务中再提交子任务
+                // 父任务只提交不等待，返回子任务的 future，父子任务不会占满同一个线程池后互相等待
+                log.info("🧵 [主流程] 测试5: 任务中提交子任务");
+                final StringBuilder thread5Result = new StringBuilder();
+                CompletableFuture<CompletableFuture<Void>> parentTask = demoExecutor.submitCompletable(() -> {
+                    log.info("🧵 [父任务] 线程名称: {}", Thread.currentThread().getName());
 
-                try {
                     Breadcrumb bp = new Breadcrumb();
-                    bp.setMessage("父线程执行");
+                    bp.setMessage("父任务执行");
                     bp.setCategory("parent-thread");
                     Sentry.addBreadcrumb(bp);
 
-                    // 在手动线程中再创建子线程
-                    Thread childThread = new Thread(() -> {
-                        log.info("🧵 [子线程] 线程名称: {}", Thread.currentThread().getName());
+                    return delayScheduler.delay(Duration.ofMillis(100)).thenRunAsync(() -> {
+                        log.info("🧵 [子任务] 线程名称: {}", Thread.currentThread().getName());
 
                         try {
                             Breadcrumb bc = new Breadcrumb();
-                            bc.setMessage("子线程执行");
+                            bc.setMessage("子任务执行");
                             bc.setCategory("child-thread");
                             Sentry.addBreadcrumb(bc);
 
-                            Thread.sleep(100);
                             long count = userService.getAllUsers().size();
-                            thread5Result.append(String.format("子线程完成 - 用户数: %d", count));
-                            log.info("🧵 [子线程] {}", thread5Result);
+                            thread5Result.append(String.format("子任务完成 - 用户数: %d", count));
+                            log.info("🧵 [子任务] {}", thread5Result);
                         } catch (Exception e) {
-                            log.error("🧵 [子线程] 失败", e);
+                            log.error("🧵 [子任务] 失败", e);
                             thread5Result.append("失败: ").append(e.getMessage());
                         }
-                    });
-                    childThread.start();
-                    childThread.join();
-
-                } catch (Exception e) {
-                    log.error("🧵 [父线程] 失败", e);
-                    thread5Result.append("失败: ").append(e.getMessage());
-                }
-            });
-            parentThread.start();
-            parentThread.join();
-            threadResults.put("nestedThreads", thread5Result.toString());
-
-            result.put("mainThread", Thread.currentThread().getName());
-            result.put("testResults", threadResults);
-            result.put("message", "手动创建线程测试完成，请查看 Sentry 验证 Trace ID 传播");
+                    }, demoExecutor);
+                });
+                return awaitAsync(parentTask.thenCompose(child -> child))
+                        .thenRun(() -> threadResults.put("nestedThreads", thread5Result.toString()));
+            }).thenApply(done5 -> {
+                result.put("testResults", threadResults);
+                result.put("message", "手动提交任务测试完成，请查看 Sentry 验证 Trace ID 传播");
 
-            log.info("════════════════════════════════════════");
-            log.info("✅ [主线程] 手动线程测试完成");
-            log.info("════════════════════════════════════════");
+                log.info("════════════════════════════════════════");
+                log.info("✅ [主流程] 手动线程测试完成");
+                log.info("════════════════════════════════════════");
 
-            return ResponseEntity.ok(result);
+                return ResponseEntity.ok(result);
+            }).exceptionally(e -> failed(result, e));
 
         } catch (Exception e) {
-            log.error("❌ [主线程] 测试失败", e);
-            Sentry.captureException(e);
-            result.put("error", e.getMessage());
-            return ResponseEntity.status(500).body(result);
+            return CompletableFuture.completedFuture(failed(result, e));
         }
     }
 
     /**
      * 测试 ExecutorService 的 Trace 传播
      *
+     * 返回 CompletableFuture，三个测试依次执行，每个测试等待的时间受 app.async-trace.await-timeout-ms 限制。
+     *
      * GET /api/async-trace/executor-service
      */
     @GetMapping("/executor-service")
-    public ResponseEntity<Map<String, Object>> testExecutorService() {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> testExecutorService() {
         log.info("════════════════════════════════════════");
         log.info("🧵 [主线程] 开始测试 ExecutorService");
         log.info("🧵 [主线程] 线程: {}", Thread.currentThread().getName());
         log.info("════════════════════════════════════════");
 
         Map<String, Object> result = new HashMap<>();
+        result.put("mainThread", Thread.currentThread().getName());
         Map<String, String> executorResults = new HashMap<>();
-        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        ThreadPoolTaskExecutor executor = demoExecutor();
 
         try {
             // 添加面包屑
@@ -454,10 +472,10 @@ public class AsyncTraceController {
             breadcrumb.setCategory("executor-test");
             Sentry.addBreadcrumb(breadcrumb);
 
-            // 测试1: 提交 Runnable 到 ExecutorService
-            log.info("🧵 [主线程] 测试1: ExecutorService.submit(Runnable)");
+            // 测试1: 提交 Runnable 到线程池
+            log.info("🧵 [主线程] 测试1: submitCompletable(Runnable)");
             final StringBuilder result1 = new StringBuilder();
-            Future<?> future1 = executorService.submit(() -> {
+            CompletableFuture<Void> future1 = awaitAsync(executor.submitCompletable(() -> {
                 log.info("🧵 [Executor1] 线程名称: {}", Thread.currentThread().getName());
 
                 try {
@@ -473,77 +491,107 @@ public class AsyncTraceController {
                     log.error("🧵 [Executor1] 失败", e);
                     result1.append("失败: ").append(e.getMessage());
                 }
-            });
-            future1.get();
-            executorResults.put("executor1", result1.toString());
-
-            // 测试2: 提交 Callable 到 ExecutorService
-            log.info("🧵 [主线程] 测试2: ExecutorService.submit(Callable)");
-            final StringBuilder result2 = new StringBuilder();
-            Future<String> future2 = executorService.submit(() -> {
-                log.info("🧵 [Executor2] 线程名称: {}", Thread.currentThread().getName());
-
-                try {
-                    Breadcrumb b2 = new Breadcrumb();
-                    b2.setMessage("Executor2执行");
-                    b2.setCategory("executor");
-                    Sentry.addBreadcrumb(b2);
-
-                    Thread.sleep(200);
-                    long count = userService.getAllUsers().size();
-                    String msg = String.format("Executor2完成 - 用户数: %d", count);
-                    log.info("🧵 [Executor2] {}", msg);
-                    return msg;
-                } catch (Exception e) {
-                    log.error("🧵 [Executor2] 失败", e);
-                    return "失败: " + e.getMessage();
-                }
-            });
-            executorResults.put("executor2", future2.get());
-
-            // 测试3: 使用 CompletableFuture.supplyAsync
-            log.info("🧵 [主线程] 测试3: CompletableFuture.supplyAsync");
-            CompletableFuture<String> completableFuture = CompletableFuture.supplyAsync(() -> {
-                log.info("🧵 [CompletableFuture] 线程名称: {}", Thread.currentThread().getName());
-
-                try {
-                    Breadcrumb b3 = new Breadcrumb();
-                    b3.setMessage("CompletableFuture执行");
-                    b3.setCategory("completable-future");
-                    Sentry.addBreadcrumb(b3);
-
-                    Thread.sleep(200);
-                    long count = userService.getAllUsers().size();
-                    String msg = String.format("CompletableFuture完成 - 用户数: %d", count);
-                    log.info("🧵 [CompletableFuture] {}", msg);
-                    return msg;
-                } catch (Exception e) {
-                    log.error("🧵 [CompletableFuture] 失败", e);
-                    return "失败: " + e.getMessage();
-                }
-            });
-            executorResults.put("completableFuture", completableFuture.get());
-
-            result.put("mainThread", Thread.currentThread().getName());
-            result.put("testResults", executorResults);
-            result.put("message", "ExecutorService 测试完成，请查看 Sentry 验证 Trace ID 传播");
-
-            log.info("════════════════════════════════════════");
-            log.info("✅ [主线程] ExecutorService 测试完成");
-            log.info("════════════════════════════════════════");
-
-            return ResponseEntity.ok(result);
+            }));
+
+            return future1.thenCompose(done1 -> {
+                executorResults.put("executor1", result1.toString());
+
+                // 测试2: 延迟 200ms 后提交 Callable，等待期间不占用线程
+                log.info("🧵 [主流程] 测试2: 延迟后 submitCompletable(Callable)");
+                return awaitAsync(delayScheduler.delay(Duration.ofMillis(200))
+                        .thenCompose(ignored -> executor.submitCompletable(() -> {
+                            log.info("🧵 [Executor2] 线程名称: {}", Thread.currentThread().getName());
+
+                            try {
+                                Breadcrumb b2 = new Breadcrumb();
+                                b2.setMessage("Executor2执行");
+                                b2.setCategory("executor");
+                                Sentry.addBreadcrumb(b2);
+
+                                long count = userService.getAllUsers().size();
+                                String msg = String.format("Executor2完成 - 用户数: %d", count);
+                                log.info("🧵 [Executor2] {}", msg);
+                                return msg;
+                            } catch (Exception e) {
+                                log.error("🧵 [Executor2] 失败", e);
+                                return "失败: " + e.getMessage();
+                            }
+                        })));
+            }).thenCompose(result2 -> {
+                executorResults.put("executor2", result2);
+
+                // 测试3: CompletableFuture 流水线：延迟 200ms 后在指定执行器上执行（不使用 ForkJoinPool.commonPool()）
+                log.info("🧵 [主流程] 测试3: CompletableFuture 延迟流水线");
+                return awaitAsync(delayScheduler.delay(Duration.ofMillis(200))
+                        .thenApplyAsync(ignored -> {
+                            log.info("🧵 [CompletableFuture] 线程名称: {}", Thread.currentThread().getName());
+
+                            try {
+                                Breadcrumb b3 = new Breadcrumb();
+                                b3.setMessage("CompletableFuture执行");
+                                b3.setCategory("completable-future");
+                                Sentry.addBreadcrumb(b3);
+
+                                long count = userService.getAllUsers().size();
+                                String msg = String.format("CompletableFuture完成 - 用户数: %d", count);
+                                log.info("🧵 [CompletableFuture] {}", msg);
+                                return msg;
+                            } catch (Exception e) {
+                                log.error("🧵 [CompletableFuture] 失败", e);
+                                return "失败: " + e.getMessage();
+                            }
+                        }, executor));
+            }).thenApply(result3 -> {
+                executorResults.put("completableFuture", result3);
+                result.put("testResults", executorResults);
+                result.put("message", "ExecutorService 测试完成，请查看 Sentry 验证 Trace ID 传播");
+
+                log.info("════════════════════════════════════════");
+                log.info("✅ [主流程] ExecutorService 测试完成");
+                log.info("════════════════════════════════════════");
+
+                return ResponseEntity.ok(result);
+            }).exceptionally(e -> failed(result, e));
 
         } catch (Exception e) {
-            log.error("❌ [主线程] 测试失败", e);
-            Sentry.captureException(e);
-            result.put("error", e.getMessage());
-            return ResponseEntity.status(500).body(result);
-        } finally {
-            executorService.shutdown();
+            return CompletableFuture.completedFuture(failed(result, e));
         }
     }
 
+    /**
+     * 线程池饱和时返回 503 和 Retry-After，等待异步任务超时返回 503，其他异常返回 500
+     */
+    private ResponseEntity<Map<String, Object>> failed(Map<String, Object> result, Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        ExecutorSaturatedException saturated = ExecutorSaturatedException.find(e);
+        if (saturated != null) {
+            log.warn("⏳ [主线程] 线程池繁忙，请求被拒绝: {}", saturated.getMessage());
+            result.put("error", saturated.getMessage());
+            result.put("retryAfterSeconds", saturated.getRetryAfterSeconds());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(saturated.getRetryAfterSeconds()))
+                    .body(result);
+        }
+        if (e instanceof TimeoutException) {
+            log.warn("⏳ [主流程] 等待异步任务超过 {}ms", awaitTimeoutMs);
+            result.put("error", "等待异步任务超时");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(result);
+        }
+        log.error("❌ [主线程] 测试失败", e);
+        Sentry.captureException(e);
+        result.put("error", e.getMessage());
+        return ResponseEntity.status(500).body(result);
+    }
+
+    /**
+     * 演示接口共享的线程池，任务自动继承请求的 Trace 上下文
+     */
+    private ThreadPoolTaskExecutor demoExecutor() {
+        return executorRegistry.executor(DEMO_POOL, DEMO_POOL_SPEC);
+    }
+
     /**
      * 简单的测试 endpoint，仅打印日志信息
      *
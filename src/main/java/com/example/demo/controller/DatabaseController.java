@@ -1,7 +1,11 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.ConcurrentUpdateResult;
+import com.example.demo.dto.UserPage;
 import com.example.demo.entity.User;
+import com.example.demo.repository.projection.UserView;
 import com.example.demo.service.UserService;
+import com.fasterxml.jackson.databind.util.RawValue;
 import io.sentry.Sentry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -172,7 +176,7 @@ public class DatabaseController {
     public ResponseEntity<Map<String, Object>> getAllUsers() {
         log.info("收到查询所有用户请求");
         try {
-            List<User> users = userService.getAllUsers();
+            List<UserView> users = userService.getAllUsers();
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("count", users.size());
@@ -188,6 +192,116 @@ public class DatabaseController {
         }
     }
 
+    /**
+     * 统计用户总数
+     * GET /api/users/count
+     */
+    @GetMapping("/count")
+    public ResponseEntity<Map<String, Object>> countUsers() {
+        log.info("收到统计用户总数请求");
+        try {
+            long count = userService.countUsers();
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("count", count);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("统计用户总数失败", e);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "查询失败: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * 用户统计（总数、启用比例、年龄分布）
+     * GET /api/users/stats
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getUserStats() {
+        log.info("收到用户统计请求");
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", userService.getUserStats());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("用户统计失败", e);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "查询失败: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * 按用户名或邮箱搜索用户（输入提示）
+     * GET /api/users/search?q=ali&limit=10
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> searchUsers(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit) {
+        log.debug("收到搜索用户请求: {}", q);
+        try {
+            List<Map<String, Object>> users = userService.searchUsers(q, limit);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", users);
+            response.put("count", users.size());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("搜索用户失败", e);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "搜索失败: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * 搜索索引状态与搜索耗时分位数
+     * GET /api/users/search/status
+     */
+    @GetMapping("/search/status")
+    public ResponseEntity<Map<String, Object>> getSearchIndexStatus() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", userService.getSearchIndexStatus());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 游标分页查询用户
+     * GET /api/users/page?cursor=xxx&size=50
+     */
+    @GetMapping("/page")
+    public ResponseEntity<Map<String, Object>> getUsersPage(@RequestParam(required = false) String cursor,
+                                                            @RequestParam(required = false) Integer size) {
+        log.info("收到分页查询用户请求，cursor: {}, size: {}", cursor, size);
+        try {
+            UserPage page = userService.getUsersPage(cursor, size);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("count", page.getUsers().size());
+            response.put("data", page.getUsers());
+            response.put("nextCursor", page.getNextCursor());
+            response.put("hasMore", page.isHasMore());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("分页查询用户失败", e);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "查询失败: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
     /**
      * 根据ID查询用户 - 可能抛出用户不存在异常
      * GET /api/users/{id}
@@ -196,7 +310,8 @@ public class DatabaseController {
     public ResponseEntity<Map<String, Object>> getUserById(@PathVariable Long id) {
         log.info("收到查询用户请求，ID: {}", id);
         try {
-            User user = userService.getUserById(id);
+            // 直接写出缓存中的预序列化 JSON，避免重复序列化用户对象
+            RawValue user = new RawValue(userService.getUserJsonById(id));
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("data", user);
@@ -219,11 +334,11 @@ public class DatabaseController {
     public ResponseEntity<Map<String, Object>> getUserByUsername(@PathVariable String username) {
         log.info("收到查询用户请求，用户名: {}", username);
         try {
-            return userService.getUserByUsername(username)
-                    .map(user -> {
+            return userService.getUserJsonByUsername(username)
+                    .map(json -> {
                         Map<String, Object> response = new HashMap<>();
                         response.put("success", true);
-                        response.put("data", user);
+                        response.put("data", new RawValue(json));
                         return ResponseEntity.ok(response);
                     })
                     .orElseGet(() -> {
@@ -321,11 +436,11 @@ public class DatabaseController {
     public ResponseEntity<Map<String, Object>> simulateConcurrent(@PathVariable Long id, @RequestParam String email) {
         log.info("收到模拟并发修改请求，ID: {}", id);
         try {
-            User updatedUser = userService.simulateConcurrentModification(id, email);
+            ConcurrentUpdateResult result = userService.simulateConcurrentModification(id, email);
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", "并发修改测试完成");
-            response.put("data", updatedUser);
+            response.put("message", "并发修改冲突已通过重试解决");
+            response.put("data", result);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             log.error("并发修改冲突", e);
@@ -0,0 +1,53 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.UserExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/users")
+@RequiredArgsConstructor
+public class UserExportController {
+
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+    private final UserExportService userExportService;
+
+    /**
+     * 流式导出全部用户（NDJSON）
+     * GET /api/users/export
+     *
+     * 直接写入 Servlet 输出流，不在内存中组装完整响应。
+     */
+    @GetMapping("/export")
+    public void exportUsers(HttpServletResponse response) throws IOException {
+        log.info("收到用户导出请求");
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+
+        try {
+            OutputStream out = response.getOutputStream();
+            long count = userExportService.exportUsersAsNdjson(out);
+            log.info("用户导出请求完成，行数: {}", count);
+        } catch (Exception e) {
+            log.error("用户导出失败", e);
+
+            // 响应尚未提交时返回错误状态，已经开始输出则只能中断连接
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value(), "导出失败: " + e.getMessage());
+            } else {
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.UserImportResult;
+import com.example.demo.service.UserImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/users/import")
+@RequiredArgsConstructor
+public class UserImportController {
+
+    private final UserImportService userImportService;
+
+    /**
+     * 流式批量导入用户（CSV / NDJSON）
+     * POST /api/users/import
+     *
+     * Content-Type 为 text/csv 时按 CSV 解析（首行为表头），
+     * 为 application/x-ndjson 时按每行一个 JSON 对象解析。
+     * 等待写入许可超时导致中途终止时返回 503，响应中仍包含已提交部分的导入结果。
+     */
+    @PostMapping(consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<Map<String, Object>> importUsers(HttpServletRequest request) {
+        String format = request.getContentType().startsWith("text/csv")
+                ? UserImportService.FORMAT_CSV
+                : UserImportService.FORMAT_NDJSON;
+        log.info("收到批量导入用户请求，格式: {}", format);
+        try (InputStream in = request.getInputStream()) {
+            UserImportResult importResult = userImportService.importUsers(in, format);
+            Map<String, Object> response = new HashMap<>();
+            if (importResult.isAborted()) {
+                response.put("success", false);
+                response.put("message", "导入中途终止: " + importResult.getAbortReason());
+                response.put("data", importResult);
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+            }
+            response.put("success", importResult.getFailedRows() == 0);
+            response.put("message", importResult.getFailedRows() == 0 ? "导入成功" : "导入完成，部分数据失败");
+            response.put("data", importResult);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("批量导入失败", e);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "导入失败: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * 查询进行中的导入进度
+     * GET /api/users/import/progress
+     */
+    @GetMapping("/progress")
+    public ResponseEntity<Map<String, Object>> getImportProgress() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", userImportService.getActiveImports());
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.datasource;
+
+import com.example.demo.config.DataSourceConfig;
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接池自适应调整
+ *
+ * 周期性读取 Hikari 的获取连接等待时间（hikaricp.connections.acquire）和连接借出次数（吞吐量），
+ * 在 [min-size, max-size] 范围内调整 maximumPoolSize：
+ * - 本周期平均等待时间超过 target-wait 或仍有线程在排队：扩容 step 个连接；
+ *   但如果上次扩容后借出次数没有比扩容前提高 min-throughput-gain，说明瓶颈在数据库而不在连接数，
+ *   保持当前上限，直到吞吐量超过扩容前的水平再继续扩容
+ * - 平均等待时间低于 target-wait 的 1/4 且活跃连接不足当前上限的一半：缩容 step 个连接
+ *
+ * 只调整主库连接池。默认关闭，通过 app.datasource.adaptive.enabled=true 开启。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.datasource.adaptive.enabled", havingValue = "true")
+public class AdaptivePoolSizer {
+
+    private final HikariDataSource hikariDataSource;
+    private final MeterRegistry meterRegistry;
+    private final Counter growCounter;
+    private final Counter shrinkCounter;
+
+    @Value("${app.datasource.adaptive.min-size:5}")
+    private int minSize;
+
+    @Value("${app.datasource.adaptive.max-size:30}")
+    private int maxSize;
+
+    @Value("${app.datasource.adaptive.step:2}")
+    private int step;
+
+    @Value("${app.datasource.adaptive.target-wait-ms:20}")
+    private double targetWaitMs;
+
+    @Value("${app.datasource.adaptive.min-throughput-gain:0.05}")
+    private double minThroughputGain;
+
+    private long lastAcquireCount;
+    private double lastAcquireTotalMs;
+    private long lastUsageCount;
+
+    /**
+     * 最近一次扩容前一个周期的借出次数，等待恢复正常后重置为 -1
+     */
+    private long checkoutsBeforeGrow = -1;
+
+    public AdaptivePoolSizer(@Qualifier(DataSourceConfig.PRIMARY_DATA_SOURCE) HikariDataSource hikariDataSource,
+                             MeterRegistry meterRegistry) {
+        this.hikariDataSource = hikariDataSource;
+        this.meterRegistry = meterRegistry;
+        this.growCounter = meterRegistry.counter("app.datasource.adaptive.resizes", "direction", "grow");
+        this.shrinkCounter = meterRegistry.counter("app.datasource.adaptive.resizes", "direction", "shrink");
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.adaptive.interval-ms:5000}",
+            initialDelayString = "${app.datasource.adaptive.interval-ms:5000}")
+    public void adjust() {
+        HikariPoolMXBean pool = hikariDataSource.getHikariPoolMXBean();
+        Timer acquireTimer = poolTimer("hikaricp.connections.acquire");
+        Timer usageTimer = poolTimer("hikaricp.connections.usage");
+        if (pool == null || acquireTimer == null || usageTimer == null) {
+            return;
+        }
+
+        // 与上一周期做差，得到本周期的平均等待时间和吞吐量
+        long acquireCount = acquireTimer.count();
+        double acquireTotalMs = acquireTimer.totalTime(TimeUnit.MILLISECONDS);
+        long usageCount = usageTimer.count();
+        long acquires = acquireCount - lastAcquireCount;
+        double meanWaitMs = acquires > 0 ? (acquireTotalMs - lastAcquireTotalMs) / acquires : 0;
+        long checkouts = usageCount - lastUsageCount;
+        lastAcquireCount = acquireCount;
+        lastAcquireTotalMs = acquireTotalMs;
+        lastUsageCount = usageCount;
+
+        HikariConfigMXBean config = hikariDataSource.getHikariConfigMXBean();
+        int currentMax = config.getMaximumPoolSize();
+        int active = pool.getActiveConnections();
+        int pending = pool.getThreadsAwaitingConnection();
+
+        int newMax = nextMaxSize(currentMax, meanWaitMs, pending, active, checkouts);
+        if (newMax != currentMax) {
+            config.setMaximumPoolSize(newMax);
+            config.setMinimumIdle(Math.min(config.getMinimumIdle(), newMax));
+            (newMax > currentMax ? growCounter : shrinkCounter).increment();
+            log.info("连接池调整: {} -> {}，平均等待: {}ms, 排队线程: {}, 活跃连接: {}, 本周期借出次数: {}",
+                    currentMax, newMax, String.format("%.2f", meanWaitMs), pending, active, checkouts);
+        } else {
+            log.debug("连接池保持: {}，平均等待: {}ms, 排队线程: {}, 活跃连接: {}, 本周期借出次数: {}",
+                    currentMax, String.format("%.2f", meanWaitMs), pending, active, checkouts);
+        }
+    }
+
+    /**
+     * 根据本周期的等待时间和吞吐量计算新的连接池上限
+     */
+    int nextMaxSize(int currentMax, double meanWaitMs, int pending, int active, long checkouts) {
+        if (meanWaitMs > targetWaitMs || pending > 0) {
+            if (checkoutsBeforeGrow >= 0 && checkouts < checkoutsBeforeGrow * (1 + minThroughputGain)) {
+                log.debug("上次扩容后吞吐量未提升（扩容前: {}, 本周期: {}），保持连接池上限", checkoutsBeforeGrow, checkouts);
+                return currentMax;
+            }
+            int newMax = Math.min(currentMax + step, maxSize);
+            if (newMax > currentMax) {
+                checkoutsBeforeGrow = checkouts;
+            }
+            return newMax;
+        }
+        checkoutsBeforeGrow = -1;
+        if (meanWaitMs < targetWaitMs / 4 && active < currentMax / 2) {
+            return Math.max(currentMax - step, minSize);
+        }
+        return currentMax;
+    }
+
+    private Timer poolTimer(String name) {
+        return meterRegistry.find(name).tag("pool", hikariDataSource.getPoolName()).timer();
+    }
+}
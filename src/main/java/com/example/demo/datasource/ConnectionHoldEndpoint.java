@@ -0,0 +1,33 @@
+package com.example.demo.datasource;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 连接占用报告端点
+ *
+ * GET    /actuator/connectionholds  未归还的连接、最近的超时占用、按占用方汇总
+ * DELETE /actuator/connectionholds  清空超时记录和汇总（未归还的连接不受影响）
+ */
+@Component
+@Endpoint(id = "connectionholds")
+@RequiredArgsConstructor
+public class ConnectionHoldEndpoint {
+
+    private final ConnectionHoldTracker connectionHoldTracker;
+
+    @ReadOperation
+    public Map<String, Object> report() {
+        return connectionHoldTracker.report();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        connectionHoldTracker.reset();
+    }
+}
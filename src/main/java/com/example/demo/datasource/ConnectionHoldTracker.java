@@ -0,0 +1,308 @@
+package com.example.demo.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接占用时间跟踪
+ *
+ * 每次从连接池取出连接（{@link HoldTrackingDataSource}）到归还之间为一次占用，记录：
+ * - 占用总时长，其中执行 SQL 的时长（由 P6Spy 监听器累加）和空闲时长（占用 - SQL）
+ * - 占用方：获取连接时所在的 @Transactional 方法；事务不属于本应用时（如 Spring Data 仓库方法自带的事务）
+ *   取调用栈上第一个应用方法
+ *
+ * 占用时长达到 leak-threshold-ms 的连接视为疑似泄漏：已归还的记入最近的超时记录（环形缓冲区），
+ * 仍未归还的在 /actuator/connectionholds 中连同持有线程的当前调用栈一起列出。
+ *
+ * 指标：
+ * app.datasource.connection.hold{owner}          - 占用总时长
+ * app.datasource.connection.hold.sql{owner}      - 占用期间执行 SQL 的时长
+ * app.datasource.connection.hold.idle{owner}     - 占用期间未执行 SQL 的时长（事务内 sleep、远程调用等）
+ * app.datasource.connection.leak.suspects{owner} - 占用超过阈值的次数
+ */
+@Slf4j
+@Component
+public class ConnectionHoldTracker {
+
+    private static final String APP_PACKAGE = "com.example.demo.";
+    private static final int STACK_DEPTH = 20;
+
+    private static final ThreadLocal<Hold> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 供 P6Spy 监听器使用的跟踪器，容器初始化后发布；测试中直接创建的跟踪器不会替换它
+     */
+    private static final AtomicReference<ConnectionHoldTracker> PUBLISHED = new AtomicReference<>();
+
+    private final boolean enabled;
+    private final long leakThresholdNanos;
+    private final MeterRegistry meterRegistry;
+
+    private final Set<Hold> active = ConcurrentHashMap.newKeySet();
+    private final Map<String, OwnerStats> owners = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Map<String, Object>> offenders;
+    private final AtomicLong offenderSequence = new AtomicLong();
+
+    public ConnectionHoldTracker(MeterRegistry meterRegistry,
+                                 @Value("${app.datasource.hold.enabled:true}") boolean enabled,
+                                 @Value("${app.datasource.hold.leak-threshold-ms:1000}") long leakThresholdMs,
+                                 @Value("${app.datasource.hold.offenders:50}") int offenders) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMs);
+        this.offenders = new AtomicReferenceArray<>(offenders);
+    }
+
+    @PostConstruct
+    void publish() {
+        PUBLISHED.set(this);
+    }
+
+    @PreDestroy
+    void unpublish() {
+        // 另一个容器已经发布了自己的跟踪器时保留它
+        PUBLISHED.compareAndSet(this, null);
+    }
+
+    /**
+     * 当前生效的跟踪器，Spring 启动前为 null（P6Spy 监听器不经过 Spring 容器创建）
+     */
+    public static ConnectionHoldTracker current() {
+        return PUBLISHED.get();
+    }
+
+    /**
+     * 包装数据源，跟踪其每次取出的连接；未开启时原样返回
+     */
+    public DataSource track(DataSource dataSource) {
+        return enabled ? new HoldTrackingDataSource(dataSource, this) : dataSource;
+    }
+
+    Hold checkout() {
+        Hold hold = new Hold(ownerOf(), Thread.currentThread(), CURRENT.get());
+        CURRENT.set(hold);
+        active.add(hold);
+        return hold;
+    }
+
+    void release(Hold hold) {
+        if (!active.remove(hold)) {
+            return;
+        }
+        if (CURRENT.get() == hold) {
+            if (hold.previous != null) {
+                CURRENT.set(hold.previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+        long heldNanos = System.nanoTime() - hold.startNanos;
+        long sqlNanos = Math.min(hold.sqlNanos.sum(), heldNanos);
+        long idleNanos = heldNanos - sqlNanos;
+
+        Timer.builder("app.datasource.connection.hold").tag("owner", hold.owner)
+                .register(meterRegistry).record(heldNanos, TimeUnit.NANOSECONDS);
+        Timer.builder("app.datasource.connection.hold.sql").tag("owner", hold.owner)
+                .register(meterRegistry).record(sqlNanos, TimeUnit.NANOSECONDS);
+        Timer.builder("app.datasource.connection.hold.idle").tag("owner", hold.owner)
+                .register(meterRegistry).record(idleNanos, TimeUnit.NANOSECONDS);
+        owners.computeIfAbsent(hold.owner, key -> new OwnerStats()).record(heldNanos, sqlNanos);
+
+        if (heldNanos >= leakThresholdNanos) {
+            Counter.builder("app.datasource.connection.leak.suspects").tag("owner", hold.owner)
+                    .register(meterRegistry).increment();
+            Map<String, Object> offender = hold.snapshot(heldNanos, sqlNanos);
+            long sequence = offenderSequence.getAndIncrement();
+            offenders.set((int) (sequence % offenders.length()), offender);
+            log.warn("连接占用 {}ms（SQL {}ms，语句 {} 条），占用方: {}",
+                    TimeUnit.NANOSECONDS.toMillis(heldNanos), TimeUnit.NANOSECONDS.toMillis(sqlNanos),
+                    hold.statements.sum(), hold.owner);
+        }
+    }
+
+    /**
+     * 把一条语句的执行时间计入当前线程持有的连接
+     */
+    public void recordStatement(long elapsedNanos) {
+        Hold hold = CURRENT.get();
+        if (hold != null) {
+            hold.sqlNanos.add(elapsedNanos);
+            hold.statements.increment();
+        }
+    }
+
+    /**
+     * 疑似泄漏报告：仍未归还的连接（超过阈值的附带持有线程的调用栈）、最近的超时占用、按占用方汇总
+     */
+    public Map<String, Object> report() {
+        long now = System.nanoTime();
+        List<Map<String, Object>> activeHolds = active.stream()
+                .sorted(Comparator.comparingLong(hold -> hold.startNanos))
+                .map(hold -> {
+                    long heldNanos = now - hold.startNanos;
+                    Map<String, Object> snapshot = hold.snapshot(heldNanos, hold.sqlNanos.sum());
+                    boolean suspect = heldNanos >= leakThresholdNanos;
+                    snapshot.put("leakSuspect", suspect);
+                    if (suspect) {
+                        snapshot.put("stackTrace", Arrays.stream(hold.thread.getStackTrace())
+                                .limit(STACK_DEPTH)
+                                .map(StackTraceElement::toString)
+                                .toList());
+                    }
+                    return snapshot;
+                })
+                .toList();
+
+        List<Map<String, Object>> recentOffenders = new ArrayList<>();
+        long newest = offenderSequence.get();
+        for (long sequence = newest - 1; sequence >= 0 && newest - sequence <= offenders.length(); sequence--) {
+            Map<String, Object> offender = offenders.get((int) (sequence % offenders.length()));
+            if (offender != null) {
+                recentOffenders.add(offender);
+            }
+        }
+
+        List<Map<String, Object>> byOwner = owners.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, OwnerStats> entry) -> entry.getValue().heldNanos.sum()).reversed())
+                .map(entry -> entry.getValue().snapshot(entry.getKey()))
+                .toList();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("leakThresholdMs", TimeUnit.NANOSECONDS.toMillis(leakThresholdNanos));
+        report.put("active", activeHolds);
+        report.put("recentOffenders", recentOffenders);
+        report.put("owners", byOwner);
+        return report;
+    }
+
+    public void reset() {
+        owners.clear();
+        for (int i = 0; i < offenders.length(); i++) {
+            offenders.set(i, null);
+        }
+        log.info("连接占用统计已重置");
+    }
+
+    /**
+     * 连接的占用方：优先取当前 @Transactional 方法，事务不属于本应用时取调用栈上第一个应用方法
+     */
+    static String ownerOf() {
+        String transactionName = TransactionSynchronizationManager.getCurrentTransactionName();
+        if (transactionName != null && transactionName.startsWith(APP_PACKAGE)) {
+            return simpleName(transactionName);
+        }
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> isApplicationFrame(frame.getClassName()))
+                .findFirst()
+                .map(frame -> simpleClassName(frame.getClassName()) + "." + frame.getMethodName())
+                .orElse(transactionName != null ? simpleName(transactionName) : "unknown"));
+    }
+
+    private static boolean isApplicationFrame(String className) {
+        return className.startsWith(APP_PACKAGE)
+                && !className.equals(ConnectionHoldTracker.class.getName())
+                && !className.equals(HoldTrackingDataSource.class.getName())
+                && !className.startsWith(APP_PACKAGE + "jdbc.")
+                && !className.startsWith(APP_PACKAGE + "config.");
+    }
+
+    /**
+     * com.example.demo.service.UserService.updateUser -> UserService.updateUser
+     */
+    private static String simpleName(String transactionName) {
+        int method = transactionName.lastIndexOf('.');
+        return method < 0 ? transactionName
+                : simpleClassName(transactionName.substring(0, method)) + transactionName.substring(method);
+    }
+
+    /**
+     * com.example.demo.service.UserService$$SpringCGLIB$$0 -> UserService
+     */
+    private static String simpleClassName(String className) {
+        int proxy = className.indexOf("$$");
+        String name = proxy < 0 ? className : className.substring(0, proxy);
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    static final class Hold {
+
+        private final String owner;
+        private final Thread thread;
+        private final Hold previous;
+        private final Instant checkoutTime = Instant.now();
+        private final long startNanos = System.nanoTime();
+        private final LongAdder sqlNanos = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+
+        Hold(String owner, Thread thread, Hold previous) {
+            this.owner = owner;
+            this.thread = thread;
+            this.previous = previous;
+        }
+
+        Map<String, Object> snapshot(long heldNanos, long sqlNanos) {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("owner", owner);
+            snapshot.put("thread", thread.getName());
+            snapshot.put("checkoutTime", checkoutTime.toString());
+            snapshot.put("heldMs", TimeUnit.NANOSECONDS.toMillis(heldNanos));
+            snapshot.put("sqlMs", TimeUnit.NANOSECONDS.toMillis(sqlNanos));
+            snapshot.put("idleMs", TimeUnit.NANOSECONDS.toMillis(Math.max(heldNanos - sqlNanos, 0)));
+            snapshot.put("statements", statements.sum());
+            return snapshot;
+        }
+    }
+
+    private static final class OwnerStats {
+
+        private final LongAdder holds = new LongAdder();
+        private final LongAdder heldNanos = new LongAdder();
+        private final LongAdder sqlNanos = new LongAdder();
+        private final LongAccumulator maxHeldNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long held, long sql) {
+            holds.increment();
+            heldNanos.add(held);
+            sqlNanos.add(sql);
+            maxHeldNanos.accumulate(held);
+        }
+
+        Map<String, Object> snapshot(String owner) {
+            long held = heldNanos.sum();
+            long sql = sqlNanos.sum();
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("owner", owner);
+            snapshot.put("holds", holds.sum());
+            snapshot.put("totalHeldMs", TimeUnit.NANOSECONDS.toMillis(held));
+            snapshot.put("sqlMs", TimeUnit.NANOSECONDS.toMillis(sql));
+            snapshot.put("idleMs", TimeUnit.NANOSECONDS.toMillis(held - sql));
+            snapshot.put("idleRatio", held == 0 ? 0 : Math.round((held - sql) * 1000.0 / held) / 1000.0);
+            snapshot.put("maxHeldMs", TimeUnit.NANOSECONDS.toMillis(maxHeldNanos.get()));
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.demo.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 读写分离路由数据源
+ *
+ * 只读事务（@Transactional(readOnly = true)）路由到从库，其余路由到主库。
+ * 路由键在真正获取连接时才计算，因此外层必须包一层 LazyConnectionDataSourceProxy，
+ * 否则事务开始时只读标记尚未设置。
+ * 每次路由的目标记录在 app.datasource.routing{target} 指标中。
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private final Counter primaryCounter;
+    private final Counter replicaCounter;
+
+    public ReadWriteRoutingDataSource(MeterRegistry meterRegistry) {
+        this.primaryCounter = meterRegistry.counter("app.datasource.routing", "target", PRIMARY);
+        this.replicaCounter = meterRegistry.counter("app.datasource.routing", "target", REPLICA);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            replicaCounter.increment();
+            return REPLICA;
+        }
+        primaryCounter.increment();
+        return PRIMARY;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo.datasource;
+
+import com.example.demo.entity.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * User 实体监听器：把写入过的用户 ID 交给 {@link ReplicaSynchronizer}，事务提交后同步到从库
+ *
+ * 未开启从库时不做任何事情。
+ */
+@Component
+public class ReplicaSyncListener {
+
+    private final ObjectProvider<ReplicaSynchronizer> replicaSynchronizer;
+
+    public ReplicaSyncListener(ObjectProvider<ReplicaSynchronizer> replicaSynchronizer) {
+        this.replicaSynchronizer = replicaSynchronizer;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void afterWrite(User user) {
+        ReplicaSynchronizer synchronizer = replicaSynchronizer.getIfAvailable();
+        if (synchronizer != null) {
+            synchronizer.recordChange(user.getId());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.demo.datasource;
+
+import com.example.demo.config.DataSourceConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 本地从库同步器（只读副本的替身）
+ *
+ * 启动时通过 H2 的 SCRIPT 命令导出主库的表结构和数据并在从库重放；
+ * 之后由 {@link ReplicaSyncListener} 记录每个事务中写过的用户 ID，
+ * 在事务提交后从主库重新读取这些行并 MERGE 到从库（行已不存在则从从库删除）。
+ *
+ * 同步在提交线程上同步执行，因此同一客户端写入后立即读取也能读到自己的数据。
+ * 同步失败只记录日志和指标，不影响主库事务。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.datasource.replica.enabled", havingValue = "true")
+public class ReplicaSynchronizer {
+
+    private static final String TABLE = "users";
+    private static final int SYNC_CHUNK_SIZE = 500;
+
+    private final JdbcTemplate primaryJdbc;
+    private final NamedParameterJdbcTemplate primaryNamedJdbc;
+    private final JdbcTemplate replicaJdbc;
+    private final NamedParameterJdbcTemplate replicaNamedJdbc;
+    private final AtomicBoolean bootstrapped = new AtomicBoolean();
+
+    private final Timer syncTimer;
+    private final Counter syncedRows;
+    private final Counter syncFailures;
+
+    public ReplicaSynchronizer(@Qualifier(DataSourceConfig.PRIMARY_DATA_SOURCE) DataSource primaryDataSource,
+                               @Qualifier(DataSourceConfig.REPLICA_DATA_SOURCE) DataSource replicaDataSource,
+                               MeterRegistry meterRegistry,
+                               ConnectionHoldTracker connectionHoldTracker) {
+        // 同步绕过读写分离数据源直接访问两个连接池，单独包装以计入连接占用时间
+        this.primaryJdbc = new JdbcTemplate(connectionHoldTracker.track(primaryDataSource));
+        this.primaryNamedJdbc = new NamedParameterJdbcTemplate(primaryJdbc);
+        this.replicaJdbc = new JdbcTemplate(connectionHoldTracker.track(replicaDataSource));
+        this.replicaNamedJdbc = new NamedParameterJdbcTemplate(replicaJdbc);
+        this.syncTimer = meterRegistry.timer("app.datasource.replica.sync");
+        this.syncedRows = meterRegistry.counter("app.datasource.replica.synced.rows");
+        this.syncFailures = meterRegistry.counter("app.datasource.replica.sync.failures");
+    }
+
+    /**
+     * 容器刷新完成（Hibernate 已在主库建表）后复制主库到从库
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void bootstrap() {
+        if (!bootstrapped.compareAndSet(false, true)) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        List<String> statements = primaryJdbc.queryForList("SCRIPT", String.class);
+        replicaJdbc.execute("DROP ALL OBJECTS");
+        for (String statement : statements) {
+            replicaJdbc.execute(statement);
+        }
+        log.info("从库初始化完成，执行语句数: {}, 耗时: {}ms", statements.size(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 记录一次用户写入，事务提交后同步到从库；不在事务中时立即同步
+     */
+    public void recordChange(Long id) {
+        if (id == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            sync(List.of(id));
+            return;
+        }
+        // 同步回调按事务隔离（REQUIRES_NEW 会挂起外层事务的回调），在当前事务的回调里累积 ID
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingSync pendingSync && pendingSync.owner() == this) {
+                pendingSync.ids.add(id);
+                return;
+            }
+        }
+        PendingSync pendingSync = new PendingSync();
+        pendingSync.ids.add(id);
+        TransactionSynchronizationManager.registerSynchronization(pendingSync);
+    }
+
+    private void sync(Collection<Long> ids) {
+        try {
+            syncTimer.record(() -> {
+                List<Long> idList = new ArrayList<>(ids);
+                for (int from = 0; from < idList.size(); from += SYNC_CHUNK_SIZE) {
+                    syncChunk(idList.subList(from, Math.min(from + SYNC_CHUNK_SIZE, idList.size())));
+                }
+            });
+            syncedRows.increment(ids.size());
+        } catch (Exception e) {
+            syncFailures.increment();
+            log.error("从库同步失败，ID 数量: {}", ids.size(), e);
+        }
+    }
+
+    private void syncChunk(List<Long> ids) {
+        Map<String, Object> params = Map.of("ids", ids);
+        List<Map<String, Object>> rows = primaryNamedJdbc.queryForList(
+                "SELECT * FROM " + TABLE + " WHERE id IN (:ids)", params);
+
+        Set<Long> missing = new HashSet<>(ids);
+        if (!rows.isEmpty()) {
+            // 按列名生成 MERGE，表结构变化时无需修改同步代码
+            List<String> columns = new ArrayList<>(rows.get(0).keySet());
+            String sql = "MERGE INTO " + TABLE + " (" + String.join(", ", columns) + ") KEY (id) VALUES ("
+                    + String.join(", ", columns.stream().map(column -> "?").toList()) + ")";
+            List<Object[]> batch = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                batch.add(columns.stream().map(row::get).toArray());
+                missing.remove(((Number) row.get("id")).longValue());
+            }
+            replicaJdbc.batchUpdate(sql, batch);
+        }
+        if (!missing.isEmpty()) {
+            replicaNamedJdbc.update("DELETE FROM " + TABLE + " WHERE id IN (:ids)", Map.of("ids", missing));
+        }
+    }
+
+    /**
+     * 单个事务内待同步的用户 ID
+     */
+    private final class PendingSync implements TransactionSynchronization {
+
+        private final Set<Long> ids = new LinkedHashSet<>();
+
+        private ReplicaSynchronizer owner() {
+            return ReplicaSynchronizer.this;
+        }
+
+        @Override
+        public void afterCommit() {
+            sync(ids);
+        }
+    }
+}
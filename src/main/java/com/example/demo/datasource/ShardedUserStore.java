@@ -0,0 +1,395 @@
+package com.example.demo.datasource;
+
+import com.example.demo.concurrent.ExecutorRegistry;
+import com.example.demo.concurrent.SaturationPolicy;
+import com.example.demo.config.DataSourceConfig;
+import com.example.demo.entity.User;
+import com.example.demo.repository.projection.UserView;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 按用户名哈希分片的用户存储
+ *
+ * 开启后用户行只保存在分片中（本地使用多个 H2 实例），主库的 users 表不再写入。
+ * 每一行按 username 的哈希值落到唯一的分片，写入直接在所属分片上执行：
+ * - ID 由各分片的序列分配，第 i 个分片（从 0 开始）分配 i+1、i+1+N、i+1+2N……，全局不重复，也能由 ID 算出创建时的分片
+ * - 用户名唯一由所属分片的唯一约束保证；邮箱不是分片键，写入前并行检查其他分片，检查与写入之间并发写入的相同邮箱不能拦截
+ * - 修改用户名会把行迁移到新分片：先写入新分片，再按版本号删除旧行，删除失败时撤回新行并按乐观锁冲突处理
+ * - 更新带 version 条件，影响 0 行时抛出乐观锁异常，与 JPA 的 @Version 行为一致
+ *
+ * 查询：
+ * - 按用户名查询、用户名存在性检查只访问一个分片
+ * - 按 ID 查询先访问创建时的分片，改名迁移过的行再并行查找其他分片
+ * - 列表、分页、计数、邮箱存在性检查并行访问所有分片后合并结果
+ * 每个分片每种操作的耗时记录在 app.datasource.shard.query{shard, operation} 指标中。
+ *
+ * 分片之间没有分布式事务，涉及多个用户的单库事务（批量写入、导入等）在分片模式下不可用，见 {@link com.example.demo.service.UserService}。
+ * 默认关闭，通过 app.datasource.shards.enabled=true 开启。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.datasource.shards.enabled", havingValue = "true")
+public class ShardedUserStore {
+
+    public static final String FAN_OUT_POOL = "user-shards";
+
+    private static final String TABLE = "users";
+    private static final String SEQUENCE = "users_shard_seq";
+    private static final String COLUMNS = "id, username, email, phone, age, active, version";
+
+    private static final RowMapper<UserView> USER_VIEW_MAPPER = (rs, rowNum) -> new UserView(
+            rs.getLong("id"),
+            rs.getString("username"),
+            rs.getString("email"),
+            rs.getString("phone"),
+            rs.getObject("age", Integer.class),
+            rs.getObject("active", Boolean.class),
+            rs.getObject("version", Long.class));
+
+    private final JdbcTemplate primaryJdbc;
+    private final List<Shard> shards;
+    private final ThreadPoolTaskExecutor executor;
+    private final MeterRegistry meterRegistry;
+    private final AtomicBoolean bootstrapped = new AtomicBoolean();
+
+    public ShardedUserStore(@Qualifier(DataSourceConfig.PRIMARY_DATA_SOURCE) DataSource primaryDataSource,
+                            DataSourceProperties properties,
+                            MeterRegistry meterRegistry,
+                            ConnectionHoldTracker connectionHoldTracker,
+                            ExecutorRegistry executorRegistry,
+                            @Value("${app.datasource.shards.urls}") List<String> urls,
+                            @Value("${app.datasource.shards.pool-size:5}") int poolSize) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("app.datasource.shards.urls 至少需要一个分片");
+        }
+        this.primaryJdbc = new JdbcTemplate(primaryDataSource);
+        this.meterRegistry = meterRegistry;
+
+        List<Shard> shardList = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(urls.get(i).strip())
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword())
+                    .build();
+            dataSource.setPoolName("users-shard-" + i);
+            dataSource.setMaximumPoolSize(poolSize);
+            // 分片连接池不经过读写分离数据源，单独包装以计入连接占用时间
+            shardList.add(new Shard(i, dataSource, new JdbcTemplate(connectionHoldTracker.track(dataSource))));
+        }
+        this.shards = List.copyOf(shardList);
+
+        // 并行查询的线程池：饱和时由调用线程执行该分片的查询，退化为串行而不是失败
+        this.executor = executorRegistry.executor(FAN_OUT_POOL, new ExecutorRegistry.PoolSpec(
+                shards.size(), shards.size() * poolSize, 100, SaturationPolicy.CALLER_RUNS));
+        log.info("用户分片存储初始化，分片数: {}", shards.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        shards.forEach(shard -> shard.dataSource.close());
+    }
+
+    /**
+     * 容器刷新完成（Hibernate 已在主库建表）后按主库的表结构在每个分片建表，并创建分片自己的 ID 序列
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void bootstrap() {
+        if (!bootstrapped.compareAndSet(false, true)) {
+            return;
+        }
+        List<String> statements = primaryJdbc.queryForList("SCRIPT NODATA TABLE " + TABLE, String.class);
+        for (Shard shard : shards) {
+            shard.jdbc.execute("DROP TABLE IF EXISTS " + TABLE);
+            shard.jdbc.execute("DROP SEQUENCE IF EXISTS " + SEQUENCE);
+            for (String statement : statements) {
+                shard.jdbc.execute(statement);
+            }
+            shard.jdbc.execute("CREATE SEQUENCE " + SEQUENCE
+                    + " START WITH " + (shard.index + 1) + " INCREMENT BY " + shards.size());
+        }
+        log.info("分片建表完成，分片数: {}", shards.size());
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    /**
+     * 用户名所属分片的序号
+     */
+    public int shardFor(String username) {
+        return Math.floorMod(mix(username.hashCode()), shards.size());
+    }
+
+    /**
+     * 写入新用户：在所属分片分配 ID 并 INSERT，返回写入后的行
+     *
+     * @throws DuplicateKeyException 用户名或邮箱已存在，异常信息中包含违反的约束名
+     */
+    public UserView insert(User user) {
+        Shard shard = shards.get(shardFor(user.getUsername()));
+        requireEmailAvailable(shard, user.getEmail(), 0L);
+        return shard.timed("insert", jdbc -> {
+            Long id = jdbc.queryForObject("VALUES NEXT VALUE FOR " + SEQUENCE, Long.class);
+            UserView row = new UserView(id, user.getUsername(), user.getEmail(), user.getPhone(),
+                    user.getAge(), user.getActive(), 0L);
+            insertRow(jdbc, row);
+            return row;
+        });
+    }
+
+    /**
+     * 按版本号更新用户；用户名变化后所属分片不同时把行迁移到新分片
+     *
+     * @param current 更新前读取到的行（版本号作为乐观锁条件）
+     * @param changes 新的字段值，id / version 被忽略
+     * @throws ObjectOptimisticLockingFailureException 行已被其他请求修改或删除
+     * @throws DuplicateKeyException                   新的用户名或邮箱已存在
+     */
+    public UserView update(UserView current, User changes) {
+        Shard from = shards.get(shardFor(current.username()));
+        Shard to = shards.get(shardFor(changes.getUsername()));
+        requireEmailAvailable(to, changes.getEmail(), current.id());
+        UserView updated = new UserView(current.id(), changes.getUsername(), changes.getEmail(), changes.getPhone(),
+                changes.getAge(), changes.getActive(), current.version() + 1);
+
+        if (from == to) {
+            int rows = from.timed("update", jdbc -> jdbc.update(
+                    "UPDATE " + TABLE + " SET username = ?, email = ?, phone = ?, age = ?, active = ?, version = ?"
+                            + " WHERE id = ? AND version = ?",
+                    updated.username(), updated.email(), updated.phone(), updated.age(), updated.active(),
+                    updated.version(), current.id(), current.version()));
+            if (rows == 0) {
+                throw new ObjectOptimisticLockingFailureException(User.class, current.id());
+            }
+            return updated;
+        }
+
+        to.timed("migrateIn", jdbc -> {
+            insertRow(jdbc, updated);
+            return null;
+        });
+        int removed = from.timed("migrateOut", jdbc -> jdbc.update(
+                "DELETE FROM " + TABLE + " WHERE id = ? AND version = ?", current.id(), current.version()));
+        if (removed == 0) {
+            to.timed("migrateUndo", jdbc -> jdbc.update("DELETE FROM " + TABLE + " WHERE id = ?", current.id()));
+            throw new ObjectOptimisticLockingFailureException(User.class, current.id());
+        }
+        log.info("用户改名后迁移分片: id={}, 分片 {} -> {}", current.id(), from.index, to.index);
+        return updated;
+    }
+
+    /**
+     * 删除用户（所属分片由用户名确定）
+     */
+    public boolean delete(UserView user) {
+        Shard shard = shards.get(shardFor(user.username()));
+        return shard.timed("delete", jdbc -> jdbc.update("DELETE FROM " + TABLE + " WHERE id = ?", user.id())) > 0;
+    }
+
+    /**
+     * 按用户名查询：只访问所属分片
+     */
+    public Optional<UserView> findByUsername(String username) {
+        Shard shard = shards.get(shardFor(username));
+        return shard.timed("findByUsername", jdbc -> jdbc.query(
+                        "SELECT " + COLUMNS + " FROM " + TABLE + " WHERE username = ?", USER_VIEW_MAPPER, username))
+                .stream().findFirst();
+    }
+
+    /**
+     * 按 ID 查询：先访问分配该 ID 的分片，没有找到（改名后已迁移，或不存在）时并行查找其他分片
+     */
+    public Optional<UserView> findById(Long id) {
+        Shard home = shards.get((int) Math.floorMod(id - 1, (long) shards.size()));
+        Optional<UserView> user = home.timed("findById", jdbc -> findById(jdbc, id));
+        if (user.isPresent() || shards.size() == 1) {
+            return user;
+        }
+        return fanOut("findByIdMigrated", (shard, jdbc) -> shard == home ? Optional.<UserView>empty() : findById(jdbc, id))
+                .stream().flatMap(Optional::stream).findFirst();
+    }
+
+    /**
+     * 用户名存在性检查：只访问所属分片
+     */
+    public boolean existsByUsername(String username) {
+        Shard shard = shards.get(shardFor(username));
+        return shard.timed("existsByUsername", jdbc -> Boolean.TRUE.equals(jdbc.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + TABLE + " WHERE username = ?)", Boolean.class, username)));
+    }
+
+    /**
+     * 邮箱存在性检查：邮箱不是分片键，并行检查所有分片
+     */
+    public boolean existsByEmail(String email) {
+        return fanOut("existsByEmail", (shard, jdbc) -> emailExists(jdbc, email, 0L)).contains(Boolean.TRUE);
+    }
+
+    /**
+     * 查询所有用户：并行读取各分片后按 ID 合并
+     */
+    public List<UserView> findAll() {
+        return merge(fanOut("findAll", (shard, jdbc) -> jdbc.query(
+                "SELECT " + COLUMNS + " FROM " + TABLE + " ORDER BY id", USER_VIEW_MAPPER)), Integer.MAX_VALUE);
+    }
+
+    /**
+     * keyset 分页：每个分片取 ID 大于 afterId 的前 limit 行，合并后取全局前 limit 行
+     */
+    public List<UserView> findPage(long afterId, int limit) {
+        return merge(fanOut("findPage", (shard, jdbc) -> jdbc.query(
+                "SELECT " + COLUMNS + " FROM " + TABLE + " WHERE id > ? ORDER BY id LIMIT ?",
+                USER_VIEW_MAPPER, afterId, limit)), limit);
+    }
+
+    /**
+     * 用户总数：并行计数后求和
+     */
+    public long count() {
+        return fanOut("count", (shard, jdbc) -> jdbc.queryForObject("SELECT COUNT(*) FROM " + TABLE, Long.class))
+                .stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * 邮箱在目标分片之外是否已被其他用户占用；目标分片内由唯一约束保证
+     */
+    private void requireEmailAvailable(Shard target, String email, Long selfId) {
+        if (shards.size() == 1) {
+            return;
+        }
+        boolean taken = fanOut("emailCheck", (shard, jdbc) -> shard != target && emailExists(jdbc, email, selfId))
+                .contains(Boolean.TRUE);
+        if (taken) {
+            // 与单库唯一约束的异常信息一样带上约束名，调用方按约束名转换为业务异常
+            throw new DuplicateKeyException("违反跨分片唯一约束 " + User.UK_EMAIL + ": " + email);
+        }
+    }
+
+    private static boolean emailExists(JdbcTemplate jdbc, String email, Long selfId) {
+        return Boolean.TRUE.equals(jdbc.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + TABLE + " WHERE email = ? AND id <> ?)", Boolean.class, email, selfId));
+    }
+
+    private static Optional<UserView> findById(JdbcTemplate jdbc, Long id) {
+        return jdbc.query("SELECT " + COLUMNS + " FROM " + TABLE + " WHERE id = ?", USER_VIEW_MAPPER, id)
+                .stream().findFirst();
+    }
+
+    private static void insertRow(JdbcTemplate jdbc, UserView row) {
+        jdbc.update("INSERT INTO " + TABLE + " (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?)",
+                row.id(), row.username(), row.email(), row.phone(), row.age(), row.active(), row.version());
+    }
+
+    /**
+     * 合并各分片按 ID 升序的结果，最多返回 limit 行
+     */
+    private static List<UserView> merge(List<List<UserView>> perShard, int limit) {
+        List<UserView> users = new ArrayList<>();
+        perShard.forEach(users::addAll);
+        users.sort(Comparator.comparing(UserView::id));
+        return users.size() > limit ? new ArrayList<>(users.subList(0, limit)) : users;
+    }
+
+    /**
+     * 在所有分片上并行执行，按分片序号返回结果；任一分片失败时抛出该分片的异常
+     */
+    private <T> List<T> fanOut(String operation, ShardQuery<T> query) {
+        long startTime = System.nanoTime();
+        List<CompletableFuture<T>> futures = shards.stream()
+                .map(shard -> CompletableFuture.supplyAsync(
+                        () -> shard.timed(operation, jdbc -> query.apply(shard, jdbc)), executor))
+                .toList();
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("分片并行查询完成: operation={}, 分片数: {}, 耗时: {}ms",
+                    operation, shards.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
+        return results;
+    }
+
+    /**
+     * murmur3 fmix32：让相近的 hashCode 均匀分布到各分片
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    @FunctionalInterface
+    private interface ShardQuery<T> {
+
+        T apply(Shard shard, JdbcTemplate jdbc);
+    }
+
+    private final class Shard {
+
+        private final int index;
+        private final HikariDataSource dataSource;
+        private final JdbcTemplate jdbc;
+
+        private Shard(int index, HikariDataSource dataSource, JdbcTemplate jdbc) {
+            this.index = index;
+            this.dataSource = dataSource;
+            this.jdbc = jdbc;
+        }
+
+        private <T> T timed(String operation, Function<JdbcTemplate, T> query) {
+            Timer timer = Timer.builder("app.datasource.shard.query")
+                    .tag("shard", String.valueOf(index))
+                    .tag("operation", operation)
+                    .register(meterRegistry);
+            long startTime = System.nanoTime();
+            try {
+                return query.apply(jdbc);
+            } finally {
+                timer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.dto;
+
+import com.example.demo.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 并发修改演示结果：最终写入的用户以及为此经历的尝试与冲突次数
+ */
+@Data
+@AllArgsConstructor
+public class ConcurrentUpdateResult {
+
+    private User user;
+
+    private int attempts;
+
+    private int conflicts;
+}
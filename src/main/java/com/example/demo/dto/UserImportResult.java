@@ -0,0 +1,69 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 批量导入结果与进度
+ *
+ * 导入过程中同一个对象会持续更新，可通过进度接口并发读取。
+ */
+@Data
+@NoArgsConstructor
+public class UserImportResult {
+
+    private String importId;
+
+    private String format;
+
+    /**
+     * 已读取的数据行数（不含 CSV 表头和空行）
+     */
+    private volatile long totalRows;
+
+    private volatile long importedRows;
+
+    private volatile long failedRows;
+
+    /**
+     * 已提交（含失败）的分块数
+     */
+    private volatile int chunks;
+
+    private volatile boolean finished;
+
+    /**
+     * 导入是否中途终止（如等待写入许可超时），终止后不再读取剩余数据
+     */
+    private volatile boolean aborted;
+
+    private volatile String abortReason;
+
+    private volatile long elapsedMs;
+
+    /**
+     * 失败明细，最多保留有限条，避免大文件全部失败时占满内存
+     */
+    private List<Failure> failures = new CopyOnWriteArrayList<>();
+
+    /**
+     * 单条失败记录：解析失败和写入失败对应单行，导入终止时未提交的分块对应整个分块
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Failure {
+
+        private int chunk;
+
+        private long firstRow;
+
+        private long lastRow;
+
+        private String message;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.demo.dto;
+
+import com.example.demo.repository.projection.UserView;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 用户分页结果（keyset 分页）
+ */
+@Data
+@AllArgsConstructor
+public class UserPage {
+
+    private List<UserView> users;
+
+    /**
+     * 下一页游标，没有更多数据时为 null
+     */
+    private String nextCursor;
+
+    private boolean hasMore;
+}
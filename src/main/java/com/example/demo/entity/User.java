@@ -1,22 +1,41 @@
 package com.example.demo.entity;
 
+import com.example.demo.cache.UserBloomFilterListener;
+import com.example.demo.cache.UserSearchListener;
+import com.example.demo.cache.UserStatsListener;
+import com.example.demo.datasource.ReplicaSyncListener;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+        @UniqueConstraint(name = User.UK_USERNAME, columnNames = "username"),
+        // 唯一约束同时为 email 建立索引，existsByEmail 不再全表扫描
+        @UniqueConstraint(name = User.UK_EMAIL, columnNames = "email")
+})
+@EntityListeners({UserBloomFilterListener.class, UserStatsListener.class, UserSearchListener.class,
+        ReplicaSyncListener.class})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class User {
 
+    public static final String UK_USERNAME = "uk_users_username";
+    public static final String UK_EMAIL = "uk_users_email";
+
+    /**
+     * 使用 pooled 序列分配 ID：IDENTITY 会让 Hibernate 每次插入后立即执行 SQL 取回主键，
+     * 从而无法进行 JDBC 批量插入。每次从序列取 50 个 ID，批大小与之不同时只是取序列的频率不同，不影响批量写入。
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
-    @Column(nullable = false, unique = true, length = 50)
+    @Column(nullable = false, length = 50)
     private String username;
 
     @Column(nullable = false, length = 100)
@@ -29,4 +48,12 @@ public class User {
     private Integer age;
 
     private Boolean active;
+
+    /**
+     * 乐观锁版本号：UPDATE 语句带 version 条件，并发写入时后提交的事务失败，而不是静默覆盖前者的修改。
+     * 只读输出，避免客户端传入的版本号让新用户被当作已存在的实体处理。
+     */
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
 }
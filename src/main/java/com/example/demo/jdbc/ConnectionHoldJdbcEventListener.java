@@ -0,0 +1,23 @@
+package com.example.demo.jdbc;
+
+import com.example.demo.datasource.ConnectionHoldTracker;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+import java.sql.SQLException;
+
+/**
+ * 把语句执行时间计入当前线程持有的连接，用于区分连接占用期间的 SQL 时间与空闲时间
+ * （通过 META-INF/services 注册到 P6Spy）
+ */
+public class ConnectionHoldJdbcEventListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        ConnectionHoldTracker tracker = ConnectionHoldTracker.current();
+        if (tracker != null) {
+            tracker.recordStatement(timeElapsedNanos);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.example.demo.jdbc;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JDBC 埋点模式与采样配置
+ *
+ * P6Spy 通过 ServiceLoader 创建事件监听器，不经过 Spring 容器，
+ * 因此由 Spring 启动时 {@link #install} 一个实例，监听器通过 {@link #current()} 读取。
+ *
+ * - FULL：开发模式，Hibernate 输出格式化 SQL，sentry-jdbc 为每条语句创建 Span
+ * - PRODUCTION：关闭 SQL 输出，按事务采样，同一事务内相同的语句合并为一个聚合 Span，SQL 文本只在上报时整理
+ *
+ * 指标：
+ * jdbc.statements                     - P6Spy 测得的语句执行耗时（即底层 H2 耗时）
+ * jdbc.instrumentation.overhead       - 埋点监听器自身耗时，与 jdbc.statements 对比即为埋点开销
+ * jdbc.instrumentation.spans{type}    - 上报的 Span 数（single / collapsed）
+ * jdbc.instrumentation.collapsed      - 被合并进聚合 Span 的语句数
+ */
+public final class JdbcInstrumentation {
+
+    public enum Mode {
+        FULL, PRODUCTION;
+
+        public static Mode parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static volatile JdbcInstrumentation current;
+
+    private final Mode mode;
+    private final double sampleRate;
+    private final Timer statementTimer;
+    private final Timer overheadTimer;
+    private final Counter singleSpans;
+    private final Counter collapsedSpans;
+    private final Counter collapsedStatements;
+
+    public JdbcInstrumentation(Mode mode, double sampleRate, MeterRegistry meterRegistry) {
+        this.mode = mode;
+        this.sampleRate = sampleRate;
+        this.statementTimer = meterRegistry.timer("jdbc.statements");
+        this.overheadTimer = meterRegistry.timer("jdbc.instrumentation.overhead");
+        this.singleSpans = meterRegistry.counter("jdbc.instrumentation.spans", "type", "single");
+        this.collapsedSpans = meterRegistry.counter("jdbc.instrumentation.spans", "type", "collapsed");
+        this.collapsedStatements = meterRegistry.counter("jdbc.instrumentation.collapsed");
+    }
+
+    public static void install(JdbcInstrumentation instrumentation) {
+        current = instrumentation;
+    }
+
+    /**
+     * 当前生效的配置，Spring 启动完成前为 null
+     */
+    public static JdbcInstrumentation current() {
+        return current;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    boolean isProduction() {
+        return mode == Mode.PRODUCTION;
+    }
+
+    boolean sample() {
+        return sampleRate >= 1.0 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    void recordStatement(long elapsedNanos) {
+        statementTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordOverhead(long elapsedNanos) {
+        overheadTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordSingleSpan() {
+        singleSpans.increment();
+    }
+
+    void recordCollapsedSpan(long statements) {
+        collapsedSpans.increment();
+        collapsedStatements.increment(statements);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.demo.jdbc;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 单个请求的 SQL 语句预算
+ *
+ * 统计请求内执行的语句总数和每个 SQL 指纹的执行次数：
+ * - 语句总数超过 maxStatements：超出预算
+ * - 同一指纹执行次数达到 repeatThreshold：疑似 N+1（循环中逐条查询 / 写入）
+ * 每种违规在一个请求内只上报一次，交给构造时传入的处理器（记指标、告警或抛出异常）。
+ *
+ * 预算绑定在处理请求的线程上；@Async 任务通过 {@link com.example.demo.util.ContextSnapshot} 继承提交线程的预算，
+ * 因此计数是线程安全的。
+ */
+public final class QueryBudget {
+
+    public enum Action {
+        /**
+         * 记录指标并输出告警日志
+         */
+        WARN,
+        /**
+         * 记录指标并在违规的语句处抛出 {@link QueryBudgetExceededException}（用于测试）
+         */
+        FAIL;
+
+        public static Action parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    public enum ViolationType {
+        STATEMENTS, N_PLUS_ONE
+    }
+
+    public record Violation(ViolationType type, String endpoint, int count, int limit, String fingerprint) {
+
+        public String describe() {
+            return type == ViolationType.STATEMENTS
+                    ? String.format("%s 执行了 %d 条 SQL，超出预算 %d", endpoint, count, limit)
+                    : String.format("%s 疑似 N+1：同一语句执行了 %d 次（阈值 %d）: %s", endpoint, count, limit, fingerprint);
+        }
+    }
+
+    private static final ThreadLocal<QueryBudget> CURRENT = new ThreadLocal<>();
+
+    private final String endpoint;
+    private final int maxStatements;
+    private final int repeatThreshold;
+    private final Consumer<Violation> violationHandler;
+
+    private final AtomicInteger statements = new AtomicInteger();
+    private final Map<String, AtomicInteger> executions = new ConcurrentHashMap<>();
+    private final Set<String> reported = ConcurrentHashMap.newKeySet();
+
+    public QueryBudget(String endpoint, int maxStatements, int repeatThreshold, Consumer<Violation> violationHandler) {
+        this.endpoint = endpoint;
+        this.maxStatements = maxStatements;
+        this.repeatThreshold = repeatThreshold;
+        this.violationHandler = violationHandler;
+    }
+
+    public static QueryBudget current() {
+        return CURRENT.get();
+    }
+
+    public static void bind(QueryBudget budget) {
+        CURRENT.set(budget);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 记录一条已执行的语句
+     */
+    public void record(String fingerprint) {
+        int total = statements.incrementAndGet();
+        if (total > maxStatements && reported.add(ViolationType.STATEMENTS.name())) {
+            violationHandler.accept(new Violation(ViolationType.STATEMENTS, endpoint, total, maxStatements, null));
+        }
+        int repeats = executions.computeIfAbsent(fingerprint, key -> new AtomicInteger()).incrementAndGet();
+        if (repeats >= repeatThreshold && reported.add(fingerprint)) {
+            violationHandler.accept(new Violation(ViolationType.N_PLUS_ONE, endpoint, repeats, repeatThreshold, fingerprint));
+        }
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public int getStatements() {
+        return statements.get();
+    }
+
+    public boolean isViolated() {
+        return !reported.isEmpty();
+    }
+
+    /**
+     * 执行次数达到 N+1 阈值的指纹及其执行次数
+     */
+    public Map<String, Integer> repeatedStatements() {
+        return executions.entrySet().stream()
+                .filter(entry -> entry.getValue().get() >= repeatThreshold)
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().get()));
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.jdbc;
+
+/**
+ * 请求的 SQL 语句数超出预算或检测到 N+1（app.jdbc.budget.action=fail 时抛出）
+ */
+public class QueryBudgetExceededException extends RuntimeException {
+
+    private final QueryBudget.Violation violation;
+
+    public QueryBudgetExceededException(QueryBudget.Violation violation) {
+        super(violation.describe());
+        this.violation = violation;
+    }
+
+    public QueryBudget.Violation getViolation() {
+        return violation;
+    }
+}
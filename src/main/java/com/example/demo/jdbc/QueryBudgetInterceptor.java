@@ -0,0 +1,139 @@
+package com.example.demo.jdbc;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 按请求统计 SQL 语句数并检测 N+1
+ *
+ * 每个请求开始时按 "方法 路由模板"（如 GET /api/users/{id}）绑定一个 {@link QueryBudget}，
+ * 预算取 app.jdbc.budget.endpoints 中的配置，未配置的接口使用 default-max-statements。
+ * 语句由 {@link QueryBudgetJdbcEventListener} 计入；超出预算或同一指纹执行次数达到 repeat-threshold 时：
+ * - 始终累加 jdbc.budget.violations{endpoint,type}
+ * - action=warn：输出告警日志
+ * - action=fail：在违规的语句处抛出 {@link QueryBudgetExceededException}，让测试直接失败
+ *
+ * 异步请求（返回 CompletableFuture）：预算保存在请求属性中，请求线程归还时解绑，
+ * 异步阶段通过 {@link com.example.demo.util.ContextSnapshot} 计入同一个预算，结果分派回来时重新绑定并记录。
+ *
+ * 指标：
+ * jdbc.request.statements{endpoint}          - 每个请求执行的语句数
+ * jdbc.budget.violations{endpoint,type}      - 违规次数（type: statements / n_plus_one）
+ */
+@Slf4j
+@Component
+public class QueryBudgetInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String BUDGET_ATTRIBUTE = QueryBudgetInterceptor.class.getName() + ".budget";
+
+    private final boolean enabled;
+    private final int defaultMaxStatements;
+    private final int repeatThreshold;
+    private final QueryBudget.Action action;
+    private final Map<String, Integer> endpointBudgets;
+    private final MeterRegistry meterRegistry;
+
+    public QueryBudgetInterceptor(MeterRegistry meterRegistry,
+                                  @Value("${app.jdbc.budget.enabled:true}") boolean enabled,
+                                  @Value("${app.jdbc.budget.default-max-statements:50}") int defaultMaxStatements,
+                                  @Value("${app.jdbc.budget.repeat-threshold:10}") int repeatThreshold,
+                                  @Value("${app.jdbc.budget.action:warn}") String action,
+                                  @Value("${app.jdbc.budget.endpoints:}") String endpoints) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.defaultMaxStatements = defaultMaxStatements;
+        this.repeatThreshold = repeatThreshold;
+        this.action = QueryBudget.Action.parse(action);
+        this.endpointBudgets = parseBudgets(endpoints);
+        log.info("SQL 预算: 默认 {} 条/请求, N+1 阈值 {} 次, 超出时 {}, 接口预算 {}",
+                defaultMaxStatements, repeatThreshold, this.action, endpointBudgets);
+    }
+
+    /**
+     * 解析 "GET /api/users=2, POST /api/users/batch=10" 形式的接口预算
+     */
+    static Map<String, Integer> parseBudgets(String endpoints) {
+        Map<String, Integer> budgets = new HashMap<>();
+        for (String entry : endpoints.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int separator = trimmed.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("无效的 SQL 预算配置: " + trimmed);
+            }
+            String endpoint = trimmed.substring(0, separator).trim().replaceAll("\\s+", " ");
+            budgets.put(endpoint, Integer.parseInt(trimmed.substring(separator + 1).trim()));
+        }
+        return budgets;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!enabled) {
+            return true;
+        }
+        if (request.getDispatcherType() == DispatcherType.ASYNC
+                && request.getAttribute(BUDGET_ATTRIBUTE) instanceof QueryBudget budget) {
+            QueryBudget.bind(budget);
+            return true;
+        }
+        String endpoint = endpoint(request);
+        int maxStatements = endpointBudgets.getOrDefault(endpoint, defaultMaxStatements);
+        QueryBudget budget = new QueryBudget(endpoint, maxStatements, repeatThreshold, this::onViolation);
+        request.setAttribute(BUDGET_ATTRIBUTE, budget);
+        QueryBudget.bind(budget);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // 请求线程归还给容器，预算留在请求属性中，等结果分派回来后记录
+        QueryBudget.unbind();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        QueryBudget budget = QueryBudget.current();
+        if (budget == null) {
+            return;
+        }
+        QueryBudget.unbind();
+        DistributionSummary.builder("jdbc.request.statements")
+                .tag("endpoint", budget.getEndpoint())
+                .register(meterRegistry)
+                .record(budget.getStatements());
+        if (budget.isViolated()) {
+            log.warn("请求 {} 共执行 {} 条 SQL，重复执行的语句: {}",
+                    budget.getEndpoint(), budget.getStatements(), budget.repeatedStatements());
+        }
+    }
+
+    private void onViolation(QueryBudget.Violation violation) {
+        meterRegistry.counter("jdbc.budget.violations",
+                "endpoint", violation.endpoint(),
+                "type", violation.type().name().toLowerCase(Locale.ROOT)).increment();
+        if (action == QueryBudget.Action.FAIL) {
+            throw new QueryBudgetExceededException(violation);
+        }
+        log.warn("SQL 预算告警: {}", violation.describe());
+    }
+
+    private static String endpoint(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.demo.jdbc;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+import java.sql.SQLException;
+
+/**
+ * 把 P6Spy 上报的每条语句计入当前请求的 {@link QueryBudget}（通过 META-INF/services 注册到 P6Spy）
+ */
+public class QueryBudgetJdbcEventListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        QueryBudget budget = QueryBudget.current();
+        if (budget == null) {
+            return;
+        }
+        SqlStatementStats stats = SqlStatementStats.current();
+        String sql = statementInformation.getSql();
+        budget.record(stats != null ? stats.fingerprint(sql) : SqlFingerprint.of(sql));
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo.jdbc;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import io.sentry.ISpan;
+import io.sentry.Instrumenter;
+import io.sentry.Sentry;
+import io.sentry.SentryInstantDate;
+import io.sentry.SpanOptions;
+import io.sentry.SpanStatus;
+
+import java.sql.SQLException;
+import java.time.Instant;
+
+/**
+ * 生产模式的 JDBC 埋点监听器（通过 META-INF/services 注册到 P6Spy，与 sentry-jdbc 的监听器并列）
+ *
+ * - 事务内：每个事务开始时决定是否采样，采样的事务按 SQL 文本聚合执行次数与耗时，
+ *   事务结束时每种语句上报一个 db.query Span，未采样的事务只做计数
+ * - 事务外：每条语句独立采样，采样命中时上报一个 Span
+ * - 只读取 P6Spy 的原始 SQL（不拼接绑定参数），去注释、压缩空白等整理工作延迟到上报 Span 时才做
+ *
+ * FULL 模式下直接返回，由 sentry-jdbc 为每条语句创建 Span。
+ */
+public class SampledSpanJdbcEventListener extends SimpleJdbcEventListener {
+
+    static final String SPAN_OPERATION = "db.query";
+    static final String SPAN_ORIGIN = "auto.db.jdbc.sampled";
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        JdbcInstrumentation instrumentation = JdbcInstrumentation.current();
+        if (instrumentation == null || !instrumentation.isProduction()) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        try {
+            instrumentation.recordStatement(timeElapsedNanos);
+            TransactionStatements statements = TransactionStatements.current(instrumentation);
+            if (statements != null) {
+                statements.add(statementInformation.getSql(), timeElapsedNanos, startTime, e != null);
+            } else if (instrumentation.sample()) {
+                emitSingle(instrumentation, statementInformation.getSql(), timeElapsedNanos, e != null);
+            }
+        } finally {
+            instrumentation.recordOverhead(System.nanoTime() - startTime);
+        }
+    }
+
+    private static void emitSingle(JdbcInstrumentation instrumentation, String sql, long elapsedNanos, boolean failed) {
+        ISpan parent = Sentry.getSpan();
+        if (parent == null || parent.isNoOp()) {
+            return;
+        }
+        Instant end = Instant.now();
+        SpanOptions options = new SpanOptions();
+        options.setOrigin(SPAN_ORIGIN);
+        ISpan span = parent.startChild(SPAN_OPERATION, SqlFingerprint.compact(sql),
+                new SentryInstantDate(end.minusNanos(elapsedNanos)), Instrumenter.SENTRY, options);
+        span.finish(failed ? SpanStatus.INTERNAL_ERROR : SpanStatus.OK, new SentryInstantDate(end));
+        instrumentation.recordSingleSpan();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.jdbc;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 慢查询日志端点
+ *
+ * GET    /actuator/slowqueries?limit=50  最近的慢查询（最新的在前），含执行计划
+ * DELETE /actuator/slowqueries           清空慢查询日志
+ */
+@Component
+@Endpoint(id = "slowqueries")
+@RequiredArgsConstructor
+public class SlowQueryEndpoint {
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    private final SlowQueryLog slowQueryLog;
+
+    @ReadOperation
+    public Map<String, Object> recentQueries(@Nullable Integer limit) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("thresholdMs", slowQueryLog.getThresholdMs());
+        result.put("total", slowQueryLog.total());
+        result.put("queries", slowQueryLog.recent(limit == null || limit <= 0 ? DEFAULT_LIMIT : limit));
+        return result;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        slowQueryLog.reset();
+    }
+}
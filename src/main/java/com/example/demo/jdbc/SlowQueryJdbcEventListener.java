@@ -0,0 +1,23 @@
+package com.example.demo.jdbc;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+import java.sql.SQLException;
+
+/**
+ * 把耗时超过阈值的语句记入 {@link SlowQueryLog}（通过 META-INF/services 注册到 P6Spy）
+ *
+ * 拼接绑定参数和查找调用方只在语句确实超过阈值时进行，普通语句只做一次比较。
+ */
+public class SlowQueryJdbcEventListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        SlowQueryLog slowQueryLog = SlowQueryLog.current();
+        if (slowQueryLog != null && slowQueryLog.isSlow(timeElapsedNanos)) {
+            slowQueryLog.record(statementInformation.getSql(), statementInformation.getSqlWithValues(),
+                    timeElapsedNanos, e != null);
+        }
+    }
+}
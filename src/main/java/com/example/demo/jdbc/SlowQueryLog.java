@@ -0,0 +1,279 @@
+package com.example.demo.jdbc;
+
+import com.example.demo.config.DataSourceConfig;
+import com.example.demo.datasource.ConnectionHoldTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+
+/**
+ * 慢查询日志
+ *
+ * 耗时达到 threshold-ms 的语句记录 SQL、绑定参数、耗时、线程和发起调用的 service 方法，
+ * 存入容量固定的环形缓冲区（最旧的记录被覆盖），通过 /actuator/slowqueries 查询。
+ *
+ * - 绑定参数：redact-binds=true 时字符串参数替换为 '***'（用户名、邮箱、手机号等），只保留数字
+ * - 执行计划：由单个后台线程对主库执行 EXPLAIN，不占用请求线程；队列已满时放弃本次 EXPLAIN
+ *
+ * 指标：
+ * jdbc.slow.queries            - 慢查询次数
+ * jdbc.slow.explain.dropped    - 因队列已满被放弃的 EXPLAIN 次数
+ */
+@Slf4j
+@Component
+public class SlowQueryLog {
+
+    private static final String SERVICE_PACKAGE = "com.example.demo.service.";
+
+    /**
+     * 供 P6Spy 监听器使用的实例，初始化后发布、销毁时清除；单元测试中直接创建的实例不发布
+     */
+    private static final AtomicReference<SlowQueryLog> PUBLISHED = new AtomicReference<>();
+
+    private final boolean enabled;
+    private final long thresholdNanos;
+    private final boolean redactBinds;
+    private final boolean explain;
+    private final JdbcTemplate jdbcTemplate;
+    private final ThreadPoolTaskExecutor explainExecutor;
+
+    private final AtomicReferenceArray<SlowQuery> entries;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Counter slowQueries;
+    private final Counter droppedExplains;
+
+    public SlowQueryLog(@Qualifier(DataSourceConfig.PRIMARY_DATA_SOURCE) DataSource dataSource,
+                        MeterRegistry meterRegistry,
+                        ConnectionHoldTracker connectionHoldTracker,
+                        @Value("${app.jdbc.slow-query.enabled:true}") boolean enabled,
+                        @Value("${app.jdbc.slow-query.threshold-ms:100}") long thresholdMs,
+                        @Value("${app.jdbc.slow-query.capacity:200}") int capacity,
+                        @Value("${app.jdbc.slow-query.redact-binds:true}") boolean redactBinds,
+                        @Value("${app.jdbc.slow-query.explain:true}") boolean explain) {
+        this.enabled = enabled;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.redactBinds = redactBinds;
+        this.explain = explain;
+        // EXPLAIN 直接使用主库连接池，单独包装以计入连接占用时间
+        this.jdbcTemplate = new JdbcTemplate(connectionHoldTracker.track(dataSource));
+        this.entries = new AtomicReferenceArray<>(capacity);
+
+        this.explainExecutor = new ThreadPoolTaskExecutor();
+        this.explainExecutor.setCorePoolSize(1);
+        this.explainExecutor.setMaxPoolSize(1);
+        this.explainExecutor.setQueueCapacity(64);
+        this.explainExecutor.setThreadNamePrefix("slow-query-explain-");
+        this.explainExecutor.setDaemon(true);
+        this.explainExecutor.initialize();
+
+        this.slowQueries = meterRegistry.counter("jdbc.slow.queries");
+        this.droppedExplains = meterRegistry.counter("jdbc.slow.explain.dropped");
+    }
+
+    @PostConstruct
+    void publish() {
+        PUBLISHED.set(this);
+    }
+
+    /**
+     * 当前生效的慢查询日志，Spring 启动前为 null（P6Spy 监听器不经过 Spring 容器创建）
+     */
+    static SlowQueryLog current() {
+        return PUBLISHED.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        PUBLISHED.compareAndSet(this, null);
+        explainExecutor.shutdown();
+    }
+
+    boolean isSlow(long elapsedNanos) {
+        return enabled && elapsedNanos >= thresholdNanos;
+    }
+
+    /**
+     * 记录一条慢查询
+     *
+     * @param sql           带 ? 占位符的原始 SQL
+     * @param sqlWithValues 拼接了绑定参数的 SQL，同时用于 EXPLAIN
+     */
+    public void record(String sql, String sqlWithValues, long elapsedNanos, boolean failed) {
+        if (sql == null || isExplain(sql)) {
+            return;
+        }
+        slowQueries.increment();
+        long id = sequence.incrementAndGet();
+        SlowQuery entry = new SlowQuery(id, Instant.now(), TimeUnit.NANOSECONDS.toMicros(elapsedNanos) / 1000.0,
+                SqlFingerprint.compact(sql),
+                redactBinds ? redact(sqlWithValues) : SqlFingerprint.compact(sqlWithValues),
+                callerOf(), Thread.currentThread().getName(), failed);
+        entries.set((int) ((id - 1) % entries.length()), entry);
+        log.warn("慢查询 {}ms [{}]: {}", entry.durationMs, entry.caller, entry.sql);
+
+        if (explain && sqlWithValues != null && isExplainable(sqlWithValues)) {
+            try {
+                explainExecutor.execute(() -> explain(entry, sqlWithValues));
+            } catch (TaskRejectedException e) {
+                droppedExplains.increment();
+            }
+        }
+    }
+
+    private void explain(SlowQuery entry, String sqlWithValues) {
+        try {
+            entry.plan = jdbcTemplate.queryForList("EXPLAIN " + sqlWithValues, String.class).stream()
+                    .collect(Collectors.joining("\n"));
+        } catch (RuntimeException e) {
+            entry.plan = "EXPLAIN 失败: " + e.getMessage();
+            log.debug("慢查询 EXPLAIN 失败: {}", entry.sql, e);
+        }
+    }
+
+    /**
+     * 最近的 limit 条慢查询，最新的在前
+     */
+    public List<Map<String, Object>> recent(int limit) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        long newest = sequence.get();
+        for (long id = newest; id > 0 && newest - id < entries.length() && result.size() < limit; id--) {
+            SlowQuery entry = entries.get((int) ((id - 1) % entries.length()));
+            if (entry != null && entry.id == id) {
+                result.add(entry.snapshot());
+            }
+        }
+        return result;
+    }
+
+    public long getThresholdMs() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    public long total() {
+        return sequence.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+        log.info("慢查询日志已清空");
+    }
+
+    /**
+     * 把 SQL 中的字符串字面量替换为 '***'
+     */
+    static String redact(String sqlWithValues) {
+        if (sqlWithValues == null) {
+            return null;
+        }
+        String compact = SqlFingerprint.compact(sqlWithValues);
+        StringBuilder out = new StringBuilder(compact.length());
+        int i = 0;
+        while (i < compact.length()) {
+            char c = compact.charAt(i);
+            if (c != '\'') {
+                out.append(c);
+                i++;
+                continue;
+            }
+            i++;
+            while (i < compact.length()) {
+                if (compact.charAt(i) == '\'') {
+                    if (i + 1 < compact.length() && compact.charAt(i + 1) == '\'') {
+                        i += 2;
+                        continue;
+                    }
+                    break;
+                }
+                i++;
+            }
+            i++;
+            out.append("'***'");
+        }
+        return out.toString();
+    }
+
+    /**
+     * 发起语句的 service 方法（跳过 Spring 代理类），不在 service 中时返回 unknown
+     */
+    static String callerOf() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(SERVICE_PACKAGE) && !frame.getClassName().contains("$$"))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(SERVICE_PACKAGE.length()) + "." + frame.getMethodName())
+                .orElse("unknown"));
+    }
+
+    private static boolean isExplain(String sql) {
+        return sql.stripLeading().toLowerCase(Locale.ROOT).startsWith("explain");
+    }
+
+    private static boolean isExplainable(String sql) {
+        String statement = sql.stripLeading().toLowerCase(Locale.ROOT);
+        return statement.startsWith("select") || statement.startsWith("with")
+                || statement.startsWith("update") || statement.startsWith("delete")
+                || statement.startsWith("insert") || statement.startsWith("merge");
+    }
+
+    private static final class SlowQuery {
+
+        private final long id;
+        private final Instant timestamp;
+        private final double durationMs;
+        private final String sql;
+        private final String sqlWithValues;
+        private final String caller;
+        private final String thread;
+        private final boolean failed;
+        private volatile String plan;
+
+        SlowQuery(long id, Instant timestamp, double durationMs, String sql, String sqlWithValues,
+                  String caller, String thread, boolean failed) {
+            this.id = id;
+            this.timestamp = timestamp;
+            this.durationMs = durationMs;
+            this.sql = sql;
+            this.sqlWithValues = sqlWithValues;
+            this.caller = caller;
+            this.thread = thread;
+            this.failed = failed;
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("id", id);
+            snapshot.put("timestamp", timestamp.toString());
+            snapshot.put("durationMs", durationMs);
+            snapshot.put("caller", caller);
+            snapshot.put("thread", thread);
+            snapshot.put("failed", failed);
+            snapshot.put("sql", sql);
+            snapshot.put("sqlWithValues", sqlWithValues);
+            snapshot.put("plan", plan);
+            return snapshot;
+        }
+    }
+}
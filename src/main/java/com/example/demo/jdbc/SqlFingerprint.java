@@ -0,0 +1,155 @@
+package com.example.demo.jdbc;
+
+/**
+ * SQL 指纹：去掉注释和字面量后的规范化语句文本，同一类语句归为同一个指纹
+ *
+ * - 字符串、数字字面量替换为 ?
+ * - IN 列表中连续的占位符合并为 (?...)，参数个数不同的 IN 查询归为同一指纹
+ * - 去掉注释，压缩空白，引号外的内容转为小写
+ */
+public final class SqlFingerprint {
+
+    private SqlFingerprint() {
+    }
+
+    public static String of(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(sql.length());
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                appendSpace(out);
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i + 2);
+                i = end < 0 ? length : end + 1;
+                appendSpace(out);
+            } else if (c == '\'') {
+                // 字符串字面量，'' 为转义的单引号
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    i++;
+                }
+                appendPlaceholder(out);
+            } else if (Character.isDigit(c) && !isIdentifierPart(out)) {
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                appendPlaceholder(out);
+            } else if (Character.isWhitespace(c)) {
+                appendSpace(out);
+                i++;
+            } else if (c == '"') {
+                // 引号标识符保持原样
+                int end = sql.indexOf('"', i + 1);
+                int stop = end < 0 ? length : end + 1;
+                out.append(sql, i, stop);
+                i = stop;
+            } else {
+                out.append(Character.toLowerCase(c));
+                i++;
+            }
+        }
+        return collapseInLists(out.toString().strip());
+    }
+
+    /**
+     * 整理 SQL 文本：去掉 Hibernate 生成的前导注释并压缩空白，保留字面量（用于展示，不用于归类）
+     */
+    public static String compact(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        String text = sql.strip();
+        while (text.startsWith("/*")) {
+            int end = text.indexOf("*/");
+            if (end < 0) {
+                break;
+            }
+            text = text.substring(end + 2).stripLeading();
+        }
+        StringBuilder compact = new StringBuilder(text.length());
+        boolean whitespace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                whitespace = true;
+                continue;
+            }
+            if (whitespace && compact.length() > 0) {
+                compact.append(' ');
+            }
+            whitespace = false;
+            compact.append(c);
+        }
+        return compact.toString();
+    }
+
+    private static boolean isIdentifierPart(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char last = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+    }
+
+    private static void appendSpace(StringBuilder out) {
+        if (out.length() > 0 && out.charAt(out.length() - 1) != ' ') {
+            out.append(' ');
+        }
+    }
+
+    private static void appendPlaceholder(StringBuilder out) {
+        out.append('?');
+    }
+
+    /**
+     * 把 (?, ?, ?) 形式的占位符列表合并为 (?...)
+     */
+    private static String collapseInLists(String text) {
+        if (text.indexOf('?') < 0) {
+            return text;
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '(') {
+                int j = i + 1;
+                int placeholders = 0;
+                boolean onlyPlaceholders = true;
+                while (j < text.length() && text.charAt(j) != ')') {
+                    char p = text.charAt(j);
+                    if (p == '?') {
+                        placeholders++;
+                    } else if (p != ',' && p != ' ') {
+                        onlyPlaceholders = false;
+                        break;
+                    }
+                    j++;
+                }
+                if (onlyPlaceholders && placeholders > 0 && j < text.length()) {
+                    out.append("(?...)");
+                    i = j + 1;
+                    continue;
+                }
+            }
+            out.append(c);
+            i++;
+        }
+        return out.toString();
+    }
+}
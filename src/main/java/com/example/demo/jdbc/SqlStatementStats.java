@@ -0,0 +1,217 @@
+package com.example.demo.jdbc;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内 SQL 指纹统计（类似 pg_stat_statements）
+ *
+ * {@link SqlStatsJdbcEventListener} 把 P6Spy 上报的每条语句按 {@link SqlFingerprint} 归类，
+ * 累加调用次数、总耗时、最大耗时、失败次数，并记录到按 2 的幂划分的耗时直方图中。
+ * 所有计数器都是 LongAdder / 原子数组，记录路径无锁。
+ * 指纹数量超过 max-fingerprints 后，新的指纹统一记入 {@link #OVERFLOW_FINGERPRINT}。
+ *
+ * 统计结果通过 /actuator/sqlstats 查询。
+ */
+@Slf4j
+@Component
+public class SqlStatementStats {
+
+    public static final String OVERFLOW_FINGERPRINT = "<other>";
+
+    /**
+     * 直方图桶：第 i 个桶覆盖 [2^i, 2^(i+1)) 微秒，最后一个桶包含所有更长的耗时
+     */
+    private static final int BUCKETS = 32;
+
+    /**
+     * 供 P6Spy 监听器使用的实例，由 Spring 管理的 Bean 在初始化后发布；直接 new 出来的实例（单元测试）不发布
+     */
+    private static final AtomicReference<SqlStatementStats> PUBLISHED = new AtomicReference<>();
+
+    private final boolean enabled;
+    private final int maxFingerprints;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 原始 SQL 到指纹的缓存：Hibernate 对同一查询复用相同的 SQL 文本，避免每次重新规范化
+     */
+    private final ConcurrentHashMap<String, String> fingerprints = new ConcurrentHashMap<>();
+
+    public SqlStatementStats(@Value("${app.jdbc.stats.enabled:true}") boolean enabled,
+                             @Value("${app.jdbc.stats.max-fingerprints:1000}") int maxFingerprints) {
+        this.enabled = enabled;
+        this.maxFingerprints = maxFingerprints;
+    }
+
+    @PostConstruct
+    void publish() {
+        PUBLISHED.set(this);
+    }
+
+    /**
+     * 只清除自己发布的实例，不影响之后创建的其他容器
+     */
+    @PreDestroy
+    void unpublish() {
+        PUBLISHED.compareAndSet(this, null);
+    }
+
+    /**
+     * 当前生效的统计实例，Spring 启动前为 null（P6Spy 监听器不经过 Spring 容器创建）
+     */
+    static SqlStatementStats current() {
+        return PUBLISHED.get();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 原始 SQL 对应的指纹
+     */
+    public String fingerprint(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        String fingerprint = fingerprints.get(sql);
+        if (fingerprint == null) {
+            fingerprint = SqlFingerprint.of(sql);
+            // 拼接了字面量的 SQL 文本各不相同，缓存有上限，超过后只计算不缓存
+            if (fingerprints.size() < maxFingerprints * 4) {
+                fingerprints.put(sql, fingerprint);
+            }
+        }
+        return fingerprint;
+    }
+
+    public void record(String sql, long elapsedNanos, boolean failed) {
+        if (!enabled) {
+            return;
+        }
+        String fingerprint = fingerprint(sql);
+        Entry entry = entries.get(fingerprint);
+        if (entry == null) {
+            String key = entries.size() < maxFingerprints ? fingerprint : OVERFLOW_FINGERPRINT;
+            entry = entries.computeIfAbsent(key, Entry::new);
+        }
+        entry.record(elapsedNanos, failed);
+    }
+
+    /**
+     * 按总耗时或调用次数排序的前 limit 个指纹
+     *
+     * @param orderBy total（总耗时）或 calls（调用次数）
+     */
+    public List<Map<String, Object>> top(String orderBy, int limit) {
+        Comparator<Entry> comparator = "calls".equalsIgnoreCase(orderBy)
+                ? Comparator.comparingLong(Entry::calls)
+                : Comparator.comparingLong(Entry::totalNanos);
+        return entries.values().stream()
+                .sorted(comparator.reversed())
+                .limit(limit)
+                .map(Entry::snapshot)
+                .toList();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void reset() {
+        entries.clear();
+        log.info("SQL 指纹统计已重置");
+    }
+
+    static final class Entry {
+
+        private final String fingerprint;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        void record(long elapsedNanos, boolean failed) {
+            calls.increment();
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulate(elapsedNanos);
+            if (failed) {
+                errors.increment();
+            }
+            long micros = Math.max(TimeUnit.NANOSECONDS.toMicros(elapsedNanos), 1);
+            histogram.incrementAndGet(Math.min(63 - Long.numberOfLeadingZeros(micros), BUCKETS - 1));
+        }
+
+        long calls() {
+            return calls.sum();
+        }
+
+        long totalNanos() {
+            return totalNanos.sum();
+        }
+
+        /**
+         * 分位数估计：返回累计计数达到该比例的桶的上界（毫秒）
+         */
+        double percentileMs(double percentile) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long threshold = (long) Math.ceil(total * percentile);
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += counts[i];
+                if (cumulative >= threshold) {
+                    return (1L << (i + 1)) / 1000.0;
+                }
+            }
+            return (1L << BUCKETS) / 1000.0;
+        }
+
+        Map<String, Object> snapshot() {
+            long callCount = calls.sum();
+            long total = totalNanos.sum();
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("fingerprint", fingerprint);
+            snapshot.put("calls", callCount);
+            snapshot.put("errors", errors.sum());
+            snapshot.put("totalMs", round(total / 1_000_000.0));
+            snapshot.put("meanMs", round(callCount == 0 ? 0 : total / 1_000_000.0 / callCount));
+            snapshot.put("maxMs", round(maxNanos.get() / 1_000_000.0));
+            snapshot.put("p50Ms", percentileMs(0.50));
+            snapshot.put("p95Ms", percentileMs(0.95));
+            snapshot.put("p99Ms", percentileMs(0.99));
+            return snapshot;
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 1000) / 1000.0;
+        }
+    }
+}
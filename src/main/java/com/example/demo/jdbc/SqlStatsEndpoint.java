@@ -0,0 +1,43 @@
+package com.example.demo.jdbc;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SQL 指纹统计端点
+ *
+ * GET    /actuator/sqlstats?limit=20  按总耗时和调用次数排序的前 N 个指纹
+ * DELETE /actuator/sqlstats           清空统计
+ */
+@Component
+@Endpoint(id = "sqlstats")
+@RequiredArgsConstructor
+public class SqlStatsEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final SqlStatementStats sqlStatementStats;
+
+    @ReadOperation
+    public Map<String, Object> topStatements(@Nullable Integer limit) {
+        int top = limit == null || limit <= 0 ? DEFAULT_LIMIT : limit;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", sqlStatementStats.isEnabled());
+        result.put("fingerprints", sqlStatementStats.size());
+        result.put("byTotalTime", sqlStatementStats.top("total", top));
+        result.put("byCalls", sqlStatementStats.top("calls", top));
+        return result;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        sqlStatementStats.reset();
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.demo.jdbc;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+import java.sql.SQLException;
+
+/**
+ * 把 P6Spy 上报的每条语句计入 {@link SqlStatementStats}（通过 META-INF/services 注册到 P6Spy）
+ */
+public class SqlStatsJdbcEventListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        SqlStatementStats stats = SqlStatementStats.current();
+        if (stats != null) {
+            stats.record(statementInformation.getSql(), timeElapsedNanos, e != null);
+        }
+    }
+}
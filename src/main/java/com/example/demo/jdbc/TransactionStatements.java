@@ -0,0 +1,136 @@
+package com.example.demo.jdbc;
+
+import io.sentry.ISpan;
+import io.sentry.Instrumenter;
+import io.sentry.Sentry;
+import io.sentry.SentryInstantDate;
+import io.sentry.SpanOptions;
+import io.sentry.SpanStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 单个事务内执行过的语句，按 SQL 文本聚合，事务结束时每种语句上报一个 Span
+ *
+ * 当前事务的实例保存在 ThreadLocal 中，避免每条语句都遍历事务同步回调列表；
+ * REQUIRES_NEW 挂起外层事务时通过 suspend / resume 切换。
+ */
+final class TransactionStatements implements TransactionSynchronization {
+
+    private static final ThreadLocal<TransactionStatements> CURRENT = new ThreadLocal<>();
+
+    private final JdbcInstrumentation instrumentation;
+
+    /**
+     * 未采样的事务为 null，此时不记录任何语句
+     */
+    private final ISpan parent;
+    private final Map<String, Aggregate> aggregates;
+    private final Instant anchor;
+    private final long anchorNanoTime;
+
+    private TransactionStatements(JdbcInstrumentation instrumentation, ISpan parent) {
+        this.instrumentation = instrumentation;
+        this.parent = parent;
+        this.aggregates = parent != null ? new HashMap<>() : Map.of();
+        this.anchor = parent != null ? Instant.now() : null;
+        this.anchorNanoTime = System.nanoTime();
+    }
+
+    /**
+     * 当前事务的语句集合，不在事务中时返回 null；事务内第一条语句时决定是否采样
+     */
+    static TransactionStatements current(JdbcInstrumentation instrumentation) {
+        return current(instrumentation, Sentry::getSpan);
+    }
+
+    /**
+     * @param activeSpan 采样命中时获取聚合 Span 的父 Span
+     */
+    static TransactionStatements current(JdbcInstrumentation instrumentation, Supplier<ISpan> activeSpan) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        TransactionStatements statements = CURRENT.get();
+        if (statements == null) {
+            ISpan parent = instrumentation.sample() ? activeSpan.get() : null;
+            statements = new TransactionStatements(instrumentation, parent != null && !parent.isNoOp() ? parent : null);
+            TransactionSynchronizationManager.registerSynchronization(statements);
+            CURRENT.set(statements);
+        }
+        return statements;
+    }
+
+    void add(String sql, long elapsedNanos, long endNanoTime, boolean failed) {
+        if (parent == null) {
+            return;
+        }
+        Aggregate aggregate = aggregates.get(sql);
+        if (aggregate == null) {
+            aggregate = new Aggregate(endNanoTime - elapsedNanos);
+            aggregates.put(sql, aggregate);
+        }
+        aggregate.count++;
+        aggregate.totalNanos += elapsedNanos;
+        aggregate.maxNanos = Math.max(aggregate.maxNanos, elapsedNanos);
+        aggregate.lastEndNanoTime = endNanoTime;
+        if (failed) {
+            aggregate.errors++;
+        }
+    }
+
+    @Override
+    public void suspend() {
+        CURRENT.remove();
+    }
+
+    @Override
+    public void resume() {
+        CURRENT.set(this);
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        CURRENT.remove();
+        if (parent == null) {
+            return;
+        }
+        aggregates.forEach((sql, aggregate) -> {
+            SpanOptions options = new SpanOptions();
+            options.setOrigin(SampledSpanJdbcEventListener.SPAN_ORIGIN);
+            ISpan span = parent.startChild(SampledSpanJdbcEventListener.SPAN_OPERATION,
+                    SqlFingerprint.compact(sql),
+                    toDate(aggregate.firstStartNanoTime), Instrumenter.SENTRY, options);
+            span.setData("db.statement.count", aggregate.count);
+            span.setData("db.statement.total_ms", aggregate.totalNanos / 1_000_000.0);
+            span.setData("db.statement.max_ms", aggregate.maxNanos / 1_000_000.0);
+            span.setData("db.statement.errors", aggregate.errors);
+            span.finish(aggregate.errors > 0 ? SpanStatus.INTERNAL_ERROR : SpanStatus.OK,
+                    toDate(aggregate.lastEndNanoTime));
+            instrumentation.recordCollapsedSpan(aggregate.count);
+        });
+    }
+
+    private SentryInstantDate toDate(long nanoTime) {
+        return new SentryInstantDate(anchor.plusNanos(nanoTime - anchorNanoTime));
+    }
+
+    private static final class Aggregate {
+
+        private final long firstStartNanoTime;
+        private long lastEndNanoTime;
+        private int count;
+        private int errors;
+        private long totalNanos;
+        private long maxNanos;
+
+        private Aggregate(long firstStartNanoTime) {
+            this.firstStartNanoTime = firstStartNanoTime;
+        }
+    }
+}
@@ -1,10 +1,20 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.User;
+import com.example.demo.repository.projection.UserKeys;
+import com.example.demo.repository.projection.UserStatsRow;
+import com.example.demo.repository.projection.UserView;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -14,4 +24,60 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
 
     boolean existsByEmail(String email);
+
+    /*
+     * 以下只读查询返回 UserView 投影：只查询需要的列，结果不是托管实体，
+     * 不占用持久化上下文，也没有快照和脏检查开销。
+     */
+
+    List<UserView> findViewsByOrderByIdAsc();
+
+    /**
+     * keyset 分页：查询 ID 大于 afterId 的下一批用户，走主键索引，不使用 OFFSET
+     */
+    List<UserView> findViewsByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    Optional<UserView> findViewById(Long id);
+
+    Optional<UserView> findViewByUsername(String username);
+
+    /**
+     * 用户名或邮箱包含关键字（忽略大小写），搜索索引不可用时的回退查询，会全表扫描
+     */
+    List<UserView> findViewsByUsernameContainingIgnoreCaseOrEmailContainingIgnoreCaseOrderByIdAsc(
+            String username, String email, Limit limit);
+
+    /**
+     * 用户名或邮箱以关键字开头（忽略大小写），搜索索引不可用时 1~2 个字符的回退查询
+     */
+    List<UserView> findViewsByUsernameStartingWithIgnoreCaseOrEmailStartingWithIgnoreCaseOrderByIdAsc(
+            String username, String email, Limit limit);
+
+    /**
+     * 流式读取全部用户，用于导出
+     *
+     * 通过 JDBC fetch size 分批从游标拉取数据，并以只读方式加载实体，不保留脏检查快照。
+     * 必须在事务内调用，且调用方负责关闭 Stream。
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("select u from User u order by u.id")
+    Stream<User> streamAllOrderById();
+
+    /**
+     * 流式读取全部用户的 ID、用户名和邮箱，用于启动时预热布隆过滤器和搜索索引
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select u.id as id, u.username as username, u.email as email from User u")
+    Stream<UserKeys> streamAllKeys();
+
+    /**
+     * 流式读取全部用户的 id、年龄和状态，用于启动时预热统计快照
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select u.id as id, u.age as age, u.active as active from User u")
+    Stream<UserStatsRow> streamAllStats();
 }
@@ -0,0 +1,13 @@
+package com.example.demo.repository.projection;
+
+/**
+ * 用户唯一键投影：只查询 id、username 和 email 三列
+ */
+public interface UserKeys {
+
+    Long getId();
+
+    String getUsername();
+
+    String getEmail();
+}
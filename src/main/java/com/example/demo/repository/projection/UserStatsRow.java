@@ -0,0 +1,13 @@
+package com.example.demo.repository.projection;
+
+/**
+ * 用户统计投影：只查询 id、age、active 三列，用于预热列式统计快照
+ */
+public interface UserStatsRow {
+
+    Long getId();
+
+    Integer getAge();
+
+    Boolean getActive();
+}
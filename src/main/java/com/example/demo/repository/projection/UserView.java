@@ -0,0 +1,19 @@
+package com.example.demo.repository.projection;
+
+import com.example.demo.entity.User;
+
+/**
+ * 用户只读投影：查询结果直接构造为不可变对象，不进入持久化上下文，没有快照和脏检查开销
+ *
+ * 字段与 {@link User} 的 JSON 输出保持一致，接口响应格式不变。
+ */
+public record UserView(Long id, String username, String email, String phone,
+                       Integer age, Boolean active, Long version) {
+
+    /**
+     * 转换为游离的 User 对象（不受 EntityManager 管理）
+     */
+    public User toUser() {
+        return new User(id, username, email, phone, age, active, version);
+    }
+}
@@ -1,188 +1,228 @@
 package com.example.demo.service;
 
+import com.example.demo.concurrent.DelayScheduler;
+import com.example.demo.concurrent.ExecutorSaturatedException;
 import com.example.demo.entity.User;
 import com.example.demo.repository.UserRepository;
 import io.sentry.Breadcrumb;
 import io.sentry.Sentry;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * 异步追踪测试服务
  *
  * 用于验证在异步线程中，Sentry 的 Trace 上下文是否能正确传播，
  * 包括日志记录和数据库查询是否能被关联到同一个 Trace 中。
+ *
+ * 带延迟的异步任务是非阻塞的流水线：模拟的延迟由 {@link DelayScheduler} 完成，等待期间不占用线程，
+ * 数据库操作交给 @Async 使用的执行器（taskExecutor）。不含延迟的任务仍使用 @Async 方法。
+ *
+ * 用户总数通过 {@link UserService#countUsers()} 读取（统计快照就绪后不访问数据库），与 /api/users/count 一致。
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class AsyncTraceService {
 
+    private static final Duration INITIAL_DELAY = Duration.ofMillis(500);
+    private static final Duration STEP_DELAY = Duration.ofMillis(200);
+
     private final UserRepository userRepository;
+    private final UserService userService;
+    private final DelayScheduler delayScheduler;
+    private final Executor taskExecutor;
+
+    public AsyncTraceService(UserRepository userRepository,
+                             UserService userService,
+                             DelayScheduler delayScheduler,
+                             @Qualifier("taskExecutor") Executor taskExecutor) {
+        this.userRepository = userRepository;
+        this.userService = userService;
+        this.delayScheduler = delayScheduler;
+        this.taskExecutor = taskExecutor;
+    }
 
     /**
-     * 异步方法：执行数据库操作和日志记录
-     *
-     * 注意：默认情况下，Spring 的 @Async 不会自动传播 Sentry 的 Trace 上下文。
-     * 异步线程会创建新的 Trace ID。
+     * 异步方法：延迟后执行数据库操作和日志记录
      */
-    @Async
     public CompletableFuture<String> asyncDatabaseOperation(String username) {
-        log.info("📌 [异步线程] 开始执行异步任务，用户名: {}", username);
-        log.info("📌 [异步线程] 线程名称: {}", Thread.currentThread().getName());
-
-        try {
-            // 添加面包屑以便追踪
-            Breadcrumb breadcrumb = new Breadcrumb();
-            breadcrumb.setMessage("异步任务开始");
-            breadcrumb.setCategory("async");
-            breadcrumb.setData("username", username);
-            Sentry.addBreadcrumb(breadcrumb);
-
-            try {
-                // 模拟延迟
-                Thread.sleep(500);
-
-                // 查询用户
-                log.info("📌 [异步线程] 执行数据库查询: findByUsername");
-                User user = userRepository.findByUsername(username).orElse(null);
-
-                if (user != null) {
-                    log.info("📌 [异步线程] 找到用户: {}, 年龄: {}", user.getUsername(), user.getAge());
-                } else {
-                    log.warn("📌 [异步线程] 未找到用户: {}", username);
-                }
-
-                // 创建新用户
-                log.info("📌 [异步线程] 创建新用户");
-                User newUser = new User();
-                newUser.setUsername(username + "_async");
-                newUser.setEmail(username + "_async@example.com");
-                newUser.setPhone("13800138000");
-                newUser.setAge(25);
-                newUser.setActive(true);
-
-                User savedUser = userRepository.save(newUser);
-                log.info("📌 [异步线程] 用户创建成功: {}, ID: {}", savedUser.getUsername(), savedUser.getId());
-
-                // 再次查询所有用户
-                log.info("📌 [异步线程] 查询所有用户数量");
-                long userCount = userRepository.count();
-                log.info("📌 [异步线程] 当前用户总数: {}", userCount);
-
-                String result = String.format(
-                    "异步任务完成 - 创建用户: %s, ID: %d, 总用户数: %d",
-                    savedUser.getUsername(),
-                    savedUser.getId(),
-                    userCount
-                );
-
-                log.info("📌 [异步线程] {}", result);
-                log.info("📌 [异步线程] 任务完成时间: {}", System.currentTimeMillis());
-
-                // 添加成功完成的面包屑
-                Breadcrumb successBreadcrumb = new Breadcrumb();
-                successBreadcrumb.setMessage("异步任务成功完成");
-                successBreadcrumb.setCategory("async");
-                successBreadcrumb.setData("result", "success");
-                Sentry.addBreadcrumb(successBreadcrumb);
-
-                return CompletableFuture.completedFuture(result);
-
-            } catch (Exception e) {
-                log.error("📌 [异步线程] 异步任务执行失败", e);
-                Sentry.captureException(e);
-                return CompletableFuture.failedFuture(e);
-            }
-        } catch (Exception e) {
-            log.error("📌 [异步线程] 任务启动失败", e);
-            return CompletableFuture.failedFuture(e);
-        }
+        log.info("📌 [异步任务] 提交异步任务，用户名: {}", username);
+
+        // 添加面包屑以便追踪
+        Breadcrumb breadcrumb = new Breadcrumb();
+        breadcrumb.setMessage("异步任务开始");
+        breadcrumb.setCategory("async");
+        breadcrumb.setData("username", username);
+        Sentry.addBreadcrumb(breadcrumb);
+
+        // 模拟延迟，期间不占用线程
+        return delayScheduler.delay(INITIAL_DELAY)
+                .thenApplyAsync(ignored -> {
+                    log.info("📌 [异步线程] 线程名称: {}", Thread.currentThread().getName());
+
+                    // 查询用户
+                    log.info("📌 [异步线程] 执行数据库查询: findByUsername");
+                    User user = userRepository.findByUsername(username).orElse(null);
+
+                    if (user != null) {
+                        log.info("📌 [异步线程] 找到用户: {}, 年龄: {}", user.getUsername(), user.getAge());
+                    } else {
+                        log.warn("📌 [异步线程] 未找到用户: {}", username);
+                    }
+
+                    // 创建新用户
+                    log.info("📌 [异步线程] 创建新用户");
+                    User newUser = new User();
+                    newUser.setUsername(username + "_async");
+                    newUser.setEmail(username + "_async@example.com");
+                    newUser.setPhone("13800138000");
+                    newUser.setAge(25);
+                    newUser.setActive(true);
+
+                    User savedUser = userRepository.save(newUser);
+                    log.info("📌 [异步线程] 用户创建成功: {}, ID: {}", savedUser.getUsername(), savedUser.getId());
+
+                    // 再次查询所有用户
+                    log.info("📌 [异步线程] 查询所有用户数量");
+                    long userCount = userService.countUsers();
+                    log.info("📌 [异步线程] 当前用户总数: {}", userCount);
+
+                    String result = String.format(
+                        "异步任务完成 - 创建用户: %s, ID: %d, 总用户数: %d",
+                        savedUser.getUsername(),
+                        savedUser.getId(),
+                        userCount
+                    );
+
+                    log.info("📌 [异步线程] {}", result);
+                    log.info("📌 [异步线程] 任务完成时间: {}", System.currentTimeMillis());
+
+                    // 添加成功完成的面包屑
+                    Breadcrumb successBreadcrumb = new Breadcrumb();
+                    successBreadcrumb.setMessage("异步任务成功完成");
+                    successBreadcrumb.setCategory("async");
+                    successBreadcrumb.setData("result", "success");
+                    Sentry.addBreadcrumb(successBreadcrumb);
+
+                    return result;
+                }, taskExecutor)
+                .whenComplete((result, e) -> {
+                    if (e != null) {
+                        reportFailure("📌 [异步线程] 异步任务执行失败", e);
+                    }
+                });
     }
 
     /**
-     * 异步方法：执行多个数据库操作
+     * 异步方法（@Async）：经 Spring 代理提交到 taskExecutor，查询用户总数
      */
     @Async
-    @Transactional
+    public CompletableFuture<Long> asyncUserCount() {
+        log.info("📌 [@Async] 线程名称: {}", Thread.currentThread().getName());
+        long count = userService.countUsers();
+        log.info("📌 [@Async] 当前用户总数: {}", count);
+        return CompletableFuture.completedFuture(count);
+    }
+
+    /**
+     * 异步方法：执行多个数据库操作，步骤之间有延迟
+     *
+     * 每一步是独立的短事务，延迟期间既不占用线程，也不占用数据库连接。
+     * 两个用户分别在各自的事务中创建，不是原子操作：后面的步骤失败时，已创建的用户不会回滚。
+     */
     public CompletableFuture<String> asyncMultipleDbOperations(String prefix) {
-        log.info("📌 [异步线程-多操作] 开始执行多个数据库操作");
-        log.info("📌 [异步线程-多操作] 线程名称: {}", Thread.currentThread().getName());
-
-        try {
-            // 添加面包屑
-            Breadcrumb breadcrumb = new Breadcrumb();
-            breadcrumb.setMessage("多操作异步任务开始");
-            breadcrumb.setCategory("async");
-            breadcrumb.setData("prefix", prefix);
-            Sentry.addBreadcrumb(breadcrumb);
-
-            try {
-                // 操作1: 查询用户数量
-                log.info("📌 [异步线程-多操作] 步骤1: 查询用户总数");
-                long count1 = userRepository.count();
-                log.info("📌 [异步线程-多操作] 当前用户数: {}", count1);
-                Thread.sleep(200);
-
-                // 操作2: 创建用户
-                log.info("📌 [异步线程-多操作] 步骤2: 创建用户");
-                User user1 = new User();
-                user1.setUsername(prefix + "_async_1");
-                user1.setEmail(prefix + "_async_1@example.com");
-                user1.setPhone("13800138001");
-                user1.setAge(28);
-                user1.setActive(true);
-                User saved1 = userRepository.save(user1);
-                log.info("📌 [异步线程-多操作] 用户1创建成功: {}", saved1.getId());
-                Thread.sleep(200);
-
-                // 操作3: 再次查询
-                log.info("📌 [异步线程-多操作] 步骤3: 再次查询用户总数");
-                long count2 = userRepository.count();
-                log.info("📌 [异步线程-多操作] 更新后用户数: {}", count2);
-                Thread.sleep(200);
-
-                // 操作4: 创建第二个用户
-                log.info("📌 [异步线程-多操作] 步骤4: 创建第二个用户");
-                User user2 = new User();
-                user2.setUsername(prefix + "_async_2");
-                user2.setEmail(prefix + "_async_2@example.com");
-                user2.setPhone("13800138002");
-                user2.setAge(32);
-                user2.setActive(true);
-                User saved2 = userRepository.save(user2);
-                log.info("📌 [异步线程-多操作] 用户2创建成功: {}", saved2.getId());
-
-                String result = String.format(
-                    "多操作异步任务完成 - 创建了 %d 个用户, 最终用户总数: %d",
-                    2,
-                    count2 + 1
-                );
-
-                log.info("📌 [异步线程-多操作] {}", result);
-
-                // 添加成功完成的面包屑
-                Breadcrumb successBreadcrumb = new Breadcrumb();
-                successBreadcrumb.setMessage("多操作异步任务成功完成");
-                successBreadcrumb.setCategory("async");
-                successBreadcrumb.setData("result", "success");
-                Sentry.addBreadcrumb(successBreadcrumb);
-
-                return CompletableFuture.completedFuture(result);
-
-            } catch (Exception e) {
-                log.error("📌 [异步线程-多操作] 异步多操作执行失败", e);
-                Sentry.captureException(e);
-                return CompletableFuture.failedFuture(e);
-            }
-        } catch (Exception e) {
-            log.error("📌 [异步线程-多操作] 任务启动失败", e);
-            return CompletableFuture.failedFuture(e);
+        log.info("📌 [异步任务-多操作] 提交多个数据库操作");
+
+        // 添加面包屑
+        Breadcrumb breadcrumb = new Breadcrumb();
+        breadcrumb.setMessage("多操作异步任务开始");
+        breadcrumb.setCategory("async");
+        breadcrumb.setData("prefix", prefix);
+        Sentry.addBreadcrumb(breadcrumb);
+
+        return CompletableFuture.supplyAsync(() -> {
+                    // 操作1: 查询用户数量
+                    log.info("📌 [异步线程-多操作] 线程名称: {}", Thread.currentThread().getName());
+                    log.info("📌 [异步线程-多操作] 步骤1: 查询用户总数");
+                    long count1 = userService.countUsers();
+                    log.info("📌 [异步线程-多操作] 当前用户数: {}", count1);
+                    return count1;
+                }, taskExecutor)
+                .thenCompose(count1 -> delayScheduler.delay(STEP_DELAY, count1))
+                .thenApplyAsync(count1 -> {
+                    // 操作2: 创建用户
+                    log.info("📌 [异步线程-多操作] 步骤2: 创建用户");
+                    User user1 = new User();
+                    user1.setUsername(prefix + "_async_1");
+                    user1.setEmail(prefix + "_async_1@example.com");
+                    user1.setPhone("13800138001");
+                    user1.setAge(28);
+                    user1.setActive(true);
+                    User saved1 = userRepository.save(user1);
+                    log.info("📌 [异步线程-多操作] 用户1创建成功: {}", saved1.getId());
+                    return saved1;
+                }, taskExecutor)
+                .thenCompose(saved1 -> delayScheduler.delay(STEP_DELAY, saved1))
+                .thenApplyAsync(saved1 -> {
+                    // 操作3: 再次查询
+                    log.info("📌 [异步线程-多操作] 步骤3: 再次查询用户总数");
+                    long count2 = userService.countUsers();
+                    log.info("📌 [异步线程-多操作] 更新后用户数: {}", count2);
+                    return count2;
+                }, taskExecutor)
+                .thenCompose(count2 -> delayScheduler.delay(STEP_DELAY, count2))
+                .thenApplyAsync(count2 -> {
+                    // 操作4: 创建第二个用户
+                    log.info("📌 [异步线程-多操作] 步骤4: 创建第二个用户");
+                    User user2 = new User();
+                    user2.setUsername(prefix + "_async_2");
+                    user2.setEmail(prefix + "_async_2@example.com");
+                    user2.setPhone("13800138002");
+                    user2.setAge(32);
+                    user2.setActive(true);
+                    User saved2 = userRepository.save(user2);
+                    log.info("📌 [异步线程-多操作] 用户2创建成功: {}", saved2.getId());
+
+                    String result = String.format(
+                        "多操作异步任务完成 - 创建了 %d 个用户, 最终用户总数: %d",
+                        2,
+                        count2 + 1
+                    );
+
+                    log.info("📌 [异步线程-多操作] {}", result);
+
+                    // 添加成功完成的面包屑
+                    Breadcrumb successBreadcrumb = new Breadcrumb();
+                    successBreadcrumb.setMessage("多操作异步任务成功完成");
+                    successBreadcrumb.setCategory("async");
+                    successBreadcrumb.setData("result", "success");
+                    Sentry.addBreadcrumb(successBreadcrumb);
+
+                    return result;
+                }, taskExecutor)
+                .whenComplete((result, e) -> {
+                    if (e != null) {
+                        reportFailure("📌 [异步线程-多操作] 异步多操作执行失败", e);
+                    }
+                });
+    }
+
+    /**
+     * 线程池饱和是预期内的限流（请求返回 503），只记 WARN，不上报 Sentry；其他异常记 ERROR 并上报
+     */
+    private static void reportFailure(String message, Throwable e) {
+        ExecutorSaturatedException saturated = ExecutorSaturatedException.find(e);
+        if (saturated != null) {
+            log.warn("{}，线程池繁忙: {}", message, saturated.getMessage());
+            return;
         }
+        log.error(message, e);
+        Sentry.captureException(e);
     }
 }
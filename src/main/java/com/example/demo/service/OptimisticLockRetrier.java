@@ -0,0 +1,90 @@
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+
+/**
+ * 乐观锁冲突重试
+ *
+ * 每次尝试都必须是一个完整的新事务：冲突在提交时才暴露，失败的事务只能回滚。
+ * 因此每次尝试都在独立的 REQUIRES_NEW 事务（新的持久化上下文）中执行，调用方处于外层事务中时也不会加入外层事务，
+ * 传入的操作应在其中重新读取最新数据。
+ * 两次尝试之间按指数退避并加入随机抖动（full jitter），避免冲突双方同时重试再次冲突。
+ *
+ * 指标（按 operation 标签区分）：
+ * users.optimistic.conflicts - 发生的冲突次数
+ * users.optimistic.retries   - 冲突后发起的重试次数
+ * users.optimistic.exhausted - 重试次数用尽仍失败的次数
+ */
+@Slf4j
+@Component
+public class OptimisticLockRetrier {
+
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate attemptTransaction;
+
+    @Value("${app.users.optimistic.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${app.users.optimistic.base-backoff-ms:10}")
+    private long baseBackoffMs;
+
+    @Value("${app.users.optimistic.max-backoff-ms:200}")
+    private long maxBackoffMs;
+
+    public OptimisticLockRetrier(MeterRegistry meterRegistry, PlatformTransactionManager transactionManager) {
+        this.meterRegistry = meterRegistry;
+        this.attemptTransaction = new TransactionTemplate(transactionManager);
+        this.attemptTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 执行操作，发生乐观锁冲突时退避后重试
+     *
+     * @param operation 操作名，用作指标标签
+     * @param action    单次尝试，参数为从 1 开始的尝试序号，在独立的新事务中执行
+     */
+    public <T> T execute(String operation, IntFunction<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            int currentAttempt = attempt;
+            try {
+                return attemptTransaction.execute(status -> action.apply(currentAttempt));
+            } catch (OptimisticLockingFailureException e) {
+                meterRegistry.counter("users.optimistic.conflicts", "operation", operation).increment();
+                if (attempt >= maxAttempts) {
+                    meterRegistry.counter("users.optimistic.exhausted", "operation", operation).increment();
+                    log.error("乐观锁冲突，重试次数已用尽: operation={}, attempts={}", operation, attempt);
+                    throw e;
+                }
+
+                long backoffMs = backoffMs(attempt);
+                log.warn("乐观锁冲突，{}ms 后重试: operation={}, attempt={}", backoffMs, operation, attempt);
+                meterRegistry.counter("users.optimistic.retries", "operation", operation).increment();
+                sleep(backoffMs);
+            }
+        }
+    }
+
+    private long backoffMs(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("乐观锁重试等待被中断", e);
+        }
+    }
+}
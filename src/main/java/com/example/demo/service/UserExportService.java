@@ -0,0 +1,95 @@
+package com.example.demo.service;
+
+import com.example.demo.datasource.ShardedUserStore;
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.projection.UserView;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 用户导出服务
+ *
+ * 以 NDJSON（每行一个 JSON 对象）格式流式导出全部用户。
+ * 数据通过数据库游标分批读取，每写出 N 行清空一次持久化上下文，
+ * 因此无论表有多大，堆内存占用都保持平稳。
+ * 开启分片时按 ID 跨分片 keyset 分页读取，每页 N 行，同样只占用一页的内存。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserExportService {
+
+    private final UserRepository userRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<ShardedUserStore> shardedUserStore;
+
+    @Value("${app.users.export.clear-interval:500}")
+    private int clearInterval;
+
+    /**
+     * 将全部用户以 NDJSON 格式写入输出流
+     *
+     * @param out 目标输出流（通常是 Servlet 输出流），由调用方负责关闭
+     * @return 导出的行数
+     */
+    @Transactional(readOnly = true)
+    public long exportUsersAsNdjson(OutputStream out) throws IOException {
+        log.info("开始流式导出用户");
+        long startTime = System.currentTimeMillis();
+
+        // 每行写完不强制 flush，由 clearInterval 控制批量刷出
+        ObjectWriter writer = objectMapper.writerFor(User.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long count = 0;
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setRootValueSeparator(null);
+             Stream<User> users = streamAllOrderById()) {
+            Iterator<User> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                writer.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+                count++;
+
+                if (count % clearInterval == 0) {
+                    // 释放已写出的实体，避免持久化上下文无限增长
+                    entityManager.clear();
+                    generator.flush();
+                }
+            }
+            generator.flush();
+        }
+
+        log.info("用户导出完成，行数: {}, 耗时: {}ms", count, System.currentTimeMillis() - startTime);
+        return count;
+    }
+
+    private Stream<User> streamAllOrderById() {
+        ShardedUserStore shards = shardedUserStore.getIfAvailable();
+        if (shards == null) {
+            return userRepository.streamAllOrderById();
+        }
+        return Stream.iterate(shards.findPage(0, clearInterval), page -> !page.isEmpty(),
+                        page -> shards.findPage(page.get(page.size() - 1).id(), clearInterval))
+                .flatMap(List::stream)
+                .map(UserView::toUser);
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.demo.service;
+
+import com.example.demo.config.DataSourceConfig;
+import com.example.demo.datasource.ShardedUserStore;
+import com.example.demo.dto.UserImportResult;
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户批量导入服务
+ *
+ * 逐行解析 CSV / NDJSON 输入流，每凑满一个分块就在独立事务中提交，
+ * 单个分块失败只回滚该分块，随后在各自的事务中逐行重试该分块，只有出错的行（如用户名 / 邮箱重复）记为失败。
+ *
+ * 背压：所有导入共享有限的分块许可，同一时刻最多占用 max-concurrent-chunks 个数据库连接；
+ * 当连接池中有交互请求在等待连接时，导入会先让出一段时间再提交下一个分块。
+ * 导入线程阻塞期间不再读取请求体，上游客户端也会随之被 TCP 流控减速。
+ * 等待许可超时时导入中途终止，已提交的分块保留，返回的结果中 aborted 为 true。
+ */
+@Slf4j
+@Service
+public class UserImportService {
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    private static final int MAX_RECORDED_FAILURES = 100;
+
+    private final UserRepository userRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate chunkTransaction;
+    private final ObjectReader userReader;
+    private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+    private final Semaphore chunkPermits;
+    private final ObjectProvider<ShardedUserStore> shardedUserStore;
+
+    /**
+     * 正在进行中的导入，用于进度查询
+     */
+    private final Map<String, UserImportResult> activeImports = new ConcurrentHashMap<>();
+
+    @Value("${app.users.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.users.import.acquire-timeout-ms:30000}")
+    private long acquireTimeoutMs;
+
+    @Value("${app.users.import.yield-ms:50}")
+    private long yieldMs;
+
+    @Value("${app.users.import.max-yield-ms:2000}")
+    private long maxYieldMs;
+
+    public UserImportService(UserRepository userRepository,
+                             EntityManager entityManager,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             @Qualifier(DataSourceConfig.PRIMARY_DATA_SOURCE) DataSource dataSource,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.users.import.max-concurrent-chunks:2}") int maxConcurrentChunks,
+                             ObjectProvider<ShardedUserStore> shardedUserStore) {
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.userReader = objectMapper.readerFor(User.class);
+        this.dataSource = dataSource;
+        this.meterRegistry = meterRegistry;
+        this.chunkPermits = new Semaphore(maxConcurrentChunks, true);
+        this.shardedUserStore = shardedUserStore;
+    }
+
+    /**
+     * 查询进行中的导入
+     */
+    public Collection<UserImportResult> getActiveImports() {
+        return activeImports.values();
+    }
+
+    /**
+     * 流式导入用户
+     *
+     * @param in     请求体输入流，由调用方负责关闭
+     * @param format csv 或 ndjson
+     * @return 导入结果，包含成功/失败行数和失败明细；中途终止时为已处理部分的结果
+     */
+    public UserImportResult importUsers(InputStream in, String format) throws IOException {
+        if (!FORMAT_CSV.equals(format) && !FORMAT_NDJSON.equals(format)) {
+            throw new IllegalArgumentException("不支持的导入格式: " + format);
+        }
+        // 分块在主库的单个事务中提交，分片之间没有分布式事务
+        if (shardedUserStore.getIfAvailable() != null) {
+            throw new IllegalStateException("分片模式下不支持导入用户：导入分块依赖单库事务");
+        }
+
+        UserImportResult result = new UserImportResult();
+        result.setImportId(UUID.randomUUID().toString());
+        result.setFormat(format);
+        activeImports.put(result.getImportId(), result);
+        log.info("开始导入用户，importId: {}, 格式: {}, 分块大小: {}", result.getImportId(), format, chunkSize);
+        long startTime = System.currentTimeMillis();
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            Map<String, Integer> csvColumns = FORMAT_CSV.equals(format) ? readCsvHeader(reader) : null;
+
+            List<User> chunk = new ArrayList<>(chunkSize);
+            List<Long> chunkRows = new ArrayList<>(chunkSize);
+            long rowNumber = 0;
+            long chunkFirstRow = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                rowNumber++;
+                result.setTotalRows(rowNumber);
+
+                try {
+                    User user = csvColumns != null ? parseCsvRow(line, csvColumns) : userReader.readValue(line);
+                    // 导入总是新建用户，忽略输入中的 ID
+                    user.setId(null);
+                    chunk.add(user);
+                    chunkRows.add(rowNumber);
+                } catch (Exception e) {
+                    result.setFailedRows(result.getFailedRows() + 1);
+                    recordFailure(result, result.getChunks() + 1, rowNumber, rowNumber, "解析失败: " + e.getMessage());
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    if (!commitChunk(chunk, chunkRows, chunkFirstRow, rowNumber, result)) {
+                        chunk.clear();
+                        break;
+                    }
+                    chunk = new ArrayList<>(chunkSize);
+                    chunkRows = new ArrayList<>(chunkSize);
+                    chunkFirstRow = rowNumber + 1;
+                }
+            }
+            if (!chunk.isEmpty()) {
+                commitChunk(chunk, chunkRows, chunkFirstRow, rowNumber, result);
+            }
+        } finally {
+            result.setFinished(true);
+            result.setElapsedMs(System.currentTimeMillis() - startTime);
+            activeImports.remove(result.getImportId());
+        }
+
+        log.info("用户导入{}，importId: {}, 总行数: {}, 成功: {}, 失败: {}, 耗时: {}ms",
+                result.isAborted() ? "终止" : "完成", result.getImportId(), result.getTotalRows(),
+                result.getImportedRows(), result.getFailedRows(), result.getElapsedMs());
+        return result;
+    }
+
+    /**
+     * 在独立事务中提交一个分块，提交失败时逐行重试
+     *
+     * @param rows 分块中每个用户对应的行号
+     * @return 获取写入许可失败、导入需要终止时返回 false
+     */
+    private boolean commitChunk(List<User> chunk, List<Long> rows, long firstRow, long lastRow,
+                                UserImportResult result) {
+        int chunkIndex = result.getChunks() + 1;
+        try {
+            acquireChunkPermit();
+        } catch (IllegalStateException e) {
+            log.warn("导入终止，importId: {}, 分块 {} 未提交，行 {}-{}: {}",
+                    result.getImportId(), chunkIndex, firstRow, lastRow, e.getMessage());
+            result.setFailedRows(result.getFailedRows() + chunk.size());
+            meterRegistry.counter("users.import.rows", "outcome", "failed").increment(chunk.size());
+            recordFailure(result, chunkIndex, firstRow, lastRow, "分块未提交: " + e.getMessage());
+            result.setChunks(chunkIndex);
+            result.setAbortReason(e.getMessage());
+            result.setAborted(true);
+            return false;
+        }
+        try {
+            chunkTransaction.executeWithoutResult(status -> {
+                userRepository.saveAll(chunk);
+                userRepository.flush();
+                // 调用方已有持久化上下文时（外层事务），需要手动释放已提交的实体
+                entityManager.clear();
+            });
+            result.setImportedRows(result.getImportedRows() + chunk.size());
+            meterRegistry.counter("users.import.rows", "outcome", "imported").increment(chunk.size());
+            log.info("导入分块 {} 提交成功，行 {}-{}，累计成功: {}",
+                    chunkIndex, firstRow, lastRow, result.getImportedRows());
+        } catch (Exception e) {
+            log.warn("导入分块 {} 提交失败，行 {}-{}，逐行重试: {}", chunkIndex, firstRow, lastRow, e.getMessage());
+            entityManager.clear();
+            meterRegistry.counter("users.import.chunk.retries").increment();
+            for (int i = 0; i < chunk.size(); i++) {
+                saveIndividually(chunk.get(i), rows.get(i), chunkIndex, result);
+            }
+            log.info("导入分块 {} 逐行重试完成，行 {}-{}，累计成功: {}, 累计失败: {}",
+                    chunkIndex, firstRow, lastRow, result.getImportedRows(), result.getFailedRows());
+        } finally {
+            chunkPermits.release();
+            result.setChunks(chunkIndex);
+        }
+        return true;
+    }
+
+    /**
+     * 在独立事务中写入单行，失败时只记录该行
+     */
+    private void saveIndividually(User user, long row, int chunkIndex, UserImportResult result) {
+        // 回滚后实体上残留的 ID 和版本号会让 save 误判为更新，重试前清除
+        user.setId(null);
+        user.setVersion(null);
+        try {
+            chunkTransaction.executeWithoutResult(status -> {
+                userRepository.saveAndFlush(user);
+                entityManager.clear();
+            });
+            result.setImportedRows(result.getImportedRows() + 1);
+            meterRegistry.counter("users.import.rows", "outcome", "imported").increment();
+        } catch (Exception e) {
+            log.error("导入第 {} 行写入失败: {}", row, user.getUsername(), e);
+            entityManager.clear();
+            result.setFailedRows(result.getFailedRows() + 1);
+            meterRegistry.counter("users.import.rows", "outcome", "failed").increment();
+            recordFailure(result, chunkIndex, row, row, "写入失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取分块许可，并在连接池有交互请求排队时让出连接
+     */
+    private void acquireChunkPermit() {
+        try {
+            if (!chunkPermits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("导入任务繁忙，等待数据库写入许可超时");
+            }
+            HikariPoolMXBean pool = hikariPool();
+            long waited = 0;
+            while (pool != null && pool.getThreadsAwaitingConnection() > 0 && waited < maxYieldMs) {
+                Thread.sleep(yieldMs);
+                waited += yieldMs;
+            }
+            if (waited > 0) {
+                meterRegistry.timer("users.import.yield").record(waited, TimeUnit.MILLISECONDS);
+                log.debug("连接池繁忙，导入让出 {}ms", waited);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("导入被中断", e);
+        }
+    }
+
+    private HikariPoolMXBean hikariPool() {
+        if (dataSource instanceof HikariDataSource hikariDataSource) {
+            return hikariDataSource.getHikariPoolMXBean();
+        }
+        return null;
+    }
+
+    private void recordFailure(UserImportResult result, int chunk, long firstRow, long lastRow, String message) {
+        if (result.getFailures().size() < MAX_RECORDED_FAILURES) {
+            result.getFailures().add(new UserImportResult.Failure(chunk, firstRow, lastRow, message));
+        }
+    }
+
+    /**
+     * 读取 CSV 表头，返回列名到下标的映射
+     */
+    private Map<String, Integer> readCsvHeader(BufferedReader reader) throws IOException {
+        String header = reader.readLine();
+        if (header == null) {
+            throw new IllegalArgumentException("CSV 内容为空");
+        }
+        List<String> names = splitCsvLine(header);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("username") || !columns.containsKey("email") || !columns.containsKey("age")) {
+            throw new IllegalArgumentException("CSV 表头必须包含 username, email, age 列");
+        }
+        return columns;
+    }
+
+    private User parseCsvRow(String line, Map<String, Integer> columns) {
+        List<String> values = splitCsvLine(line);
+        User user = new User();
+        user.setUsername(csvValue(values, columns, "username"));
+        user.setEmail(csvValue(values, columns, "email"));
+        user.setPhone(csvValue(values, columns, "phone"));
+        String age = csvValue(values, columns, "age");
+        user.setAge(age == null ? null : Integer.valueOf(age));
+        String active = csvValue(values, columns, "active");
+        user.setActive(active == null ? null : Boolean.valueOf(active));
+        return user;
+    }
+
+    private String csvValue(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= values.size()) {
+            return null;
+        }
+        String value = values.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * 拆分一行 CSV，支持双引号包裹的字段和 "" 转义
+     */
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+}
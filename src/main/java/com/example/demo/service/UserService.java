@@ -1,15 +1,42 @@
 package com.example.demo.service;
 
+import com.example.demo.cache.UserBloomFilters;
+import com.example.demo.cache.UserSearchIndex;
+import com.example.demo.cache.UserStatsSnapshot;
+import com.example.demo.cache.UserCache;
+import com.example.demo.datasource.ShardedUserStore;
+import com.example.demo.dto.ConcurrentUpdateResult;
+import com.example.demo.dto.UserPage;
 import com.example.demo.entity.User;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.projection.UserView;
+import com.example.demo.util.CursorCodec;
+import com.fasterxml.jackson.core.SerializableString;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.sentry.Sentry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Service
@@ -17,23 +44,94 @@ import java.util.Optional;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+    private final UserCache userCache;
+    private final UserBloomFilters userBloomFilters;
+    private final UserStatsSnapshot userStatsSnapshot;
+    private final UserSearchIndex userSearchIndex;
+    private final OptimisticLockRetrier optimisticLockRetrier;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectProvider<UserWriteBehindQueue> writeBehindQueue;
+    private final ObjectProvider<ShardedUserStore> shardedUserStore;
+
+    @Value("${app.users.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${app.users.page.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${app.users.search.default-limit:10}")
+    private int defaultSearchLimit;
+
+    @Value("${app.users.search.max-limit:50}")
+    private int maxSearchLimit;
+
+    @Value("${app.users.validate.insert-first:true}")
+    private boolean validateInsertFirst;
 
     /**
      * 创建用户 - 正常情况
+     *
+     * 开启分片时直接写入所属分片；否则开启 app.users.write-behind.enabled 时交给写后合并提交队列，与其他并发请求共享一次提交。
      */
     public User createUser(User user) {
         log.info("创建用户: {}", user.getUsername());
-        return userRepository.save(user);
+        ShardedUserStore shards = shardedUserStore.getIfAvailable();
+        if (shards != null) {
+            return insertIntoShard(shards, user);
+        }
+        UserWriteBehindQueue queue = writeBehindQueue.getIfAvailable();
+        if (queue != null) {
+            return awaitWriteBehind(queue.submit(user));
+        }
+        User savedUser = userRepository.save(user);
+        userCache.evict(savedUser);
+        return savedUser;
+    }
+
+    /**
+     * 等待合并提交完成，失败时抛出该请求自己的异常
+     *
+     * 超过 app.users.write-behind.await-timeout-ms 仍未被取走时超时，此时用户没有写入
+     */
+    private static User awaitWriteBehind(CompletableFuture<User> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof TimeoutException cause) {
+                throw new IllegalStateException("等待用户写入提交超时，用户未创建", cause);
+            }
+            throw e;
+        }
     }
 
     /**
      * 批量创建用户 - 事务成功场景
+     *
+     * 插入通过 JDBC batch 执行，吞吐量（rows/s）记录在 users.batch.insert.throughput 指标中。
      */
     @Transactional
     public List<User> batchCreateUsersSuccess(List<User> users) {
         log.info("批量创建用户，数量: {}", users.size());
+        requireSingleDatabase("批量创建用户");
+        long startTime = System.nanoTime();
+
         List<User> savedUsers = userRepository.saveAll(users);
-        log.info("批量创建成功");
+        savedUsers.forEach(userCache::evict);
+        // 在计时范围内触发批量 INSERT，而不是留到事务提交时
+        userRepository.flush();
+
+        long elapsedNanos = System.nanoTime() - startTime;
+        double rowsPerSecond = savedUsers.size() * 1_000_000_000.0 / Math.max(elapsedNanos, 1);
+        meterRegistry.timer("users.batch.insert").record(elapsedNanos, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("users.batch.insert.rows").increment(savedUsers.size());
+        meterRegistry.summary("users.batch.insert.throughput").record(rowsPerSecond);
+
+        log.info("批量创建成功，数量: {}, 耗时: {}ms, 吞吐量: {} rows/s",
+                savedUsers.size(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), Math.round(rowsPerSecond));
         return savedUsers;
     }
 
@@ -43,13 +141,15 @@ public class UserService {
     @Transactional
     public List<User> batchCreateUsersWithRollback(List<User> users) {
         log.info("批量创建用户（包含重复用户），数量: {}", users.size());
+        requireSingleDatabase("批量创建用户");
         try {
             // 第一个用户会成功保存
-            userRepository.save(users.get(0));
+            // 序列主键下 INSERT 会延迟到 flush，这里立即 flush 以便在第二个用户处触发唯一约束异常
+            userRepository.saveAndFlush(users.get(0));
             log.info("第一个用户保存成功: {}", users.get(0).getUsername());
 
             // 第二个用户使用相同的username，会违反唯一约束
-            userRepository.save(users.get(1));
+            userRepository.saveAndFlush(users.get(1));
             log.info("第二个用户保存成功: {}", users.get(1).getUsername());
 
             return userRepository.saveAll(users);
@@ -62,13 +162,50 @@ public class UserService {
 
     /**
      * 模拟业务异常导致事务回滚
+     *
+     * 校验顺序与错误优先级固定为：用户名已存在、邮箱已存在、年龄不合法。
+     * 默认直接 INSERT，由 username / email 唯一约束保证唯一性，违反约束时转换为与原校验相同的业务异常：
+     * 每次创建只有一次数据库往返，也不存在先查后写的并发窗口。
+     * 用户名和邮箱都重复时数据库只报告先检查的那个约束，报告邮箱时再查询一次用户名，保证用户名优先。
+     * 布隆过滤器预检只在先查询时使用：年龄不合法、不会写入时（需要先查询唯一性以保持错误优先级），
+     * 以及 app.users.validate.insert-first=false 时（总是先查询再写入）；
+     * 查询与写入之间提交的重复用户仍由唯一约束拦截，转换为相同的业务异常。
+     * 开启分片时存在性检查和写入都在分片上执行，邮箱在其他分片已存在时同样转换为邮箱已存在。
      */
     @Transactional
     public User createUserWithBusinessValidation(User user) {
         log.info("创建用户并进行业务验证");
+        ShardedUserStore shards = shardedUserStore.getIfAvailable();
 
-        // 检查用户名是否已存在
-        if (userRepository.existsByUsername(user.getUsername())) {
+        boolean validAge = user.getAge() >= 18 && user.getAge() <= 120;
+        if (!validateInsertFirst || !validAge) {
+            checkUsernameAndEmailNotExist(user, shards);
+        }
+
+        // 模拟业务规则：年龄必须在18-120之间
+        if (!validAge) {
+            String errorMsg = "年龄必须在18-120之间: " + user.getAge();
+            log.error(errorMsg);
+            IllegalArgumentException exception = new IllegalArgumentException(errorMsg);
+
+            throw exception;
+        }
+
+        if (shards != null) {
+            return insertIntoShard(shards, user);
+        }
+        User savedUser = insertWithUniqueConstraints(user);
+        userCache.evict(savedUser);
+        return savedUser;
+    }
+
+    /**
+     * 先查询再写入：检查用户名和邮箱是否已存在
+     */
+    private void checkUsernameAndEmailNotExist(User user, ShardedUserStore shards) {
+        // 检查用户名是否已存在（布隆过滤器判断可能存在时才查询数据库）
+        if (userBloomFilters.usernameExists(user.getUsername(),
+                shards != null ? shards::existsByUsername : userRepository::existsByUsername)) {
             String errorMsg = "用户名已存在: " + user.getUsername();
             log.error(errorMsg);
             IllegalStateException exception = new IllegalStateException(errorMsg);
@@ -76,25 +213,128 @@ public class UserService {
             throw exception;
         }
 
-        // 检查邮箱是否已存在
-        if (userRepository.existsByEmail(user.getEmail())) {
+        // 检查邮箱是否已存在（布隆过滤器判断可能存在时才查询数据库）
+        if (userBloomFilters.emailExists(user.getEmail(),
+                shards != null ? shards::existsByEmail : userRepository::existsByEmail)) {
             String errorMsg = "邮箱已存在: " + user.getEmail();
             log.error(errorMsg);
             IllegalStateException exception = new IllegalStateException(errorMsg);
 
             throw exception;
         }
+    }
 
-        // 模拟业务规则：年龄必须在18-120之间
-        if (user.getAge() < 18 || user.getAge() > 120) {
-            String errorMsg = "年龄必须在18-120之间: " + user.getAge();
+    /**
+     * 单语句写入：立即 flush 执行 INSERT，根据违反的唯一约束返回对应的业务异常
+     */
+    private User insertWithUniqueConstraints(User user) {
+        try {
+            return userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            String errorMsg = duplicateKeyMessage(user, e);
+            if (errorMsg == null) {
+                throw e;
+            }
+            String usernameTaken = "用户名已存在: " + user.getUsername();
+            if (!errorMsg.equals(usernameTaken) && usernameExistsInNewTransaction(user.getUsername())) {
+                errorMsg = usernameTaken;
+            }
             log.error(errorMsg);
-            IllegalArgumentException exception = new IllegalArgumentException(errorMsg);
+            IllegalStateException exception = new IllegalStateException(errorMsg, e);
 
             throw exception;
         }
+    }
+
+    /**
+     * 在独立事务中查询用户名是否已存在（主库）：当前事务的写入已经失败，不能继续在其中查询
+     */
+    private boolean usernameExistsInNewTransaction(String username) {
+        TransactionTemplate lookup = new TransactionTemplate(transactionManager);
+        lookup.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return Boolean.TRUE.equals(lookup.execute(status -> userRepository.existsByUsername(username)));
+    }
+
+    /**
+     * 写入所属分片，违反用户名 / 邮箱唯一约束时转换为与单库写入相同的业务异常
+     */
+    private User insertIntoShard(ShardedUserStore shards, User user) {
+        userBloomFilters.put(user);
+        User savedUser;
+        try {
+            savedUser = shards.insert(user).toUser();
+        } catch (DataIntegrityViolationException e) {
+            throw shardDuplicateKey(shards, user, null, e);
+        }
+        afterShardWrite(savedUser, false);
+        return savedUser;
+    }
+
+    /**
+     * 分片写入违反唯一约束时的业务异常，不是用户名 / 邮箱唯一约束时原样抛出
+     *
+     * 其他分片的邮箱在写入前检查，先于所属分片的用户名唯一约束报告，因此报告邮箱时再查询一次用户名（排除正在更新的用户自己），
+     * 保证用户名优先。
+     *
+     * @param selfId 更新时为被更新用户的 ID，创建时为 null
+     */
+    private RuntimeException shardDuplicateKey(ShardedUserStore shards, User user, Long selfId,
+                                               DataIntegrityViolationException e) {
+        String errorMsg = duplicateKeyMessage(user, e);
+        if (errorMsg == null) {
+            return e;
+        }
+        String usernameTaken = "用户名已存在: " + user.getUsername();
+        if (!errorMsg.equals(usernameTaken) && shards.findByUsername(user.getUsername())
+                .filter(existing -> !existing.id().equals(selfId)).isPresent()) {
+            errorMsg = usernameTaken;
+        }
+        log.error(errorMsg);
+        return new IllegalStateException(errorMsg, e);
+    }
+
+    /**
+     * 分片上的写入不经过 JPA，实体监听器不会触发：在这里失效缓存，并把写入交给统计快照和搜索索引
+     */
+    private void afterShardWrite(User user, boolean removed) {
+        userCache.evict(user);
+        userStatsSnapshot.recordChange(user, removed);
+        userSearchIndex.recordChange(user, removed);
+    }
+
+    /**
+     * 分片之间没有分布式事务，依赖单库事务原子性的操作在分片模式下直接拒绝
+     */
+    private void requireSingleDatabase(String operation) {
+        if (shardedUserStore.getIfAvailable() != null) {
+            throw new IllegalStateException("分片模式下不支持" + operation + "：该操作依赖单库事务");
+        }
+    }
+
+    /**
+     * 把违反的唯一约束转换为与先查询校验相同的错误信息，不是用户名 / 邮箱唯一约束时返回 null
+     */
+    static String duplicateKeyMessage(User user, DataIntegrityViolationException e) {
+        String violated = violatedConstraint(e);
+        if (violated.contains(User.UK_USERNAME)) {
+            return "用户名已存在: " + user.getUsername();
+        }
+        if (violated.contains(User.UK_EMAIL)) {
+            return "邮箱已存在: " + user.getEmail();
+        }
+        return null;
+    }
 
-        return userRepository.save(user);
+    /**
+     * 提取违反的约束名（小写），无法识别时返回底层异常信息
+     */
+    private static String violatedConstraint(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+                return violation.getConstraintName().toLowerCase(Locale.ROOT);
+            }
+        }
+        return String.valueOf(NestedExceptionUtils.getMostSpecificCause(e).getMessage()).toLowerCase(Locale.ROOT);
     }
 
     /**
@@ -103,6 +343,7 @@ public class UserService {
     @Transactional
     public User createUserWithRuntimeException(User user) {
         log.info("创建用户（模拟运行时异常）");
+        requireSingleDatabase("事务回滚演示");
         userRepository.save(user);
         log.info("用户保存成功: {}", user.getUsername());
 
@@ -124,12 +365,13 @@ public class UserService {
     @Transactional
     public void transferUserScenario() {
         log.info("执行复杂事务场景：用户转移操作");
+        requireSingleDatabase("事务回滚演示");
 
         try {
             // 1. 创建用户A
             User userA = new User();
             userA.setUsername("user_a_" + System.currentTimeMillis());
-            userA.setEmail("user_a@example.com");
+            userA.setEmail("user_a_" + System.currentTimeMillis() + "@example.com");
             userA.setAge(25);
             userA.setActive(true);
             userRepository.save(userA);
@@ -138,7 +380,7 @@ public class UserService {
             // 2. 创建用户B
             User userB = new User();
             userB.setUsername("user_b_" + System.currentTimeMillis());
-            userB.setEmail("user_b@example.com");
+            userB.setEmail("user_b_" + System.currentTimeMillis() + "@example.com");
             userB.setAge(30);
             userB.setActive(true);
             userRepository.save(userB);
@@ -152,7 +394,7 @@ public class UserService {
             // 4. 创建用户C
             User userC = new User();
             userC.setUsername("user_c_" + System.currentTimeMillis());
-            userC.setEmail("user_c@example.com");
+            userC.setEmail("user_c_" + System.currentTimeMillis() + "@example.com");
             userC.setAge(35);
             userC.setActive(true);
             userRepository.save(userC);
@@ -168,19 +410,118 @@ public class UserService {
     }
 
     /**
-     * 查询所有用户
+     * 查询所有用户（开启分片时并行读取各分片后按 ID 合并）
      */
-    public List<User> getAllUsers() {
+    @Transactional(readOnly = true)
+    public List<UserView> getAllUsers() {
         log.info("查询所有用户");
-        return userRepository.findAll();
+        ShardedUserStore shards = shardedUserStore.getIfAvailable();
+        return shards != null ? shards.findAll() : userRepository.findViewsByOrderByIdAsc();
+    }
+
+    /**
+     * 统计用户总数
+     *
+     * 统计快照就绪后直接返回快照中的计数（O(1)，不访问数据库）；
+     * 预热完成前开启分片时并行计数后求和，否则查询数据库。
+     */
+    public long countUsers() {
+        long count = userStatsSnapshot.count();
+        if (count >= 0) {
+            return count;
+        }
+        ShardedUserStore shards = shardedUserStore.getIfAvailable();
+        return shards != null ? shards.count() : userRepository.count();
+    }
+
+    /**
+     * 用户统计（总数、启用比例、年龄分布），由内存列式快照计算，不访问数据库
+     */
+    public Map<String, Object> getUserStats() {
+        return userStatsSnapshot.stats();
     }
 
     /**
-     * 根据ID查询用户
+     * 按用户名或邮箱搜索用户（输入提示），由内存索引匹配，索引不可用时回退到数据库
+     *
+     * @param limit 返回条数，为空时使用默认值，超过上限时截断
      */
+    public List<Map<String, Object>> searchUsers(String query, Integer limit) {
+        int resultLimit = limit == null ? defaultSearchLimit : Math.min(Math.max(limit, 1), maxSearchLimit);
+        return userSearchIndex.search(query, resultLimit);
+    }
+
+    /**
+     * 搜索索引状态与搜索耗时分位数
+     */
+    public Map<String, Object> getSearchIndexStatus() {
+        return userSearchIndex.status();
+    }
+
+    /**
+     * 游标分页查询用户（keyset 分页）
+     *
+     * 按 ID 升序每次只读取一页数据，多取一条用于判断是否还有下一页，
+     * 单次请求的内存占用只与页大小有关，与表大小无关。
+     *
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size   页大小，为空时使用默认值；默认值和传入值都截断到 [1, 上限]
+     */
+    @Transactional(readOnly = true)
+    public UserPage getUsersPage(String cursor, Integer size) {
+        long afterId = CursorCodec.decode(cursor);
+        int pageSize = Math.min(Math.max(size == null ? defaultPageSize : size, 1), maxPageSize);
+        log.info("分页查询用户，afterId: {}, size: {}", afterId, pageSize);
+
+        ShardedUserStore shards = shardedUserStore.getIfAvailable();
+        List<UserView> users = shards != null
+                ? shards.findPage(afterId, pageSize + 1)
+                : userRepository.findViewsByIdGreaterThanOrderByIdAsc(afterId, Limit.of(pageSize + 1));
+        boolean hasMore = users.size() > pageSize;
+        if (hasMore) {
+            users = users.subList(0, pageSize);
+        }
+        String nextCursor = hasMore ? CursorCodec.encode(users.get(users.size() - 1).id()) : null;
+        return new UserPage(users, nextCursor, hasMore);
+    }
+
+    /**
+     * 根据ID查询用户（读穿透缓存）
+     */
+    @Transactional(readOnly = true)
     public User getUserById(Long id) {
+        return getUserEntryById(id).getUser();
+    }
+
+    /**
+     * 根据ID查询用户，返回预序列化的 JSON（读穿透缓存）
+     */
+    @Transactional(readOnly = true)
+    public SerializableString getUserJsonById(Long id) {
+        return getUserEntryById(id).getJson();
+    }
+
+    /**
+     * 根据用户名查询（读穿透缓存）
+     */
+    @Transactional(readOnly = true)
+    public Optional<User> getUserByUsername(String username) {
+        return getUserEntryByUsername(username).map(UserCache.Entry::getUser);
+    }
+
+    /**
+     * 根据用户名查询，返回预序列化的 JSON（读穿透缓存）
+     */
+    @Transactional(readOnly = true)
+    public Optional<SerializableString> getUserJsonByUsername(String username) {
+        return getUserEntryByUsername(username).map(UserCache.Entry::getJson);
+    }
+
+    private UserCache.Entry getUserEntryById(Long id) {
         log.info("查询用户ID: {}", id);
-        return userRepository.findById(id)
+        ShardedUserStore shards = shardedUserStore.getIfAvailable();
+        return userCache.getById(id, () -> (shards != null ? shards.findById(id) : userRepository.findViewById(id))
+                        .map(UserView::toUser))
                 .orElseThrow(() -> {
                     String errorMsg = "该用户不存在: " + id;
                     log.error(errorMsg);
@@ -189,37 +530,69 @@ public class UserService {
                 });
     }
 
-    /**
-     * 根据用户名查询
-     */
-    public Optional<User> getUserByUsername(String username) {
+    private Optional<UserCache.Entry> getUserEntryByUsername(String username) {
         log.info("查询用户名: {}", username);
-        return userRepository.findByUsername(username);
+        ShardedUserStore shards = shardedUserStore.getIfAvailable();
+        return userCache.getByUsername(username, () -> (shards != null
+                ? shards.findByUsername(username)
+                : userRepository.findViewByUsername(username)).map(UserView::toUser));
     }
 
     /**
      * 更新用户
+     *
+     * 每次尝试在独立事务中重新读取并应用修改，提交时发生乐观锁冲突则退避后重试。
+     * 开启分片时在分片上按版本号更新，用户名修改后行迁移到新的分片。
      */
-    @Transactional
     public User updateUser(Long id, User userDetails) {
         log.info("更新用户ID: {}", id);
-        User user = userRepository.findById(id)
+        ShardedUserStore shards = shardedUserStore.getIfAvailable();
+        if (shards != null) {
+            return optimisticLockRetrier.execute("updateUser", attempt -> updateInShard(shards, id, userDetails, attempt));
+        }
+        return optimisticLockRetrier.execute("updateUser", attempt -> {
+            User user = userRepository.findById(id)
+                    .orElseThrow(() -> {
+                        String errorMsg = "用户不存在: " + id;
+                        log.error(errorMsg);
+                        RuntimeException exception = new RuntimeException(errorMsg);
+
+                        return exception;
+                    });
+
+            // 按旧用户名失效缓存，保存后再按新用户名失效
+            userCache.evict(user);
+            user.setUsername(userDetails.getUsername());
+            user.setEmail(userDetails.getEmail());
+            user.setPhone(userDetails.getPhone());
+            user.setAge(userDetails.getAge());
+            user.setActive(userDetails.getActive());
+
+            User updatedUser = userRepository.save(user);
+            userCache.evict(updatedUser);
+            log.info("用户更新成功: {}, 尝试次数: {}", updatedUser.getUsername(), attempt);
+            return updatedUser;
+        });
+    }
+
+    private User updateInShard(ShardedUserStore shards, Long id, User userDetails, int attempt) {
+        UserView current = shards.findById(id)
                 .orElseThrow(() -> {
                     String errorMsg = "用户不存在: " + id;
                     log.error(errorMsg);
-                    RuntimeException exception = new RuntimeException(errorMsg);
-
-                    return exception;
+                    return new RuntimeException(errorMsg);
                 });
 
-        user.setUsername(userDetails.getUsername());
-        user.setEmail(userDetails.getEmail());
-        user.setPhone(userDetails.getPhone());
-        user.setAge(userDetails.getAge());
-        user.setActive(userDetails.getActive());
-
-        User updatedUser = userRepository.save(user);
-        log.info("用户更新成功: {}", updatedUser.getUsername());
+        userCache.evict(current.toUser());
+        userBloomFilters.put(userDetails);
+        User updatedUser;
+        try {
+            updatedUser = shards.update(current, userDetails).toUser();
+        } catch (DataIntegrityViolationException e) {
+            throw shardDuplicateKey(shards, userDetails, id, e);
+        }
+        afterShardWrite(updatedUser, false);
+        log.info("用户更新成功: {}, 尝试次数: {}", updatedUser.getUsername(), attempt);
         return updatedUser;
     }
 
@@ -229,6 +602,19 @@ public class UserService {
     @Transactional
     public void deleteUser(Long id) {
         log.info("删除用户ID: {}", id);
+        ShardedUserStore shards = shardedUserStore.getIfAvailable();
+        if (shards != null) {
+            UserView user = shards.findById(id)
+                    .orElseThrow(() -> {
+                        String errorMsg = "用户不存在: " + id;
+                        log.error(errorMsg);
+                        return new RuntimeException(errorMsg);
+                    });
+            shards.delete(user);
+            afterShardWrite(user.toUser(), true);
+            log.info("用户删除成功: {}", user.username());
+            return;
+        }
         User user = userRepository.findById(id)
                 .orElseThrow(() -> {
                     String errorMsg = "用户不存在: " + id;
@@ -239,6 +625,7 @@ public class UserService {
                 });
 
         userRepository.delete(user);
+        userCache.evict(user);
         log.info("用户删除成功: {}", user.getUsername());
     }
 
@@ -248,6 +635,7 @@ public class UserService {
     @Transactional
     public User simulateDatabaseTimeout(User user) {
         log.info("模拟数据库操作超时");
+        requireSingleDatabase("数据库超时演示");
         try {
             Thread.sleep(5000); // 模拟长时间操作
             return userRepository.save(user);
@@ -260,22 +648,45 @@ public class UserService {
     }
 
     /**
-     * 模拟并发修改异常
+     * 模拟并发修改并通过乐观锁重试解决
+     *
+     * 第一次尝试读取用户后，另一个事务抢先修改同一行并提交（version 递增），
+     * 本事务提交时 UPDATE ... WHERE version = ? 影响 0 行，触发乐观锁异常；
+     * 重试时重新读取最新版本并再次应用修改，最终写入成功。
+     * 其他异常（如邮箱违反唯一约束）不重试，直接返回并发修改冲突。
      */
-    @Transactional
-    public User simulateConcurrentModification(Long id, String newEmail) {
+    public ConcurrentUpdateResult simulateConcurrentModification(Long id, String newEmail) {
         log.info("模拟并发修改异常，用户ID: {}", id);
+        requireSingleDatabase("并发修改演示");
+        TransactionTemplate concurrentTransaction = new TransactionTemplate(transactionManager);
+        concurrentTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        AtomicInteger attempts = new AtomicInteger();
 
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("用户不存在: " + id));
-
-        // 模拟另一个事务已经修改了数据
-        user.setEmail(newEmail + "_concurrent");
-
-        // 这里会触发乐观锁异常（如果配置了@Version字段）
-        // 或者触发唯一约束冲突
         try {
-            return userRepository.save(user);
+            User updatedUser = optimisticLockRetrier.execute("concurrentModification", attempt -> {
+                attempts.set(attempt);
+                User user = userRepository.findById(id)
+                        .orElseThrow(() -> new RuntimeException("用户不存在: " + id));
+                log.info("第 {} 次尝试，读取到版本: {}", attempt, user.getVersion());
+
+                if (attempt == 1) {
+                    // 模拟另一个事务已经修改了数据
+                    concurrentTransaction.executeWithoutResult(concurrentStatus -> {
+                        User concurrentUser = userRepository.findById(id)
+                                .orElseThrow(() -> new RuntimeException("用户不存在: " + id));
+                        concurrentUser.setEmail(newEmail + "_concurrent");
+                        userRepository.save(concurrentUser);
+                        userCache.evict(concurrentUser);
+                    });
+                    log.info("另一个事务已抢先修改用户: {}", id);
+                }
+
+                userCache.evict(user);
+                user.setEmail(newEmail);
+                return userRepository.save(user);
+            });
+            log.info("并发修改已解决，用户ID: {}, 尝试次数: {}, 最终版本: {}", id, attempts.get(), updatedUser.getVersion());
+            return new ConcurrentUpdateResult(updatedUser, attempts.get(), attempts.get() - 1);
         } catch (Exception e) {
             log.error("并发修改冲突", e);
 
@@ -0,0 +1,286 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.UserCache;
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 单用户创建的写后合并提交（group commit）队列
+ *
+ * 并发请求提交的用户进入有界队列，由单个后台线程每攒够 max-batch-size 行或等待 max-delay-ms 后，
+ * 在一个事务中批量 INSERT 并提交，多个请求共享一次提交。
+ * 每个请求拿到自己的 CompletableFuture：成功时返回带生成 ID 的用户；批量失败时逐条在独立事务中重试，
+ * 只有真正出错的请求收到自己的异常。队列已满时立即拒绝，不阻塞请求线程。
+ * 等待超时与后台线程取走请求互斥：请求在 await-timeout-ms 内没有被取走时以 TimeoutException 结束，且一定不会写入；
+ * 已被取走的请求不再超时，等待这一批的写入结果，因此调用方不会在行已提交后收到超时。
+ *
+ * 停止或后台线程意外退出后不再接收新请求，队列中剩余的请求立即失败，调用方不会一直阻塞。
+ * 入队与停止在同一把锁下进行，停止之后不会再有用户进入队列。
+ *
+ * 默认关闭，通过 app.users.write-behind.enabled=true 开启。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.users.write-behind.enabled", havingValue = "true")
+public class UserWriteBehindQueue {
+
+    private final UserRepository userRepository;
+    private final UserCache userCache;
+    private final TransactionTemplate transaction;
+    private final BlockingQueue<PendingCreate> queue;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final long awaitTimeoutMs;
+
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter rejected;
+    private final Counter individualRetries;
+
+    private final Thread flusher;
+    /**
+     * 入队与停止互斥，请求线程可能是虚拟线程，等锁时应让出载体线程
+     */
+    private final ReentrantLock lifecycleLock = new ReentrantLock();
+
+    /**
+     * 是否接收新请求，只在 lifecycleLock 内修改
+     */
+    private volatile boolean accepting = true;
+
+    public UserWriteBehindQueue(UserRepository userRepository,
+                                UserCache userCache,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.users.write-behind.queue-capacity:10000}") int queueCapacity,
+                                @Value("${app.users.write-behind.max-batch-size:200}") int maxBatchSize,
+                                @Value("${app.users.write-behind.max-delay-ms:5}") long maxDelayMs,
+                                @Value("${app.users.write-behind.await-timeout-ms:5000}") long awaitTimeoutMs) {
+        this.userRepository = userRepository;
+        this.userCache = userCache;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.awaitTimeoutMs = awaitTimeoutMs;
+
+        this.flushTimer = meterRegistry.timer("users.write.behind.flush");
+        this.batchSizes = meterRegistry.summary("users.write.behind.batch.size");
+        this.rejected = meterRegistry.counter("users.write.behind.rejected");
+        this.individualRetries = meterRegistry.counter("users.write.behind.individual.retries");
+        meterRegistry.gauge("users.write.behind.queue.size", queue, BlockingQueue::size);
+
+        this.flusher = new Thread(this::runFlusher, "user-write-behind");
+        this.flusher.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.start();
+        log.info("用户写后合并提交已开启，队列容量: {}, 批大小: {}, 最长等待: {}ms",
+                queue.remainingCapacity(), maxBatchSize, TimeUnit.NANOSECONDS.toMillis(maxDelayNanos));
+    }
+
+    /**
+     * 停止接收新请求，并把队列中剩余的用户写完后再退出
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        lifecycleLock.lock();
+        try {
+            accepting = false;
+        } finally {
+            lifecycleLock.unlock();
+        }
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * 提交一个待创建的用户
+     *
+     * @return 提交后完成的 future，成功时用户已带有生成的 ID；
+     *         超过 await-timeout-ms 仍未被后台线程取走时以 TimeoutException 结束，此时用户没有写入
+     */
+    public CompletableFuture<User> submit(User user) {
+        PendingCreate pending = new PendingCreate(user);
+        boolean queued;
+        lifecycleLock.lock();
+        try {
+            queued = accepting && queue.offer(pending);
+        } finally {
+            lifecycleLock.unlock();
+        }
+        if (!queued) {
+            rejected.increment();
+            pending.future().completeExceptionally(new RejectedExecutionException(
+                    accepting ? "用户写入队列已满，请稍后重试" : "用户写入队列已停止"));
+        } else {
+            // 与 orTimeout 相同，在 JDK 的延迟线程上直接执行，只做一次 CAS
+            CompletableFuture.delayedExecutor(awaitTimeoutMs, TimeUnit.MILLISECONDS, Runnable::run)
+                    .execute(() -> pending.expire(awaitTimeoutMs));
+        }
+        return pending.future();
+    }
+
+    private void runFlusher() {
+        List<PendingCreate> batch = new ArrayList<>(maxBatchSize);
+        try {
+            // 停止接收后不会再有新用户入队，队列为空即可退出
+            while (accepting || !queue.isEmpty()) {
+                try {
+                    PendingCreate first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+
+                    // 在 max-delay 内继续收集，攒够一批立即提交
+                    long deadline = System.nanoTime() + maxDelayNanos;
+                    while (batch.size() < maxBatchSize) {
+                        if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                            continue;
+                        }
+                        long remaining = deadline - System.nanoTime();
+                        PendingCreate next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    // 已经超时的请求不再写入；其余请求取走后不会再超时
+                    batch.removeIf(pending -> !pending.claim());
+                    if (!batch.isEmpty()) {
+                        flush(batch);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("用户写后合并提交线程异常", e);
+                    batch.forEach(pending -> pending.future().completeExceptionally(e));
+                }
+                // 被中断或出现 Error 时保留当前批次，退出前统一失败
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("用户写后合并提交线程被中断");
+        } finally {
+            failRemaining(batch);
+        }
+    }
+
+    /**
+     * 后台线程退出后停止接收新请求，并让尚未写入的请求立即失败
+     */
+    private void failRemaining(List<PendingCreate> batch) {
+        lifecycleLock.lock();
+        try {
+            accepting = false;
+        } finally {
+            lifecycleLock.unlock();
+        }
+        queue.drainTo(batch);
+        if (!batch.isEmpty()) {
+            log.error("用户写后合并提交线程已退出，{} 个未写入的请求失败", batch.size());
+            RejectedExecutionException e = new RejectedExecutionException("用户写入线程已停止");
+            batch.forEach(pending -> pending.future().completeExceptionally(e));
+        }
+    }
+
+    private void flush(List<PendingCreate> batch) {
+        long startTime = System.nanoTime();
+        List<User> users = batch.stream().map(PendingCreate::user).toList();
+        try {
+            List<User> savedUsers = transaction.execute(status -> {
+                List<User> saved = userRepository.saveAll(users);
+                saved.forEach(userCache::evict);
+                return saved;
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future().complete(savedUsers.get(i));
+            }
+        } catch (RuntimeException e) {
+            log.warn("合并提交失败，逐条重试以定位失败的请求，数量: {}, 原因: {}", batch.size(), e.getMessage());
+            batch.forEach(this::saveIndividually);
+        } finally {
+            flushTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            batchSizes.record(batch.size());
+        }
+    }
+
+    private void saveIndividually(PendingCreate pending) {
+        individualRetries.increment();
+        User user = pending.user();
+        // 回滚后实体上残留的 ID 和版本号会让 save 误判为更新，重试前清除
+        user.setId(null);
+        user.setVersion(null);
+        try {
+            User saved = transaction.execute(status -> {
+                User result = userRepository.save(user);
+                userCache.evict(result);
+                return result;
+            });
+            pending.future().complete(saved);
+        } catch (RuntimeException e) {
+            log.error("创建用户失败: {}", user.getUsername(), e);
+            pending.future().completeExceptionally(e);
+        }
+    }
+
+    private static final class PendingCreate {
+
+        private final User user;
+        private final CompletableFuture<User> future = new CompletableFuture<>();
+
+        /**
+         * 被后台线程取走或已超时，两者只有一个能成功
+         */
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        PendingCreate(User user) {
+            this.user = user;
+        }
+
+        User user() {
+            return user;
+        }
+
+        CompletableFuture<User> future() {
+            return future;
+        }
+
+        /**
+         * 后台线程取走请求准备写入，已超时时返回 false
+         */
+        boolean claim() {
+            return settled.compareAndSet(false, true);
+        }
+
+        void expire(long awaitTimeoutMs) {
+            if (settled.compareAndSet(false, true)) {
+                future.completeExceptionally(new TimeoutException("等待写入超过 " + awaitTimeoutMs + "ms，用户未写入"));
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.demo.util;
+
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import com.example.demo.jdbc.QueryBudget;
+import io.sentry.IScopes;
+import io.sentry.ISentryLifecycleToken;
+import io.sentry.Sentry;
+import org.slf4j.MDC;
+import org.slf4j.spi.MDCAdapter;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * 跨线程传递的上下文快照：TraceContext 的 Trace ID、MDC、Sentry Scopes、SQL 预算
+ *
+ * 在提交任务的线程上 {@link #capture()}，在执行任务的线程上恢复，任务结束后把执行线程还原为执行前的状态：
+ * 线程池中的线程执行前是空的，因此不会把上一个任务的 Trace ID / MDC 带给下一个任务；
+ * 任务在提交线程上直接执行（如调用方执行的拒绝策略）时，结束后提交线程的上下文保持不变。
+ * 不能用“当前线程是否为提交线程”判断直接执行：线程池线程上的任务 A 向同一线程池提交任务 B
+ * （如 A 完成时触发的 thenApplyAsync 阶段），B 之后会在同一线程上从队列中取出执行，此时必须恢复 B 的快照。
+ *
+ * - MDC 通过 Logback 的只读视图读取，MDC 未变化时不复制 Map
+ * - Sentry 未启用时不 fork Scopes
+ *
+ * 所有执行器通过 {@link #TASK_DECORATOR}（或 {@link #wrap(Executor)}）接入。
+ */
+public final class ContextSnapshot {
+
+    /**
+     * Spring 执行器的任务装饰器
+     */
+    public static final TaskDecorator TASK_DECORATOR = ContextSnapshot::wrap;
+
+    private static final String SENTRY_SCOPES_CREATOR = "ContextSnapshot";
+
+    private final String traceId;
+    private final Map<String, String> mdc;
+    private final IScopes scopes;
+    private final QueryBudget queryBudget;
+
+    private ContextSnapshot(String traceId, Map<String, String> mdc, IScopes scopes, QueryBudget queryBudget) {
+        this.traceId = traceId;
+        this.mdc = mdc;
+        this.scopes = scopes;
+        this.queryBudget = queryBudget;
+    }
+
+    /**
+     * 读取当前线程的上下文，不复制任何内容
+     */
+    public static ContextSnapshot capture() {
+        return new ContextSnapshot(TraceContext.peekTraceId(), currentMdc(),
+                Sentry.isEnabled() ? Sentry.getCurrentScopes() : null, QueryBudget.current());
+    }
+
+    public static Runnable wrap(Runnable task) {
+        ContextSnapshot snapshot = capture();
+        return () -> snapshot.run(task);
+    }
+
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        ContextSnapshot snapshot = capture();
+        return () -> snapshot.call(task);
+    }
+
+    /**
+     * 包装执行器，用于 CompletableFuture 的 *Async 阶段等直接接收 Executor 的场景
+     */
+    public static Executor wrap(Executor executor) {
+        return task -> executor.execute(wrap(task));
+    }
+
+    /**
+     * 在当前线程上以快照中的上下文执行任务，结束后还原当前线程原来的上下文
+     */
+    public void run(Runnable task) {
+        Previous previous = apply();
+        try {
+            task.run();
+        } finally {
+            previous.restore();
+        }
+    }
+
+    public <T> T call(Callable<T> task) throws Exception {
+        Previous previous = apply();
+        try {
+            return task.call();
+        } finally {
+            previous.restore();
+        }
+    }
+
+    private Previous apply() {
+        Previous previous = new Previous(TraceContext.peekTraceId(), currentMdc(), QueryBudget.current());
+        TraceContext.restoreTraceId(traceId);
+        setMdc(mdc, previous.mdc);
+        QueryBudget.bind(queryBudget);
+        previous.token = scopes != null ? scopes.forkedScopes(SENTRY_SCOPES_CREATOR).makeCurrent() : null;
+        return previous;
+    }
+
+    /**
+     * 把当前线程的 MDC 设置为 contextMap；与线程上已有的 MDC 是同一个实例（或两者都为空）时不做任何修改，
+     * MDC.setContextMap 每次都会复制 Map
+     */
+    private static void setMdc(Map<String, String> contextMap, Map<String, String> current) {
+        if (contextMap == current || (isEmpty(contextMap) && isEmpty(current))) {
+            return;
+        }
+        if (isEmpty(contextMap)) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(contextMap);
+        }
+    }
+
+    private static boolean isEmpty(Map<String, String> contextMap) {
+        return contextMap == null || contextMap.isEmpty();
+    }
+
+    private static Map<String, String> currentMdc() {
+        MDCAdapter adapter = MDC.getMDCAdapter();
+        if (adapter instanceof LogbackMDCAdapter logback) {
+            // 只读视图只在 MDC 修改后重建一次，未变化时返回同一个实例
+            return logback.getPropertyMap();
+        }
+        return MDC.getCopyOfContextMap();
+    }
+
+    /**
+     * 执行任务前线程上的上下文；线程池线程上通常为空，还原即清理
+     */
+    private static final class Previous {
+
+        private final String traceId;
+        private final Map<String, String> mdc;
+        private final QueryBudget queryBudget;
+        private ISentryLifecycleToken token;
+
+        private Previous(String traceId, Map<String, String> mdc, QueryBudget queryBudget) {
+            this.traceId = traceId;
+            this.mdc = mdc;
+            this.queryBudget = queryBudget;
+        }
+
+        private void restore() {
+            try {
+                if (token != null) {
+                    // 还原为执行前的 Scopes
+                    token.close();
+                }
+            } finally {
+                TraceContext.restoreTraceId(traceId);
+                setMdc(mdc, currentMdc());
+                if (queryBudget != null) {
+                    QueryBudget.bind(queryBudget);
+                } else {
+                    QueryBudget.unbind();
+                }
+            }
+        }
+    }
+}
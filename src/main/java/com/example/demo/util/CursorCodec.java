@@ -0,0 +1,59 @@
+package com.example.demo.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 分页游标编解码工具类
+ *
+ * 将 keyset 分页的最后一个 ID 编码为不透明的游标字符串，
+ * 客户端只需原样回传，无需关心游标的内部结构。
+ */
+public final class CursorCodec {
+
+    private static final String PREFIX = "id:";
+
+    private CursorCodec() {
+    }
+
+    /**
+     * 将最后一条记录的 ID 编码为游标
+     *
+     * @param lastId 当前页最后一条记录的 ID
+     * @return URL 安全的游标字符串
+     */
+    public static String encode(Long lastId) {
+        if (lastId == null) {
+            return null;
+        }
+        byte[] raw = (PREFIX + lastId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    /**
+     * 解码游标，返回其中的 ID
+     *
+     * @param cursor 游标字符串，为空表示从头开始
+     * @return 游标中的 ID，游标为空时返回 0
+     * @throws IllegalArgumentException 游标格式不合法
+     */
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor, e);
+        }
+        if (!raw.startsWith(PREFIX)) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor);
+        }
+        try {
+            return Long.parseLong(raw.substring(PREFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor, e);
+        }
+    }
+}
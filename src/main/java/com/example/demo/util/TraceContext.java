@@ -57,6 +57,31 @@ public class TraceContext {
         }
     }
 
+    /**
+     * 当前线程的 Trace ID，没有时返回 null（不生成新的）
+     */
+    static String peekTraceId() {
+        return traceIdHolder.get();
+    }
+
+    /**
+     * 恢复 Trace ID，为 null 时清除（供 {@link ContextSnapshot} 在线程间传递）
+     */
+    static void restoreTraceId(String traceId) {
+        if (traceId == null) {
+            clear();
+        } else {
+            traceIdHolder.set(traceId);
+        }
+    }
+
+    /**
+     * 清除当前线程的 Trace ID
+     */
+    public static void clear() {
+        traceIdHolder.remove();
+    }
+
     /**
      * 获取当前 Transaction 名称
      *
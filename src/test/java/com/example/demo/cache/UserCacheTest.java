@@ -0,0 +1,77 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private UserCache newCache(int maxSize, Duration ttl) {
+        return new UserCache(new ObjectMapper(), meterRegistry, true, maxSize, ttl);
+    }
+
+    private static User user(long id, String username) {
+        return new User(id, username, username + "@example.com", null, 25, true, 0L);
+    }
+
+    @Test
+    void testReadThroughByIdAndUsername() {
+        UserCache cache = newCache(10, Duration.ofMinutes(5));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.getById(1L, () -> {
+            loads.incrementAndGet();
+            return Optional.of(user(1L, "alice"));
+        });
+        Optional<UserCache.Entry> byId = cache.getById(1L, () -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        Optional<UserCache.Entry> byUsername = cache.getByUsername("alice", () -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(byId).map(entry -> entry.getUser().getUsername()).contains("alice");
+        assertThat(byUsername).map(entry -> entry.getUser().getId()).contains(1L);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testEvictAndSizeBound() {
+        UserCache cache = newCache(2, Duration.ofMinutes(5));
+        cache.getById(1L, () -> Optional.of(user(1L, "alice")));
+        cache.getById(2L, () -> Optional.of(user(2L, "bob")));
+        cache.getById(3L, () -> Optional.of(user(3L, "carol")));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(meterRegistry.get("cache.evictions").functionCounter().count()).isEqualTo(1);
+
+        cache.evict(user(3L, "carol"));
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getByUsername("carol", Optional::empty)).isEmpty();
+    }
+
+    @Test
+    void testReturnedUserIsACopyAndJsonIsPreSerialized() {
+        UserCache cache = newCache(10, Duration.ofMinutes(5));
+        UserCache.Entry entry = cache.getById(1L, () -> Optional.of(user(1L, "alice"))).orElseThrow();
+
+        entry.getUser().setUsername("changed");
+
+        assertThat(entry.getUser().getUsername()).isEqualTo("alice");
+        assertThat(entry.getJson().getValue()).contains("\"username\":\"alice\"");
+        assertThat(entry.getJson()).isSameAs(entry.getJson());
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.projection.UserKeys;
+import com.example.demo.repository.projection.UserView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserSearchIndexTest {
+
+    private UserRepository userRepository;
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @Test
+    void testTrigramSubstringMatchPrefixFirst() {
+        UserSearchIndex index = newIndex(100, keys(1, "malice"), keys(2, "Alice"), keys(3, "bob"));
+
+        assertThat(usernames(index.search("ALI", 10))).containsExactly("Alice", "malice");
+        // 没有前缀匹配时按索引中的顺序返回子串匹配
+        assertThat(usernames(index.search("lic", 10))).containsExactly("malice", "Alice");
+        assertThat(usernames(index.search("xyz", 10))).isEmpty();
+        // 邮箱同样参与匹配
+        assertThat(usernames(index.search("bob@ex", 10))).containsExactly("bob");
+    }
+
+    @Test
+    void testCommonTrigramTakesPrefixHitsFirstAndStopsAtLimit() {
+        UserKeys[] keys = new UserKeys[501];
+        for (int i = 0; i < 500; i++) {
+            keys[i] = keys(i + 1, "user" + i);
+        }
+        // 前缀匹配的用户最后创建，位于倒排表末尾
+        keys[500] = keys(501, "example_fan");
+        UserSearchIndex index = newIndex(1000, keys);
+
+        // 所有用户的邮箱都包含 "exa"
+        assertThat(usernames(index.search("exa", 3))).containsExactly("example_fan", "user0", "user1");
+        assertThat(usernames(index.search("com", 2))).containsExactly("user0", "user1");
+        assertThat(usernames(index.search("user49", 20))).hasSize(11).startsWith("user49", "user490");
+    }
+
+    @Test
+    void testShortQueryIsPrefixMatch() {
+        UserSearchIndex index = newIndex(100, keys(1, "malice"), keys(2, "Alice"), keys(3, "bob"));
+
+        assertThat(usernames(index.search("al", 10))).containsExactly("Alice");
+        assertThat(usernames(index.search("b", 10))).containsExactly("bob");
+    }
+
+    @Test
+    void testUpdateAndRemoveAppliedAndDeadSlotsCompacted() {
+        UserSearchIndex index = newIndex(100, keys(1, "alice"), keys(2, "bob"));
+
+        for (int i = 0; i < 1100; i++) {
+            index.recordChange(user(1, "alice" + i), false);
+        }
+        index.recordChange(user(2, "bob"), true);
+
+        assertThat(usernames(index.search("alice1099", 10))).containsExactly("alice1099");
+        assertThat(usernames(index.search("alice10", 10))).containsExactly("alice1099");
+        assertThat(usernames(index.search("bob", 10))).isEmpty();
+        // 失效槽位超过下限后整体重建，只剩一个有效用户
+        assertThat((int) ReflectionTestUtils.getField(index, "nextSlot")).isLessThan(100);
+        assertThat(index.status()).containsEntry("entries", 1);
+    }
+
+    @Test
+    void testOverflowFallsBackToDatabaseWithSameMatching() {
+        UserSearchIndex index = newIndex(2, keys(1, "alice"), keys(2, "bob"));
+        index.recordChange(user(3, "carol"), false);
+        assertThat(index.status()).containsEntry("overflowed", true).containsEntry("entries", 0);
+
+        UserView carol = new UserView(3L, "carol", "carol@example.com", null, 30, true, 0L);
+        when(userRepository.findViewsByUsernameStartingWithIgnoreCaseOrEmailStartingWithIgnoreCaseOrderByIdAsc(
+                anyString(), anyString(), any(Limit.class))).thenReturn(List.of(carol));
+        when(userRepository.findViewsByUsernameContainingIgnoreCaseOrEmailContainingIgnoreCaseOrderByIdAsc(
+                anyString(), anyString(), any(Limit.class))).thenReturn(List.of(carol));
+
+        assertThat(usernames(index.search("ca", 10))).containsExactly("carol");
+        verify(userRepository).findViewsByUsernameStartingWithIgnoreCaseOrEmailStartingWithIgnoreCaseOrderByIdAsc(
+                "ca", "ca", Limit.of(10));
+        assertThat(usernames(index.search("aro", 10))).containsExactly("carol");
+        verify(userRepository).findViewsByUsernameContainingIgnoreCaseOrEmailContainingIgnoreCaseOrderByIdAsc(
+                "aro", "aro", Limit.of(10));
+    }
+
+    @Test
+    void testRebuiltAfterUserCountDropsBelowLimit() {
+        UserSearchIndex index = newIndex(2, keys(1, "alice"), keys(2, "bob"));
+        index.recordChange(user(3, "carol"), false);
+
+        // 只有新增时不检查用户数
+        index.rebuildIfShrunk();
+        verify(userRepository, never()).count();
+
+        index.recordChange(user(2, "bob"), true);
+        index.recordChange(user(3, "carol"), true);
+        UserKeys alice = keys(1, "alice");
+        when(userRepository.count()).thenReturn(1L);
+        when(userRepository.streamAllKeys()).thenReturn(Stream.of(alice));
+        index.rebuildIfShrunk();
+
+        assertThat(index.status()).containsEntry("overflowed", false).containsEntry("entries", 1);
+        assertThat(usernames(index.search("ali", 10))).containsExactly("alice");
+    }
+
+    @Test
+    void testStillOverflowedWhenCountNotBelowLimit() {
+        UserSearchIndex index = newIndex(2, keys(1, "alice"), keys(2, "bob"), keys(3, "carol"));
+        index.recordChange(user(3, "carol"), true);
+        when(userRepository.count()).thenReturn(2L);
+
+        index.rebuildIfShrunk();
+
+        assertThat(index.status()).containsEntry("overflowed", true);
+        // 只有创建时的一次构建
+        verify(userRepository, times(1)).streamAllKeys();
+    }
+
+    private UserSearchIndex newIndex(int maxEntries, UserKeys... keys) {
+        when(userRepository.streamAllKeys()).thenReturn(Stream.of(keys));
+        UserSearchIndex index = new UserSearchIndex(userRepository, transactionManager, new SimpleMeterRegistry(), maxEntries);
+        index.rebuild();
+        return index;
+    }
+
+    private static List<String> usernames(List<Map<String, Object>> results) {
+        return results.stream().map(result -> (String) result.get("username")).toList();
+    }
+
+    private static User user(long id, String username) {
+        return new User(id, username, username + "@example.com", null, 30, true, 0L);
+    }
+
+    private static UserKeys keys(long id, String username) {
+        UserKeys keys = mock(UserKeys.class);
+        when(keys.getId()).thenReturn(id);
+        when(keys.getUsername()).thenReturn(username);
+        when(keys.getEmail()).thenReturn(username.toLowerCase() + "@example.com");
+        return keys;
+    }
+}
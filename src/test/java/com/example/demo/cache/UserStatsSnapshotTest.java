@@ -0,0 +1,108 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserStatsSnapshotTest {
+
+    private UserStatsSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.streamAllStats()).thenReturn(Stream.empty());
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        snapshot = new UserStatsSnapshot(userRepository, transactionManager, new SimpleMeterRegistry());
+        snapshot.seed();
+    }
+
+    @Test
+    void testEmptySnapshotRatioIsDouble() {
+        assertThat(snapshot.stats()).containsEntry("total", 0).containsEntry("activeRatio", 0.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testInsertUpdateAndDelete() {
+        snapshot.recordChange(user(1L, 25, true), false);
+        snapshot.recordChange(user(2L, 35, true), false);
+        snapshot.recordChange(user(3L, null, false), false);
+        assertThat(snapshot.stats()).containsEntry("total", 3).containsEntry("active", 2);
+
+        // 更新同一用户：启用状态切换只调整启用人数，不增加总数
+        snapshot.recordChange(user(1L, 26, false), false);
+        snapshot.recordChange(user(3L, 40, true), false);
+        snapshot.recordChange(user(3L, 40, true), false);
+        Map<String, Object> stats = snapshot.stats();
+        assertThat(stats).containsEntry("total", 3).containsEntry("active", 2).containsEntry("activeRatio", 0.6667);
+        assertThat((Map<String, Object>) stats.get("age")).containsEntry("count", 3).containsEntry("min", 26)
+                .containsEntry("max", 40).containsEntry("unknown", 0);
+
+        snapshot.recordChange(user(2L, 35, true), true);
+        snapshot.recordChange(user(2L, 35, true), true);
+        assertThat(snapshot.stats()).containsEntry("total", 2).containsEntry("active", 1);
+        assertThat(snapshot.count()).isEqualTo(2);
+    }
+
+    @Test
+    void testRemovedSlotReused() {
+        snapshot.recordChange(user(1L, 25, true), false);
+        snapshot.recordChange(user(2L, 35, true), false);
+        snapshot.recordChange(user(1L, 25, true), true);
+
+        snapshot.recordChange(user(3L, 45, false), false);
+
+        assertThat(ReflectionTestUtils.getField(snapshot, "highWater")).isEqualTo(2);
+        assertThat(snapshot.stats()).containsEntry("total", 2).containsEntry("active", 1);
+    }
+
+    @Test
+    void testChangesAppliedOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            snapshot.recordChange(user(1L, 25, true), false);
+            snapshot.recordChange(user(2L, 35, true), false);
+            assertThat(snapshot.count()).isZero();
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(snapshot.count()).isEqualTo(2);
+
+        // 回滚的事务不触发 afterCommit，写入不进入快照
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            snapshot.recordChange(user(3L, 45, true), false);
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(snapshot.count()).isEqualTo(2);
+    }
+
+    private static User user(long id, Integer age, boolean active) {
+        return new User(id, "user" + id, "user" + id + "@example.com", null, age, active, 0L);
+    }
+}
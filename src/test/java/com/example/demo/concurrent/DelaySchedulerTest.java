@@ -0,0 +1,106 @@
+package com.example.demo.concurrent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DelaySchedulerTest {
+
+    private DelayScheduler delayScheduler;
+    private ExecutorRegistry executorRegistry;
+
+    @BeforeEach
+    void setUp() {
+        delayScheduler = new DelayScheduler(new SimpleMeterRegistry(), 10, 64, 2);
+        executorRegistry = new ExecutorRegistry(new SimpleMeterRegistry(), "", 0, 500);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executorRegistry.shutdown();
+        delayScheduler.stop();
+    }
+
+    @Test
+    void testDelaysNeverCompleteEarly() {
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        // 64 格 × 10ms，1500ms 的延迟要转两圈以上
+        for (long delayMs : new long[] {0, 5, 30, 250, 1500}) {
+            long startedAt = System.nanoTime();
+            futures.add(delayScheduler.delay(Duration.ofMillis(delayMs), delayMs)
+                    .thenApply(ignored -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) - delayMs));
+        }
+        for (CompletableFuture<Long> future : futures) {
+            assertThat(future.join()).isBetween(0L, 200L);
+        }
+        assertThat(delayScheduler.pending()).isZero();
+    }
+
+    /**
+     * 线程数与并发数的关系：
+     * Thread.sleep 实现每个并发的延迟占用一个线程；时间轮实现中所有延迟共用计时线程，
+     * 到期后的处理由一个线程池线程完成，线程数不随并发增长。
+     */
+    @Test
+    void testThreadCountIndependentOfConcurrency() {
+        ThreadPoolTaskExecutor executor = executorRegistry.executor("delay-curve",
+                new ExecutorRegistry.PoolSpec(1, 1, 20_000));
+        Duration delay = Duration.ofMillis(200);
+
+        for (int concurrency : new int[] {10, 100, 1_000, 10_000}) {
+            Set<String> threads = ConcurrentHashMap.newKeySet();
+            long startedAt = System.nanoTime();
+            List<CompletableFuture<Void>> futures = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                futures.add(delayScheduler.delay(delay)
+                        .thenRunAsync(() -> threads.add(Thread.currentThread().getName()), executor));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+            // 计时线程、转交线程之外只用了一个线程池线程
+            assertThat(threads).containsExactly("delay-curve-1");
+            assertThat(elapsedMs).isBetween(delay.toMillis(), delay.toMillis() + 2_000);
+        }
+    }
+
+    /**
+     * 到期后的阶段由转交线程提交，线程池的 block 策略照常生效：等待入队而不是直接拒绝
+     */
+    @Test
+    void testDelayedStageWaitsForSaturatedBlockingPool() {
+        ThreadPoolTaskExecutor executor = executorRegistry.executor("delay-block",
+                new ExecutorRegistry.PoolSpec(1, 1, 1, SaturationPolicy.BLOCK));
+        CountDownLatch release = new CountDownLatch(1);
+        // 占住唯一的线程并填满队列
+        executor.execute(() -> await(release));
+        executor.execute(() -> { });
+
+        CompletableFuture<String> delayed = delayScheduler.delay(Duration.ofMillis(20))
+                .thenApplyAsync(ignored -> Thread.currentThread().getName(), executor);
+        delayScheduler.delay(Duration.ofMillis(150)).thenRun(release::countDown);
+
+        assertThat(delayed.join()).isEqualTo("delay-block-1");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.demo.concurrent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExecutorRegistryTest {
+
+    @Test
+    void testConfiguredSpecOverridesDefaults() {
+        assertThat(ExecutorRegistry.parsePools(" async-trace = 5:10:100:caller-runs,\ndemo=1:2:0, "))
+                .containsEntry("async-trace", new ExecutorRegistry.PoolSpec(5, 10, 100, SaturationPolicy.CALLER_RUNS))
+                .containsEntry("demo", new ExecutorRegistry.PoolSpec(1, 2, 0))
+                .hasSize(2);
+
+        ExecutorRegistry registry = new ExecutorRegistry(new SimpleMeterRegistry(), "demo=2:4:8", 0, 500);
+        try {
+            ThreadPoolTaskExecutor executor = registry.executor("demo", new ExecutorRegistry.PoolSpec(1, 1, 1));
+            assertThat(executor.getCorePoolSize()).isEqualTo(2);
+            assertThat(executor.getMaxPoolSize()).isEqualTo(4);
+            assertThat(registry.executor("demo", new ExecutorRegistry.PoolSpec(1, 1, 1))).isSameAs(executor);
+        } finally {
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    void testTaskTimingAndRejectionsRecorded() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ExecutorRegistry registry = new ExecutorRegistry(meterRegistry, "", 0, 500);
+        try {
+            ThreadPoolTaskExecutor executor = registry.executor("test", new ExecutorRegistry.PoolSpec(1, 1, 1));
+            CountDownLatch release = new CountDownLatch(1);
+            executor.execute(() -> await(release));
+            executor.execute(() -> { });
+            assertThatThrownBy(() -> executor.execute(() -> { })).isInstanceOf(TaskRejectedException.class);
+
+            release.countDown();
+            executor.getThreadPoolExecutor().shutdown();
+            assertThat(executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(meterRegistry.get("executor.rejected").tag("name", "test").counter().count()).isEqualTo(1);
+            assertThat(meterRegistry.get("executor.task.run").tag("name", "test").timer().count()).isEqualTo(2);
+            assertThat(meterRegistry.get("executor.task.wait").tag("name", "test").timer().count()).isEqualTo(2);
+            assertThat(meterRegistry.get("executor.completed").tag("name", "test").functionCounter().count())
+                    .isEqualTo(2);
+        } finally {
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    void testSaturationPolicies() throws Exception {
+        ExecutorRegistry registry = new ExecutorRegistry(new SimpleMeterRegistry(),
+                "runs=1:1:1:caller-runs, block=1:1:1:block, shed=1:1:1:shed", 0, 2000);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // caller-runs：在提交线程上执行
+            ThreadPoolTaskExecutor runs = saturate(registry.executor("runs", null), release);
+            String[] ranOn = new String[1];
+            runs.execute(() -> ranOn[0] = Thread.currentThread().getName());
+            assertThat(ranOn[0]).isEqualTo(Thread.currentThread().getName());
+
+            // shed：拒绝并给出 Retry-After
+            ThreadPoolTaskExecutor shed = saturate(registry.executor("shed", null), release);
+            assertThatThrownBy(() -> shed.execute(() -> { }))
+                    .isInstanceOf(TaskRejectedException.class)
+                    .satisfies(e -> assertThat(ExecutorSaturatedException.find(e).getRetryAfterSeconds()).isPositive());
+
+            // block：队列腾出空间后入队
+            ThreadPoolTaskExecutor block = saturate(registry.executor("block", null), release);
+            CountDownLatch done = new CountDownLatch(1);
+            new Thread(() -> {
+                sleep(100);
+                release.countDown();
+            }).start();
+            block.execute(done::countDown);
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    void testShedBeforeQueueFullWhenEstimatedWaitTooLong() throws Exception {
+        ExecutorRegistry registry = new ExecutorRegistry(new SimpleMeterRegistry(), "", 50, 500);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            ThreadPoolTaskExecutor executor = registry.executor("slow",
+                    new ExecutorRegistry.PoolSpec(1, 1, 100, SaturationPolicy.SHED));
+            // 任务平均执行 100ms，队列里已有 1 个任务时新任务预计排队 100ms，超过 50ms 上限
+            executor.execute(() -> sleep(100));
+            executor.execute(() -> await(release));
+            waitUntil(() -> executor.getThreadPoolExecutor().getCompletedTaskCount() == 1 && executor.getQueueSize() == 0);
+            executor.execute(() -> { });
+            assertThatThrownBy(() -> executor.execute(() -> { }))
+                    .hasCauseInstanceOf(ExecutorSaturatedException.class);
+            assertThat(executor.getQueueSize()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            registry.shutdown();
+        }
+    }
+
+    /**
+     * 占住唯一的线程并填满容量为 1 的队列
+     */
+    private static ThreadPoolTaskExecutor saturate(ThreadPoolTaskExecutor executor, CountDownLatch release) {
+        executor.execute(() -> await(release));
+        executor.execute(() -> { });
+        return executor;
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            sleep(5);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.demo.controller;
+
+import com.example.demo.DemoApplication;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * /api/async-trace/test-multiple 在平台线程与虚拟线程模式下的吞吐对比，默认跳过：
+ *
+ * mvn test -Dtest=AsyncTraceThroughputTest -Dasync.throughput=true
+ *
+ * 依次以 spring.threads.virtual.enabled=false / true 启动应用（随机端口、Sentry 不上报、关闭 SQL 输出和 INFO 日志），
+ * 保持 CONCURRENCY 个请求同时在途，预热后发送 REQUESTS 个请求，输出吞吐、延迟中位数 / p99 和各状态码的数量。
+ * 线程池饱和或等待超时时接口返回 503，计入结果而不是重试。
+ * 这里只负责测量，不断言吞吐高低；运行在 JDK 21 以下时虚拟线程一行输出“未测量”。
+ */
+@EnabledIfSystemProperty(named = "async.throughput", matches = "true")
+class AsyncTraceThroughputTest {
+
+    private static final int CONCURRENCY = 100;
+    private static final int WARMUP_REQUESTS = 200;
+    private static final int REQUESTS = 1000;
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    @Test
+    void testPlatformVersusVirtualThreads() throws Exception {
+        System.out.printf("| 并发 %d，%d 个请求 | 吞吐 | 延迟中位数 | p99 | 状态码 |%n", CONCURRENCY, REQUESTS);
+        System.out.println("|---|---|---|---|---|");
+        for (boolean virtual : List.of(false, true)) {
+            if (virtual && Runtime.version().feature() < 21) {
+                System.out.printf("| 虚拟线程 | 未测量（JDK %d 不支持虚拟线程） | | | |%n", Runtime.version().feature());
+                continue;
+            }
+            try (ConfigurableApplicationContext context = start(virtual)) {
+                String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                        + "/api/async-trace/test-multiple?prefix=";
+                String mode = virtual ? "v" : "p";
+                run(baseUrl + "w" + mode, WARMUP_REQUESTS);
+                Result result = run(baseUrl + "m" + mode, REQUESTS);
+
+                System.out.printf("| %s | %.1f 请求/s | %dms | %dms | %s |%n", virtual ? "虚拟线程" : "平台线程池",
+                        REQUESTS * 1_000_000_000.0 / result.elapsedNanos(),
+                        result.percentileMillis(0.5), result.percentileMillis(0.99), result.statuses());
+                assertThat(result.statuses().keySet()).isSubsetOf(200, 503);
+                assertThat(result.statuses().values().stream().mapToInt(Integer::intValue).sum()).isEqualTo(REQUESTS);
+            }
+        }
+    }
+
+    /**
+     * 配置通过命令行参数传入，优先级高于 application.yml
+     */
+    private static ConfigurableApplicationContext start(boolean virtual) {
+        return new SpringApplicationBuilder(DemoApplication.class).run(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--sentry.dsn=",
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--app.jdbc.slow-query.enabled=false",
+                "--logging.level.root=warn");
+    }
+
+    /**
+     * 发送 requests 个请求，同时在途的请求不超过 CONCURRENCY；前缀带序号，每个请求创建的用户互不冲突
+     */
+    private Result run(String urlPrefix, int requests) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        long[] latencies = new long[requests];
+        Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[requests];
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            int index = i;
+            long sentAt = System.nanoTime();
+            HttpRequest request = HttpRequest.newBuilder(URI.create(urlPrefix + i)).timeout(Duration.ofSeconds(30)).build();
+            responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) -> {
+                        latencies[index] = System.nanoTime() - sentAt;
+                        statuses.computeIfAbsent(e == null ? response.statusCode() : -1, status -> new AtomicInteger())
+                                .incrementAndGet();
+                        inFlight.release();
+                    });
+        }
+        CompletableFuture.allOf(responses).exceptionally(e -> null).join();
+        long elapsed = System.nanoTime() - startTime;
+
+        Map<Integer, Integer> counts = new TreeMap<>();
+        statuses.forEach((status, count) -> counts.put(status, count.get()));
+        Arrays.sort(latencies);
+        return new Result(elapsed, latencies, counts);
+    }
+
+    /**
+     * 一轮请求的结果；状态码 -1 表示请求本身失败（连接错误、客户端超时）
+     */
+    private record Result(long elapsedNanos, long[] sortedLatencies, Map<Integer, Integer> statuses) {
+
+        long percentileMillis(double percentile) {
+            int index = Math.min(sortedLatencies.length - 1, (int) (sortedLatencies.length * percentile));
+            return sortedLatencies[index] / 1_000_000;
+        }
+    }
+}
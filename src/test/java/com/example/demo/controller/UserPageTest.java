@@ -0,0 +1,100 @@
+package com.example.demo.controller;
+
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.util.CursorCodec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET /api/users/page 的游标分页：页边界、页大小截断和非法游标
+ *
+ * 默认页大小配置得比上限大，验证默认值同样被截断。
+ */
+@SpringBootTest(properties = {"app.users.page.default-size=10", "app.users.page.max-size=3"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UserPageTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void testLastPageEndsExactlyAtBoundary() throws Exception {
+        List<Long> ids = createUsers("page_boundary", 6);
+
+        JsonNode first = page(get("/api/users/page")
+                .param("cursor", CursorCodec.encode(ids.get(0) - 1)).param("size", "3"));
+        assertThat(idsOf(first)).containsExactlyElementsOf(ids.subList(0, 3));
+        assertThat(first.get("hasMore").asBoolean()).isTrue();
+        assertThat(first.get("nextCursor").asText()).isEqualTo(CursorCodec.encode(ids.get(2)));
+
+        JsonNode second = page(get("/api/users/page")
+                .param("cursor", first.get("nextCursor").asText()).param("size", "3"));
+        assertThat(idsOf(second)).containsExactlyElementsOf(ids.subList(3, 6));
+        assertThat(second.get("hasMore").asBoolean()).isFalse();
+        assertThat(second.get("nextCursor").isNull()).isTrue();
+    }
+
+    @Test
+    void testPageSizeIsClamped() throws Exception {
+        List<Long> ids = createUsers("page_clamp", 5);
+        String cursor = CursorCodec.encode(ids.get(0) - 1);
+
+        assertThat(page(get("/api/users/page").param("cursor", cursor)).get("count").asInt()).isEqualTo(3);
+        assertThat(page(get("/api/users/page").param("cursor", cursor).param("size", "1000"))
+                .get("count").asInt()).isEqualTo(3);
+        assertThat(page(get("/api/users/page").param("cursor", cursor).param("size", "0"))
+                .get("count").asInt()).isEqualTo(1);
+    }
+
+    @Test
+    void testMalformedCursorIsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/users/page").param("cursor", "not-a-cursor!"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false));
+        mockMvc.perform(get("/api/users/page").param("cursor", "aWQ6eHl6"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    private List<Long> createUsers(String prefix, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> userRepository.save(new User(null, prefix + i, prefix + i + "@example.com", null, 30, true, null)))
+                .map(User::getId)
+                .sorted()
+                .toList();
+    }
+
+    private JsonNode page(MockHttpServletRequestBuilder request) throws Exception {
+        String body = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private static List<Long> idsOf(JsonNode page) {
+        return page.get("data").findValues("id").stream().map(JsonNode::asLong).toList();
+    }
+}
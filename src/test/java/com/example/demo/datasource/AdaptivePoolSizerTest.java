@@ -0,0 +1,55 @@
+package com.example.demo.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptivePoolSizerTest {
+
+    private AdaptivePoolSizer sizer;
+
+    @BeforeEach
+    void setUp() {
+        sizer = new AdaptivePoolSizer(new HikariDataSource(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(sizer, "minSize", 5);
+        ReflectionTestUtils.setField(sizer, "maxSize", 30);
+        ReflectionTestUtils.setField(sizer, "step", 2);
+        ReflectionTestUtils.setField(sizer, "targetWaitMs", 20.0);
+        ReflectionTestUtils.setField(sizer, "minThroughputGain", 0.05);
+    }
+
+    @Test
+    void testGrowsWhileThroughputKeepsRising() {
+        assertThat(sizer.nextMaxSize(10, 50, 3, 10, 1000)).isEqualTo(12);
+        assertThat(sizer.nextMaxSize(12, 40, 2, 12, 1200)).isEqualTo(14);
+    }
+
+    @Test
+    void testHoldsWhenGrowDidNotRaiseThroughput() {
+        assertThat(sizer.nextMaxSize(10, 50, 3, 10, 1000)).isEqualTo(12);
+        // 扩容后等待仍然很高，但吞吐量没有变化：数据库已饱和，不再扩容
+        assertThat(sizer.nextMaxSize(12, 60, 4, 12, 1010)).isEqualTo(12);
+        assertThat(sizer.nextMaxSize(12, 60, 4, 12, 1020)).isEqualTo(12);
+        // 负载变化后吞吐量超过扩容前的水平，恢复扩容
+        assertThat(sizer.nextMaxSize(12, 60, 4, 12, 1100)).isEqualTo(14);
+    }
+
+    @Test
+    void testShrinksWhenIdleAndResetsThroughputBaseline() {
+        assertThat(sizer.nextMaxSize(10, 50, 3, 10, 1000)).isEqualTo(12);
+        assertThat(sizer.nextMaxSize(12, 1, 0, 2, 200)).isEqualTo(10);
+        // 等待恢复正常后重新开始观察，不受之前扩容基准的限制
+        assertThat(sizer.nextMaxSize(10, 50, 3, 10, 300)).isEqualTo(12);
+    }
+
+    @Test
+    void testStaysWithinBounds() {
+        assertThat(sizer.nextMaxSize(30, 50, 3, 30, 1000)).isEqualTo(30);
+        assertThat(sizer.nextMaxSize(5, 0, 0, 0, 0)).isEqualTo(5);
+        assertThat(sizer.nextMaxSize(10, 10, 0, 8, 500)).isEqualTo(10);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionHoldTrackerTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testHoldSplitIntoSqlAndIdleTime() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConnectionHoldTracker tracker = new ConnectionHoldTracker(meterRegistry, true, 50, 10);
+        DataSource dataSource = tracker.track(new DriverManagerDataSource("jdbc:h2:mem:hold_tracker_test", "sa", ""));
+
+        try (Connection connection = dataSource.getConnection()) {
+            tracker.recordStatement(TimeUnit.MILLISECONDS.toNanos(5));
+            Thread.sleep(80);
+
+            Map<String, Object> active = ((List<Map<String, Object>>) tracker.report().get("active")).get(0);
+            assertThat(active).containsEntry("owner", "ConnectionHoldTrackerTest.testHoldSplitIntoSqlAndIdleTime")
+                    .containsEntry("leakSuspect", true)
+                    .containsKey("stackTrace");
+        }
+
+        Map<String, Object> report = tracker.report();
+        assertThat((List<?>) report.get("active")).isEmpty();
+        Map<String, Object> offender = ((List<Map<String, Object>>) report.get("recentOffenders")).get(0);
+        assertThat(offender).containsEntry("sqlMs", 5L).containsEntry("statements", 1L);
+        assertThat((Long) offender.get("idleMs")).isGreaterThanOrEqualTo(75L);
+        assertThat(meterRegistry.get("app.datasource.connection.leak.suspects").counter().count()).isEqualTo(1.0);
+
+        // 连接归还后，语句不再计入任何占用
+        tracker.recordStatement(TimeUnit.MILLISECONDS.toNanos(5));
+        assertThat(((List<Map<String, Object>>) tracker.report().get("owners")).get(0)).containsEntry("holds", 1L);
+    }
+}
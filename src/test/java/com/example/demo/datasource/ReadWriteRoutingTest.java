@@ -0,0 +1,62 @@
+package com.example.demo.datasource;
+
+import com.example.demo.config.DataSourceConfig;
+import com.example.demo.entity.User;
+import com.example.demo.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "app.datasource.replica.enabled=true")
+@ActiveProfiles("test")
+class ReadWriteRoutingTest {
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier(DataSourceConfig.PRIMARY_DATA_SOURCE)
+    private DataSource primaryDataSource;
+
+    @Test
+    void testOpenInViewDisabled() {
+        assertThat(applicationContext.getBeansOfType(OpenEntityManagerInViewInterceptor.class)).isEmpty();
+    }
+
+    @Test
+    void testWriteAfterReadOnlyTransactionGoesToPrimary() {
+        double replicaBefore = routed(ReadWriteRoutingDataSource.REPLICA);
+        double primaryBefore = routed(ReadWriteRoutingDataSource.PRIMARY);
+
+        // 与一个请求中的调用顺序相同：先执行只读事务，再在同一线程上执行写事务
+        userService.getAllUsers();
+        User user = new User(null, "routing_user", "routing_user@example.com", null, 30, true, null);
+        User saved = userService.createUser(user);
+
+        assertThat(routed(ReadWriteRoutingDataSource.REPLICA)).isGreaterThan(replicaBefore);
+        assertThat(routed(ReadWriteRoutingDataSource.PRIMARY)).isGreaterThan(primaryBefore);
+        Integer rows = new JdbcTemplate(primaryDataSource)
+                .queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Integer.class, saved.getId());
+        assertThat(rows).isEqualTo(1);
+    }
+
+    private double routed(String target) {
+        return meterRegistry.get("app.datasource.routing").tag("target", target).counter().count();
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.demo.datasource;
+
+import com.example.demo.config.DataSourceConfig;
+import com.example.demo.entity.User;
+import com.example.demo.repository.projection.UserView;
+import com.example.demo.service.UserExportService;
+import com.example.demo.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "app.datasource.shards.enabled=true",
+        "app.datasource.shards.urls=jdbc:p6spy:h2:mem:shard_test_0,jdbc:p6spy:h2:mem:shard_test_1,jdbc:p6spy:h2:mem:shard_test_2"
+})
+@ActiveProfiles("test")
+class ShardedUserStoreTest {
+
+    private static final int SHARDS = 3;
+
+    @Autowired
+    private ShardedUserStore store;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserExportService userExportService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier(DataSourceConfig.PRIMARY_DATA_SOURCE)
+    private DataSource primaryDataSource;
+
+    @Test
+    void testRowIsWrittenOnlyToOwningShard() {
+        User saved = userService.createUser(user(usernameOnShard(1)));
+
+        assertThat(store.shardFor(saved.getUsername())).isEqualTo(1);
+        assertThat(rowsOnShard(1, saved.getId())).isEqualTo(1);
+        assertThat(rowsOnShard(0, saved.getId())).isZero();
+        assertThat(rowsOnShard(2, saved.getId())).isZero();
+        assertThat(new JdbcTemplate(primaryDataSource).queryForObject(
+                "SELECT COUNT(*) FROM users WHERE username = ?", Integer.class, saved.getUsername())).isZero();
+        // 第 1 个分片分配的 ID 为 2、5、8……
+        assertThat(Math.floorMod(saved.getId() - 1, SHARDS)).isEqualTo(1);
+    }
+
+    @Test
+    void testPointLookupsHitOneShard() {
+        User saved = userService.createUser(user(usernameOnShard(2)));
+        long[] before = queries("findByUsername");
+
+        assertThat(userService.getUserByUsername(saved.getUsername())).map(User::getId).contains(saved.getId());
+
+        long[] after = queries("findByUsername");
+        assertThat(after[2] - before[2]).isEqualTo(1);
+        assertThat(after[0] - before[0]).isZero();
+        assertThat(after[1] - before[1]).isZero();
+        assertThat(store.findById(saved.getId())).map(UserView::username).contains(saved.getUsername());
+    }
+
+    @Test
+    void testListAndCountFanOutToAllShards() {
+        List<User> saved = List.of(
+                userService.createUser(user(usernameOnShard(0))),
+                userService.createUser(user(usernameOnShard(1))),
+                userService.createUser(user(usernameOnShard(2))));
+        long[] before = queries("findAll");
+
+        List<UserView> users = userService.getAllUsers();
+
+        assertThat(users).extracting(UserView::id).contains(saved.stream().map(User::getId).toArray(Long[]::new));
+        assertThat(users).extracting(UserView::id).isSorted();
+        assertThat(store.count()).isEqualTo(users.size());
+        long[] after = queries("findAll");
+        for (int shard = 0; shard < SHARDS; shard++) {
+            assertThat(after[shard] - before[shard]).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void testPageMergesShardsInIdOrder() {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            userService.createUser(user(usernameOnShard(shard)));
+        }
+        List<UserView> all = store.findAll();
+
+        List<UserView> firstPage = store.findPage(0, 2);
+        List<UserView> secondPage = store.findPage(firstPage.get(1).id(), 2);
+
+        assertThat(firstPage).containsExactlyElementsOf(all.subList(0, 2));
+        assertThat(secondPage).containsExactlyElementsOf(all.subList(2, 4));
+    }
+
+    @Test
+    void testExportReadsAllShards() throws Exception {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            userService.createUser(user(usernameOnShard(shard)));
+        }
+        ReflectionTestUtils.setField(userExportService, "clearInterval", 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long exported = userExportService.exportUsersAsNdjson(out);
+
+        assertThat(exported).isEqualTo(store.count());
+        assertThat(out.toString(StandardCharsets.UTF_8).lines()).hasSize((int) exported);
+    }
+
+    @Test
+    void testEmailOnAnotherShardIsRejected() {
+        User first = userService.createUser(user(usernameOnShard(0)));
+        User second = user(usernameOnShard(1));
+        second.setEmail(first.getEmail());
+
+        assertThatThrownBy(() -> userService.createUserWithBusinessValidation(second))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("邮箱已存在: " + first.getEmail());
+        assertThat(store.existsByUsername(second.getUsername())).isFalse();
+    }
+
+    @Test
+    void testDuplicateUsernameIsRejectedByOwningShard() {
+        User first = userService.createUser(user(usernameOnShard(2)));
+        User second = user(first.getUsername());
+
+        assertThatThrownBy(() -> userService.createUserWithBusinessValidation(second))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("用户名已存在: " + first.getUsername());
+    }
+
+    @Test
+    void testUsernameIsReportedBeforeEmailOnAnotherShard() {
+        User sameName = userService.createUser(user(usernameOnShard(0)));
+        User sameEmail = userService.createUser(user(usernameOnShard(1)));
+        User duplicate = user(sameName.getUsername());
+        duplicate.setEmail(sameEmail.getEmail());
+
+        assertThatThrownBy(() -> userService.createUserWithBusinessValidation(duplicate))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("用户名已存在: " + sameName.getUsername());
+    }
+
+    @Test
+    void testUpdateToEmailOnAnotherShardIsRejected() {
+        User saved = userService.createUser(user(usernameOnShard(0)));
+        User other = userService.createUser(user(usernameOnShard(1)));
+        User changes = user(saved.getUsername());
+        changes.setEmail(other.getEmail());
+
+        assertThatThrownBy(() -> userService.updateUser(saved.getId(), changes))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("邮箱已存在: " + other.getEmail());
+    }
+
+    @Test
+    void testRenameMovesRowToNewShard() {
+        User saved = userService.createUser(user(usernameOnShard(0)));
+        User changes = user(usernameOnShard(2));
+        changes.setEmail(saved.getEmail());
+
+        User updated = userService.updateUser(saved.getId(), changes);
+
+        assertThat(updated.getId()).isEqualTo(saved.getId());
+        assertThat(updated.getVersion()).isEqualTo(saved.getVersion() + 1);
+        assertThat(rowsOnShard(0, saved.getId())).isZero();
+        assertThat(rowsOnShard(2, saved.getId())).isEqualTo(1);
+        assertThat(userService.getUserById(saved.getId()).getUsername()).isEqualTo(changes.getUsername());
+        assertThat(store.findByUsername(saved.getUsername())).isEmpty();
+    }
+
+    @Test
+    void testStaleVersionIsRejected() {
+        User saved = userService.createUser(user(usernameOnShard(1)));
+        UserView stale = store.findById(saved.getId()).orElseThrow();
+        store.update(stale, user(saved.getUsername()));
+
+        assertThatThrownBy(() -> store.update(stale, user(saved.getUsername())))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+    }
+
+    @Test
+    void testDeleteRemovesRowFromShard() {
+        User saved = userService.createUser(user(usernameOnShard(1)));
+
+        userService.deleteUser(saved.getId());
+
+        assertThat(rowsOnShard(1, saved.getId())).isZero();
+        assertThat(store.findById(saved.getId())).isEmpty();
+    }
+
+    @Test
+    void testMultiUserTransactionIsRejected() {
+        assertThatThrownBy(() -> userService.batchCreateUsersSuccess(List.of(user(usernameOnShard(0)))))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("分片模式下不支持");
+    }
+
+    private String usernameOnShard(int shard) {
+        while (true) {
+            String username = "shard_" + UUID.randomUUID().toString().substring(0, 8);
+            if (store.shardFor(username) == shard) {
+                return username;
+            }
+        }
+    }
+
+    private static User user(String username) {
+        return new User(null, username, username + "@example.com", null, 30, true, null);
+    }
+
+    private static int rowsOnShard(int shard, Long id) {
+        JdbcTemplate jdbc = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:shard_test_" + shard, "sa", ""));
+        return jdbc.queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Integer.class, id);
+    }
+
+    /**
+     * 每个分片上某种操作的累计执行次数
+     */
+    private long[] queries(String operation) {
+        long[] counts = new long[SHARDS];
+        for (int shard = 0; shard < SHARDS; shard++) {
+            Timer timer = meterRegistry.find("app.datasource.shard.query")
+                    .tag("shard", String.valueOf(shard)).tag("operation", operation).timer();
+            counts[shard] = timer == null ? 0 : timer.count();
+        }
+        return counts;
+    }
+}
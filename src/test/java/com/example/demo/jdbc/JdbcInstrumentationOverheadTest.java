@@ -0,0 +1,147 @@
+package com.example.demo.jdbc;
+
+import com.p6spy.engine.spy.P6DataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.sentry.ITransaction;
+import io.sentry.Sentry;
+import io.sentry.TransactionOptions;
+import io.sentry.transport.NoOpTransport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JDBC 埋点开销测量，默认跳过：
+ *
+ * mvn test -Dtest=JdbcInstrumentationOverheadTest -Djdbc.overhead=true
+ *
+ * 同一个 H2 内存库上按主键查询，每个 Spring 事务 10 条语句，每个事务包在一个 Sentry 事务中；
+ * 分别直连 H2、经 P6Spy 以 full 模式和 production 模式（采样率 0.1 / 1.0）执行，
+ * 预热后取多轮中最快的一轮，输出每条语句耗时及相对 H2 本身的开销。
+ * 语句通过 JdbcTemplate 执行，full 模式的结果不含 Hibernate 格式化输出 SQL 的开销。
+ */
+@EnabledIfSystemProperty(named = "jdbc.overhead", matches = "true")
+class JdbcInstrumentationOverheadTest {
+
+    private static final String SELECT_USER = "select username from users where id = ?";
+    private static final String SENTRY_JDBC_SPAN_ORIGIN = "auto.db.jdbc";
+    private static final int ROWS = 1000;
+    private static final int STATEMENTS_PER_TRANSACTION = 10;
+    private static final int WARMUP_TRANSACTIONS = 20_000;
+    private static final int MEASURED_TRANSACTIONS = 50_000;
+    private static final int ROUNDS = 3;
+
+    private static SingleConnectionDataSource h2;
+    private static JdbcInstrumentation previous;
+
+    @BeforeAll
+    static void setUp() {
+        h2 = new SingleConnectionDataSource("jdbc:h2:mem:overhead_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "", true);
+        JdbcTemplate jdbc = new JdbcTemplate(h2);
+        jdbc.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, username VARCHAR(50) NOT NULL)");
+        for (int i = 1; i <= ROWS; i++) {
+            jdbc.update("INSERT INTO users VALUES (?, ?)", i, "user" + i);
+        }
+        Sentry.init(options -> {
+            options.setDsn("https://key@localhost/0");
+            options.setTracesSampleRate(1.0);
+            options.setSendClientReports(false);
+            options.setEnableUncaughtExceptionHandler(false);
+            options.setTransportFactory((sentryOptions, requestDetails) -> NoOpTransport.getInstance());
+        });
+        previous = JdbcInstrumentation.current();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        JdbcInstrumentation.install(previous);
+        Sentry.close();
+        h2.destroy();
+    }
+
+    @Test
+    void testOverheadAgainstRawH2() {
+        DataSource spied = new P6DataSource(h2);
+        SimpleMeterRegistry fullRegistry = new SimpleMeterRegistry();
+        SimpleMeterRegistry sampledRegistry = new SimpleMeterRegistry();
+        SimpleMeterRegistry allRegistry = new SimpleMeterRegistry();
+        List<Scenario> scenarios = List.of(
+                new Scenario("H2 本身", h2, null),
+                new Scenario("`full`", spied, new JdbcInstrumentation(JdbcInstrumentation.Mode.FULL, 1.0, fullRegistry)),
+                new Scenario("`production`，采样率 0.1", spied,
+                        new JdbcInstrumentation(JdbcInstrumentation.Mode.PRODUCTION, 0.1, sampledRegistry)),
+                new Scenario("`production`，采样率 1.0", spied,
+                        new JdbcInstrumentation(JdbcInstrumentation.Mode.PRODUCTION, 1.0, allRegistry)));
+
+        for (Scenario scenario : scenarios) {
+            scenario.run(WARMUP_TRANSACTIONS);
+        }
+        double[] nanosPerStatement = new double[scenarios.size()];
+        for (int i = 0; i < scenarios.size(); i++) {
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                best = Math.min(best, scenarios.get(i).run(MEASURED_TRANSACTIONS));
+            }
+            nanosPerStatement[i] = (double) best / ((long) MEASURED_TRANSACTIONS * STATEMENTS_PER_TRANSACTION);
+        }
+
+        System.out.println("| | 每条语句耗时 | 相对 H2 本身的开销 |");
+        System.out.println("|---|---|---|");
+        for (int i = 0; i < scenarios.size(); i++) {
+            System.out.printf("| %s | %.2fµs | %s |%n", scenarios.get(i).name(), nanosPerStatement[i] / 1000,
+                    i == 0 ? "-" : String.format("%+.2fµs", (nanosPerStatement[i] - nanosPerStatement[0]) / 1000));
+        }
+
+        // 确认埋点监听器确实在语句路径上：production 模式每条语句都计入 jdbc.statements，full 模式不计
+        long executed = (long) (WARMUP_TRANSACTIONS + ROUNDS * MEASURED_TRANSACTIONS) * STATEMENTS_PER_TRANSACTION;
+        assertThat(allRegistry.get("jdbc.statements").timer().count()).isEqualTo(executed);
+        assertThat(sampledRegistry.get("jdbc.statements").timer().count()).isEqualTo(executed);
+        assertThat(fullRegistry.get("jdbc.statements").timer().count()).isZero();
+        assertThat(allRegistry.get("jdbc.instrumentation.spans").tag("type", "collapsed").counter().count()).isPositive();
+    }
+
+    private record Scenario(String name, DataSource dataSource, JdbcInstrumentation instrumentation) {
+
+        /**
+         * 执行 transactions 个事务，返回总耗时（纳秒）
+         */
+        long run(int transactions) {
+            JdbcInstrumentation.install(instrumentation);
+            // production 模式与应用中一致，忽略 sentry-jdbc 的逐条语句 Span
+            Sentry.getCurrentScopes().getOptions().setIgnoredSpanOrigins(
+                    instrumentation != null && instrumentation.getMode() == JdbcInstrumentation.Mode.PRODUCTION
+                            ? List.of(SENTRY_JDBC_SPAN_ORIGIN) : null);
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            TransactionOptions options = new TransactionOptions();
+            options.setBindToScope(true);
+
+            long startTime = System.nanoTime();
+            for (int i = 0; i < transactions; i++) {
+                ITransaction transaction = Sentry.startTransaction("jdbc-overhead", "test", options);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        for (int j = 0; j < STATEMENTS_PER_TRANSACTION; j++) {
+                            long id = ThreadLocalRandom.current().nextLong(1, ROWS + 1);
+                            jdbc.queryForObject(SELECT_USER, String.class, id);
+                        }
+                    });
+                } finally {
+                    transaction.finish();
+                }
+            }
+            return System.nanoTime() - startTime;
+        }
+    }
+}
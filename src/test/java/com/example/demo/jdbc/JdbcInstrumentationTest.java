@@ -0,0 +1,129 @@
+package com.example.demo.jdbc;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.sentry.ISpan;
+import io.sentry.Instrumenter;
+import io.sentry.SentryDate;
+import io.sentry.SpanOptions;
+import io.sentry.SpanStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class JdbcInstrumentationTest {
+
+    private static final String SELECT_USER = "select u.id from users u where u.id = ?";
+    private static final String UPDATE_USER = "update users set email = ? where id = ?";
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testSamplingDecision() {
+        assertThat(IntStream.range(0, 1000).filter(i -> instrumentation(0).sample()).count()).isZero();
+        assertThat(IntStream.range(0, 1000).filter(i -> instrumentation(1.0).sample()).count()).isEqualTo(1000);
+
+        JdbcInstrumentation sampled = instrumentation(0.1);
+        long hits = IntStream.range(0, 20_000).filter(i -> sampled.sample()).count();
+        assertThat(hits).isBetween(1_600L, 2_400L);
+    }
+
+    @Test
+    void testStatementsAggregatedPerSqlAndEmittedOnCompletion() {
+        JdbcInstrumentation instrumentation = instrumentation(1.0);
+        ISpan parent = mock(ISpan.class);
+        ISpan selectSpan = mock(ISpan.class);
+        ISpan updateSpan = mock(ISpan.class);
+        when(parent.startChild(eq(SampledSpanJdbcEventListener.SPAN_OPERATION), eq(SqlFingerprint.compact(SELECT_USER)),
+                any(SentryDate.class), eq(Instrumenter.SENTRY), any(SpanOptions.class))).thenReturn(selectSpan);
+        when(parent.startChild(eq(SampledSpanJdbcEventListener.SPAN_OPERATION), eq(SqlFingerprint.compact(UPDATE_USER)),
+                any(SentryDate.class), eq(Instrumenter.SENTRY), any(SpanOptions.class))).thenReturn(updateSpan);
+
+        TransactionStatements statements = TransactionStatements.current(instrumentation, () -> parent);
+        assertThat(TransactionStatements.current(instrumentation, () -> parent)).isSameAs(statements);
+        statements.add(SELECT_USER, 1_000_000, 10_000_000, false);
+        statements.add(SELECT_USER, 3_000_000, 20_000_000, false);
+        statements.add(SELECT_USER, 2_000_000, 30_000_000, false);
+        statements.add(UPDATE_USER, 5_000_000, 40_000_000, true);
+
+        complete();
+
+        verify(selectSpan).setData("db.statement.count", 3);
+        verify(selectSpan).setData("db.statement.total_ms", 6.0);
+        verify(selectSpan).setData("db.statement.max_ms", 3.0);
+        verify(selectSpan).setData("db.statement.errors", 0);
+        verify(selectSpan).finish(eq(SpanStatus.OK), any(SentryDate.class));
+        verify(updateSpan).setData("db.statement.count", 1);
+        verify(updateSpan).setData("db.statement.errors", 1);
+        verify(updateSpan).finish(eq(SpanStatus.INTERNAL_ERROR), any(SentryDate.class));
+        assertThat(meterRegistry.get("jdbc.instrumentation.spans").tag("type", "collapsed").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("jdbc.instrumentation.collapsed").counter().count()).isEqualTo(4);
+    }
+
+    @Test
+    void testUnsampledTransactionRecordsNothing() {
+        ISpan parent = mock(ISpan.class);
+        TransactionStatements statements = TransactionStatements.current(instrumentation(0), () -> parent);
+        statements.add(SELECT_USER, 1_000_000, 10_000_000, false);
+
+        complete();
+
+        verifyNoInteractions(parent);
+        assertThat(meterRegistry.get("jdbc.instrumentation.spans").tag("type", "collapsed").counter().count()).isZero();
+    }
+
+    @Test
+    void testSuspendedTransactionStartsNewAggregation() {
+        JdbcInstrumentation instrumentation = instrumentation(1.0);
+        ISpan parent = mock(ISpan.class);
+        TransactionStatements outer = TransactionStatements.current(instrumentation, () -> parent);
+
+        // REQUIRES_NEW：外层事务的同步回调被挂起，内层事务使用新的聚合
+        outer.suspend();
+        assertThat(TransactionStatements.current(instrumentation, () -> parent)).isNotSameAs(outer);
+        outer.resume();
+        assertThat(TransactionStatements.current(instrumentation, () -> parent)).isSameAs(outer);
+        complete();
+    }
+
+    @Test
+    void testNoAggregationOutsideTransaction() {
+        TransactionSynchronizationManager.clearSynchronization();
+        assertThat(TransactionStatements.current(instrumentation(1.0), () -> mock(ISpan.class))).isNull();
+    }
+
+    private JdbcInstrumentation instrumentation(double sampleRate) {
+        return new JdbcInstrumentation(JdbcInstrumentation.Mode.PRODUCTION, sampleRate, meterRegistry);
+    }
+
+    private static void complete() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+}
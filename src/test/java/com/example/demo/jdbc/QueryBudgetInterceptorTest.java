@@ -0,0 +1,68 @@
+package com.example.demo.jdbc;
+
+import com.example.demo.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 测试 profile（action=fail）下 SQL 预算的端到端行为
+ *
+ * 关闭 JDBC 批量写入后，批量创建接口逐条执行 INSERT，即循环写入的 N+1。
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.jdbc.batch_size=1")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class QueryBudgetInterceptorTest {
+
+    private static final String BATCH_ENDPOINT = "POST /api/users/batch/success";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void testNPlusOneFailsRequestAndRollsBack() throws Exception {
+        long before = userRepository.count();
+        String users = IntStream.range(0, 12)
+                .mapToObj(i -> String.format("{\"username\":\"nplus%d\",\"email\":\"nplus%d@example.com\",\"age\":30,\"active\":true}", i, i))
+                .collect(Collectors.joining(",", "[", "]"));
+
+        mockMvc.perform(post("/api/users/batch/success").contentType(MediaType.APPLICATION_JSON).content(users))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value(containsString(BATCH_ENDPOINT + " 疑似 N+1")));
+
+        assertThat(meterRegistry.get("jdbc.budget.violations")
+                .tag("endpoint", BATCH_ENDPOINT).tag("type", "n_plus_one").counter().count()).isEqualTo(1);
+        // 异常在第 10 条 INSERT 处抛出，整个事务回滚
+        assertThat(userRepository.count()).isEqualTo(before);
+    }
+
+    @Test
+    void testRequestWithinBudgetSucceeds() throws Exception {
+        mockMvc.perform(get("/api/users/count"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true));
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo.jdbc;
+
+import com.example.demo.util.ContextSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryBudgetTest {
+
+    @Test
+    void testViolationsReportedOncePerType() {
+        List<QueryBudget.Violation> violations = new ArrayList<>();
+        QueryBudget budget = new QueryBudget("GET /api/users", 5, 3, violations::add);
+
+        budget.record("select * from users");
+        for (int i = 0; i < 6; i++) {
+            budget.record("select * from orders where user_id = ?");
+        }
+
+        assertThat(budget.getStatements()).isEqualTo(7);
+        assertThat(violations).extracting(QueryBudget.Violation::type)
+                .containsExactly(QueryBudget.ViolationType.N_PLUS_ONE, QueryBudget.ViolationType.STATEMENTS);
+        assertThat(budget.repeatedStatements()).containsOnlyKeys("select * from orders where user_id = ?");
+    }
+
+    @Test
+    void testWrappedTaskSharesBudget() throws InterruptedException {
+        QueryBudget budget = new QueryBudget("GET /api/async-trace/test-multiple", 1, 10, violation -> {
+            throw new QueryBudgetExceededException(violation);
+        });
+        QueryBudget.bind(budget);
+        Runnable task;
+        try {
+            task = ContextSnapshot.wrap(() -> QueryBudget.current().record("select count(*) from users"));
+        } finally {
+            QueryBudget.unbind();
+        }
+
+        Thread worker = new Thread(task);
+        worker.start();
+        worker.join();
+
+        assertThat(budget.getStatements()).isEqualTo(1);
+        assertThatThrownBy(() -> budget.record("select count(*) from users"))
+                .isInstanceOf(QueryBudgetExceededException.class)
+                .hasMessageContaining("超出预算 1");
+    }
+
+    @Test
+    void testParseEndpointBudgets() {
+        assertThat(QueryBudgetInterceptor.parseBudgets(" GET  /api/users/{id}=2,\nPOST /api/users/batch/success=10, "))
+                .containsEntry("GET /api/users/{id}", 2)
+                .containsEntry("POST /api/users/batch/success", 10)
+                .hasSize(2);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.jdbc;
+
+import com.example.demo.datasource.ConnectionHoldTracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlowQueryLogTest {
+
+    private final ConnectionHoldTracker connectionHoldTracker =
+            new ConnectionHoldTracker(new SimpleMeterRegistry(), true, 1000, 10);
+
+    @Test
+    void testRingBufferKeepsNewestEntries() {
+        SlowQueryLog slowQueryLog = newLog(3, false);
+        for (int i = 1; i <= 5; i++) {
+            slowQueryLog.record("select * from users where id = ?", "select * from users where id = " + i,
+                    TimeUnit.MILLISECONDS.toNanos(150), false);
+        }
+
+        List<Map<String, Object>> recent = slowQueryLog.recent(10);
+        assertThat(recent).extracting(entry -> entry.get("id")).containsExactly(5L, 4L, 3L);
+        assertThat(recent.get(0))
+                .containsEntry("sqlWithValues", "select * from users where id = 5")
+                .containsEntry("durationMs", 150.0)
+                .containsEntry("caller", "unknown");
+        assertThat(slowQueryLog.total()).isEqualTo(5);
+    }
+
+    @Test
+    void testStringBindValuesRedacted() {
+        assertThat(SlowQueryLog.redact("select * from users where email = 'o''neil@example.com' and age > 18"))
+                .isEqualTo("select * from users where email = '***' and age > 18");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testExplainCapturedInBackground() throws InterruptedException {
+        SlowQueryLog slowQueryLog = newLog(10, true);
+        slowQueryLog.record("select count(*) from slow_users where email = ?",
+                "select count(*) from slow_users where email = 'a@example.com'", TimeUnit.SECONDS.toNanos(1), false);
+
+        Object plan = null;
+        for (int i = 0; i < 50 && plan == null; i++) {
+            Thread.sleep(20);
+            plan = slowQueryLog.recent(1).get(0).get("plan");
+        }
+        assertThat(plan).asString().containsIgnoringCase("tableScan");
+        // EXPLAIN 取出的主库连接同样计入连接占用
+        assertThat((List<Map<String, Object>>) connectionHoldTracker.report().get("owners"))
+                .extracting(owner -> owner.get("holds")).containsExactly(1L);
+        slowQueryLog.shutdown();
+    }
+
+    private SlowQueryLog newLog(int capacity, boolean explain) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:slow_query_log_test;DB_CLOSE_DELAY=-1", "sa", "");
+        new JdbcTemplate(dataSource).execute("CREATE TABLE IF NOT EXISTS slow_users (id BIGINT PRIMARY KEY, email VARCHAR(100))");
+        return new SlowQueryLog(dataSource, new SimpleMeterRegistry(), connectionHoldTracker, true, 100, capacity, true, explain);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlFingerprintTest {
+
+    @Test
+    void testLiteralsAndCommentsAreStripped() {
+        String first = SqlFingerprint.of("/* load user */ SELECT u1_0.id FROM users u1_0\n  WHERE u1_0.username = 'alice' AND u1_0.age > 18");
+        String second = SqlFingerprint.of("select u1_0.id from users u1_0 where u1_0.username='o''brien' and u1_0.age > 42 -- retry");
+
+        assertThat(first).isEqualTo("select u1_0.id from users u1_0 where u1_0.username = ? and u1_0.age > ?");
+        assertThat(second).isEqualTo("select u1_0.id from users u1_0 where u1_0.username=? and u1_0.age > ?");
+    }
+
+    @Test
+    void testInListsOfDifferentSizeShareFingerprint() {
+        String small = SqlFingerprint.of("select * from users where id in (1, 2)");
+        String large = SqlFingerprint.of("select * from users where id in (?, ?, ?, ?, ?)");
+
+        assertThat(small).isEqualTo("select * from users where id in (?...)");
+        assertThat(large).isEqualTo(small);
+    }
+
+    @Test
+    void testStatsAggregateByFingerprint() {
+        SqlStatementStats stats = new SqlStatementStats(true, 2);
+        stats.record("select * from users where id = 1", 2_000_000, false);
+        stats.record("select * from users where id = 2", 4_000_000, true);
+        stats.record("select count(*) from users", 1_000_000, false);
+        stats.record("delete from users where id = 3", 1_000_000, false);
+
+        assertThat(stats.size()).isEqualTo(3);
+        assertThat(stats.top("total", 1).get(0))
+                .containsEntry("fingerprint", "select * from users where id = ?")
+                .containsEntry("calls", 2L)
+                .containsEntry("errors", 1L)
+                .containsEntry("totalMs", 6.0);
+        assertThat(stats.top("calls", 3)).extracting(row -> row.get("fingerprint"))
+                .contains(SqlStatementStats.OVERFLOW_FINGERPRINT);
+    }
+
+    @Test
+    void testOnlyContainerManagedStatsArePublished() {
+        SqlStatementStats published = SqlStatementStats.current();
+        SqlStatementStats first = new SqlStatementStats(true, 10);
+        SqlStatementStats second = new SqlStatementStats(true, 10);
+        try {
+            // 直接创建的实例不替换容器中的实例
+            assertThat(SqlStatementStats.current()).isSameAs(published);
+
+            first.publish();
+            second.publish();
+            // 先创建的容器关闭时，不清除之后的容器发布的实例
+            first.unpublish();
+            assertThat(SqlStatementStats.current()).isSameAs(second);
+            second.unpublish();
+            assertThat(SqlStatementStats.current()).isNull();
+        } finally {
+            if (published != null) {
+                published.publish();
+            }
+        }
+    }
+}
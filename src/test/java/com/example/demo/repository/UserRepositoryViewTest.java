@@ -0,0 +1,111 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.User;
+import com.example.demo.repository.projection.UserView;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * UserView 查询只选取投影的列，结果不进入持久化上下文
+ *
+ * SQL 通过 Hibernate 的 StatementInspector 在当前线程上捕获。
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.demo.repository.UserRepositoryViewTest$CapturingStatementInspector")
+@ActiveProfiles("test")
+@Transactional
+class UserRepositoryViewTest {
+
+    private static final ThreadLocal<List<String>> CAPTURED = new ThreadLocal<>();
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User alice;
+
+    @BeforeEach
+    void setUp() {
+        alice = userRepository.saveAndFlush(new User(null, "view_alice", "view_alice@example.com", "123", 30, true, null));
+        userRepository.saveAndFlush(new User(null, "view_bob", "view_bob@example.com", null, 31, false, null));
+        entityManager.clear();
+        CAPTURED.set(new ArrayList<>());
+    }
+
+    @AfterEach
+    void tearDown() {
+        CAPTURED.remove();
+    }
+
+    @Test
+    void testViewFindersSelectOnlyProjectedColumns() {
+        userRepository.findViewsByOrderByIdAsc();
+        userRepository.findViewsByIdGreaterThanOrderByIdAsc(0L, Limit.of(10));
+        userRepository.findViewById(alice.getId());
+        userRepository.findViewByUsername("view_alice");
+
+        List<String> projected = Arrays.stream(UserView.class.getRecordComponents())
+                .map(component -> component.getName().toLowerCase(Locale.ROOT))
+                .toList();
+        assertThat(CAPTURED.get()).hasSize(4)
+                .allSatisfy(sql -> assertThat(selectedColumns(sql)).containsExactlyElementsOf(projected));
+    }
+
+    @Test
+    void testViewFindersSkipPersistenceContext() {
+        Session session = entityManager.unwrap(Session.class);
+
+        List<UserView> views = userRepository.findViewsByOrderByIdAsc();
+        assertThat(userRepository.findViewById(alice.getId())).map(UserView::username).contains("view_alice");
+        assertThat(userRepository.findViewByUsername("view_alice")).map(UserView::id).contains(alice.getId());
+
+        assertThat(views).extracting(UserView::username).contains("view_alice", "view_bob");
+        assertThat(session.getStatistics().getEntityCount()).isZero();
+
+        // 对照：实体查询的结果全部进入持久化上下文
+        List<User> entities = userRepository.findAll();
+        assertThat(session.getStatistics().getEntityCount()).isEqualTo(entities.size());
+    }
+
+    /**
+     * SELECT 子句中的列名（去掉表别名），按出现顺序
+     */
+    private static List<String> selectedColumns(String sql) {
+        String normalized = sql.replaceAll("/\\*.*?\\*/", " ").replaceAll("\\s+", " ").trim().toLowerCase(Locale.ROOT);
+        String selectList = normalized.substring("select ".length(), normalized.indexOf(" from "));
+        return Arrays.stream(selectList.split(","))
+                .map(String::trim)
+                .map(column -> column.substring(column.indexOf('.') + 1))
+                .toList();
+    }
+
+    public static class CapturingStatementInspector implements StatementInspector {
+
+        @Override
+        public String inspect(String sql) {
+            List<String> captured = CAPTURED.get();
+            if (captured != null && sql.toLowerCase(Locale.ROOT).contains("from users")) {
+                captured.add(sql);
+            }
+            return sql;
+        }
+    }
+}
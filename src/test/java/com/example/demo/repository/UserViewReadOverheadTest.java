@@ -0,0 +1,130 @@
+package com.example.demo.repository;
+
+import com.example.demo.config.DataSourceConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GET /api/users 托管实体与 UserView 投影的读取对比，默认跳过：
+ *
+ * mvn test -Dtest=UserViewReadOverheadTest -Dprojection.overhead=true
+ *
+ * 在应用的数据源（P6Spy + H2 内存库）上写入 ROWS 行，在只读事务中分别用 findAll（托管实体）
+ * 和 findViewsByOrderByIdAsc（投影）读取全表并序列化为 JSON（丢弃输出），与接口的处理过程一致；
+ * 预热后执行多轮，输出每次读取耗时的中位数与最小值，以及当前线程每次读取分配的内存。
+ * 关闭了 SQL 输出和慢查询日志，结果不含这两者的开销。
+ */
+@EnabledIfSystemProperty(named = "projection.overhead", matches = "true")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.format_sql=false",
+        "app.jdbc.slow-query.enabled=false"
+})
+class UserViewReadOverheadTest {
+
+    private static final int ROWS = 200_000;
+    private static final long FIRST_ID = 1_000_000_000L;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 20;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier(DataSourceConfig.PRIMARY_DATA_SOURCE)
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        new JdbcTemplate(dataSource).batchUpdate(
+                "insert into users (id, username, email, phone, age, active, version) values (?, ?, ?, ?, ?, ?, 0)",
+                IntStream.range(0, ROWS).mapToObj(i -> new Object[]{
+                        FIRST_ID + i, "overhead" + i, "overhead" + i + "@example.com", "1380000" + i, 18 + i % 60, i % 3 != 0
+                }).toList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        new JdbcTemplate(dataSource).update("delete from users where id >= ?", FIRST_ID);
+    }
+
+    @Test
+    void testEntityVersusProjectionRead() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        List<Scenario> scenarios = List.of(
+                new Scenario("托管实体（`findAll`）", () -> readOnly.execute(status -> userRepository.findAll())),
+                new Scenario("`UserView` 投影", () -> readOnly.execute(status -> userRepository.findViewsByOrderByIdAsc())));
+
+        for (Scenario scenario : scenarios) {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                readAndSerialize(scenario);
+            }
+        }
+        System.out.printf("| %d 行 | 耗时中位数 | 最小耗时 | 每次读取分配内存 |%n", ROWS);
+        System.out.println("|---|---|---|---|");
+        for (Scenario scenario : scenarios) {
+            long[] nanos = new long[MEASURED_ROUNDS];
+            long allocated = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                long allocatedBefore = allocatedBytes();
+                long startTime = System.nanoTime();
+                int rows = readAndSerialize(scenario);
+                nanos[i] = System.nanoTime() - startTime;
+                allocated += allocatedBytes() - allocatedBefore;
+                assertThat(rows).isGreaterThanOrEqualTo(ROWS);
+            }
+            Arrays.sort(nanos);
+            System.out.printf("| %s | %.1fms | %.1fms | %.1fMB |%n", scenario.name(),
+                    nanos[MEASURED_ROUNDS / 2] / 1_000_000.0, nanos[0] / 1_000_000.0,
+                    allocated / (double) MEASURED_ROUNDS / (1024 * 1024));
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * 读取全表并序列化，返回行数
+     */
+    private int readAndSerialize(Scenario scenario) {
+        List<?> users = scenario.query().get();
+        try {
+            objectMapper.writeValue(OutputStream.nullOutputStream(), users);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return users.size();
+    }
+
+    private record Scenario(String name, Supplier<List<?>> query) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OptimisticLockRetrierTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PlatformTransactionManager transactionManager;
+    private OptimisticLockRetrier retrier;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        retrier = new OptimisticLockRetrier(meterRegistry, transactionManager);
+        ReflectionTestUtils.setField(retrier, "maxAttempts", 3);
+        ReflectionTestUtils.setField(retrier, "baseBackoffMs", 0L);
+        ReflectionTestUtils.setField(retrier, "maxBackoffMs", 0L);
+    }
+
+    @Test
+    void testConflictRetriedInNewTransaction() {
+        List<Integer> attempts = new ArrayList<>();
+        String result = retrier.execute("update", attempt -> {
+            attempts.add(attempt);
+            if (attempt == 1) {
+                throw new OptimisticLockingFailureException("version changed");
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts).containsExactly(1, 2);
+        // 每次尝试都开启 REQUIRES_NEW 事务：处于外层事务中时也不会在已失败的持久化上下文上重试
+        ArgumentCaptor<TransactionDefinition> definitions = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager, times(2)).getTransaction(definitions.capture());
+        assertThat(definitions.getAllValues()).allSatisfy(definition ->
+                assertThat(definition.getPropagationBehavior()).isEqualTo(TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+        assertThat(meterRegistry.get("users.optimistic.retries").tag("operation", "update").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void testGivesUpAfterMaxAttempts() {
+        assertThatThrownBy(() -> retrier.execute("update", attempt -> {
+            throw new OptimisticLockingFailureException("version changed");
+        })).isInstanceOf(OptimisticLockingFailureException.class);
+
+        verify(transactionManager, times(3)).rollback(any());
+        assertThat(meterRegistry.get("users.optimistic.conflicts").tag("operation", "update").counter().count())
+                .isEqualTo(3.0);
+        assertThat(meterRegistry.get("users.optimistic.exhausted").tag("operation", "update").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void testOtherFailuresNotRetried() {
+        List<Integer> attempts = new ArrayList<>();
+        assertThatThrownBy(() -> retrier.execute("update", attempt -> {
+            attempts.add(attempt);
+            throw new DataIntegrityViolationException("uk_users_email");
+        })).isInstanceOf(DataIntegrityViolationException.class);
+
+        assertThat(attempts).containsExactly(1);
+    }
+}
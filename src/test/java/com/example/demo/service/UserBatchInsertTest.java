@@ -0,0 +1,50 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.User;
+import com.example.demo.jdbc.SqlStatementStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * batchCreateUsersSuccess 的 INSERT 按 app.users.batch-size 合并为 JDBC 批次
+ *
+ * P6Spy 对每次 executeBatch 只上报一次执行，INSERT 指纹的调用次数即数据库往返次数。
+ * 批大小故意与序列 allocationSize（50）不同。
+ */
+@SpringBootTest(properties = "app.users.batch-size=20")
+@ActiveProfiles("test")
+class UserBatchInsertTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SqlStatementStats sqlStatementStats;
+
+    @Test
+    void testInsertsAreSentInConfiguredBatches() {
+        List<User> users = IntStream.range(0, 45)
+                .mapToObj(i -> new User(null, "batch" + i, "batch" + i + "@example.com", null, 30, true, null))
+                .toList();
+        sqlStatementStats.reset();
+
+        List<User> saved = userService.batchCreateUsersSuccess(users);
+
+        assertThat(saved).hasSize(45).allSatisfy(user -> assertThat(user.getId()).isNotNull());
+        assertThat(insertCalls()).isEqualTo(3);
+    }
+
+    private long insertCalls() {
+        return sqlStatementStats.top("calls", 100).stream()
+                .filter(entry -> String.valueOf(entry.get("fingerprint")).startsWith("insert into users"))
+                .mapToLong(entry -> (Long) entry.get("calls"))
+                .sum();
+    }
+}
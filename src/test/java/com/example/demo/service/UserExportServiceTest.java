@@ -0,0 +1,103 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserExportServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private UserRepository userRepository;
+    private EntityManager entityManager;
+    private UserExportService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        entityManager = mock(EntityManager.class);
+        service = new UserExportService(userRepository, entityManager, objectMapper, mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(service, "clearInterval", 3);
+    }
+
+    @Test
+    void testEachUserIsWrittenOnItsOwnLine() throws Exception {
+        when(userRepository.streamAllOrderById()).thenReturn(users(7).stream());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = service.exportUsersAsNdjson(out);
+
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        assertThat(count).isEqualTo(7);
+        assertThat(ndjson).endsWith("\n");
+        String[] lines = ndjson.split("\n");
+        assertThat(lines).hasSize(7);
+        for (int i = 0; i < lines.length; i++) {
+            JsonNode line = objectMapper.readTree(lines[i]);
+            assertThat(line.get("id").asLong()).isEqualTo(i + 1);
+            assertThat(line.get("username").asText()).isEqualTo("export" + (i + 1));
+            assertThat(line.get("email").asText()).isEqualTo("export" + (i + 1) + "@example.com");
+        }
+    }
+
+    @Test
+    void testEmptyTableWritesNothing() throws Exception {
+        when(userRepository.streamAllOrderById()).thenReturn(Stream.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThat(service.exportUsersAsNdjson(out)).isZero();
+        assertThat(out.size()).isZero();
+        verify(entityManager, never()).clear();
+    }
+
+    @Test
+    void testPersistenceContextClearedEveryInterval() throws Exception {
+        AtomicInteger read = new AtomicInteger();
+        when(userRepository.streamAllOrderById())
+                .thenReturn(users(10).stream().peek(user -> read.incrementAndGet()));
+        List<Integer> clearedAt = new ArrayList<>();
+        doAnswer(invocation -> clearedAt.add(read.get())).when(entityManager).clear();
+
+        service.exportUsersAsNdjson(new ByteArrayOutputStream());
+
+        assertThat(clearedAt).containsExactly(3, 6, 9);
+    }
+
+    @Test
+    void testStreamIsClosed() throws Exception {
+        AtomicInteger closed = new AtomicInteger();
+        when(userRepository.streamAllOrderById()).thenReturn(users(2).stream().onClose(closed::incrementAndGet));
+
+        service.exportUsersAsNdjson(new ByteArrayOutputStream());
+
+        assertThat(closed).hasValue(1);
+    }
+
+    private static List<User> users(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(i -> new User((long) i, "export" + i, "export" + i + "@example.com", null, 30, true, 0L))
+                .toList();
+    }
+}
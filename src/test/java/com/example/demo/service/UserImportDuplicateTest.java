@@ -0,0 +1,58 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.UserImportResult;
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 分块中间的一行违反 H2 上的邮箱唯一约束时，只有这一行失败，同一分块的其他行照常写入
+ */
+@SpringBootTest(properties = "app.users.import.chunk-size=5")
+@ActiveProfiles("test")
+class UserImportDuplicateTest {
+
+    private static final String CSV = """
+            username,email,age
+            import_a,import_a@example.com,25
+            import_b,import_b@example.com,26
+            import_dup,import_existing@example.com,27
+            import_c,import_c@example.com,28
+            import_d,import_d@example.com,29
+            """;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void testDuplicateEmailFailsOnlyItsRow() throws Exception {
+        userRepository.save(new User(null, "import_existing", "import_existing@example.com", null, 30, true, null));
+
+        UserImportResult result = userImportService.importUsers(
+                new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8)), UserImportService.FORMAT_CSV);
+
+        assertThat(result.getChunks()).isEqualTo(1);
+        assertThat(result.getImportedRows()).isEqualTo(4);
+        assertThat(result.getFailedRows()).isEqualTo(1);
+        assertThat(result.getFailures()).singleElement()
+                .satisfies(failure -> {
+                    assertThat(failure.getFirstRow()).isEqualTo(3);
+                    assertThat(failure.getLastRow()).isEqualTo(3);
+                });
+        assertThat(userRepository.findByUsername("import_dup")).isEmpty();
+        for (String username : new String[]{"import_a", "import_b", "import_c", "import_d"}) {
+            assertThat(userRepository.findByUsername(username)).isPresent();
+        }
+    }
+}
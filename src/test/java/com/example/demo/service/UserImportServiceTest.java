@@ -0,0 +1,183 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.UserImportResult;
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserImportServiceTest {
+
+    private static final String CSV = """
+            username,email,age
+            alice,alice@example.com,25
+            bob,bob@example.com,26
+            dup,dup@example.com,27
+            carol,carol@example.com,28
+            dave,dave@example.com,29
+            """;
+
+    private UserRepository userRepository;
+    private PlatformTransactionManager transactionManager;
+    private UserImportService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        service = new UserImportService(userRepository, mock(EntityManager.class), transactionManager,
+                new ObjectMapper(), mock(DataSource.class), new SimpleMeterRegistry(), 1, mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+        ReflectionTestUtils.setField(service, "acquireTimeoutMs", 50L);
+    }
+
+    @Test
+    void testSplitPlainCsvLine() {
+        assertThat(UserImportService.splitCsvLine("alice,alice@example.com,,25,true"))
+                .containsExactly("alice", "alice@example.com", "", "25", "true");
+    }
+
+    @Test
+    void testSplitQuotedCsvLine() {
+        assertThat(UserImportService.splitCsvLine("\"smith, john\",\"say \"\"hi\"\"\",30"))
+                .containsExactly("smith, john", "say \"hi\"", "30");
+    }
+
+    @Test
+    void testFailedChunkRollsBackOnlyItself() throws Exception {
+        when(userRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<User> chunk = invocation.getArgument(0);
+            if (chunk.stream().anyMatch(user -> "dup".equals(user.getUsername()))) {
+                throw new DataIntegrityViolationException("uk_users_username");
+            }
+            return chunk;
+        });
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            if ("dup".equals(user.getUsername())) {
+                throw new DataIntegrityViolationException("uk_users_username");
+            }
+            return user;
+        });
+
+        UserImportResult result = service.importUsers(csv(), UserImportService.FORMAT_CSV);
+
+        assertThat(result.getTotalRows()).isEqualTo(5);
+        assertThat(result.getImportedRows()).isEqualTo(4);
+        assertThat(result.getFailedRows()).isEqualTo(1);
+        assertThat(result.getChunks()).isEqualTo(3);
+        assertThat(result.isAborted()).isFalse();
+        assertThat(result.getFailures()).singleElement()
+                .satisfies(failure -> {
+                    assertThat(failure.getChunk()).isEqualTo(2);
+                    assertThat(failure.getFirstRow()).isEqualTo(3);
+                    assertThat(failure.getLastRow()).isEqualTo(3);
+                    assertThat(failure.getMessage()).startsWith("写入失败");
+                });
+        // 分块 1、3 整体提交；分块 2 回滚后逐行重试，dup 回滚，carol 提交
+        verify(transactionManager, times(3)).commit(any());
+        verify(transactionManager, times(2)).rollback(any());
+    }
+
+    @Test
+    void testDuplicateInMiddleOfChunkFailsOnlyThatRow() throws Exception {
+        ReflectionTestUtils.setField(service, "chunkSize", 5);
+        when(userRepository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("uk_users_email"));
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            if ("dup".equals(user.getUsername())) {
+                throw new DataIntegrityViolationException("uk_users_email");
+            }
+            return user;
+        });
+
+        UserImportResult result = service.importUsers(csv(), UserImportService.FORMAT_CSV);
+
+        assertThat(result.getChunks()).isEqualTo(1);
+        assertThat(result.getImportedRows()).isEqualTo(4);
+        assertThat(result.getFailedRows()).isEqualTo(1);
+        assertThat(result.getFailures()).singleElement()
+                .satisfies(failure -> {
+                    assertThat(failure.getChunk()).isEqualTo(1);
+                    assertThat(failure.getFirstRow()).isEqualTo(3);
+                    assertThat(failure.getLastRow()).isEqualTo(3);
+                });
+        verify(userRepository, times(5)).saveAndFlush(any(User.class));
+    }
+
+    @Test
+    void testPermitTimeoutReturnsPartialResult() throws Exception {
+        Semaphore permits = (Semaphore) ReflectionTestUtils.getField(service, "chunkPermits");
+        when(userRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            // 第一个分块提交期间另一个导入开始排队，公平信号量保证许可释放后先交给它
+            Thread competitor = new Thread(permits::acquireUninterruptibly);
+            competitor.setDaemon(true);
+            competitor.start();
+            while (!permits.hasQueuedThreads()) {
+                Thread.onSpinWait();
+            }
+            return invocation.getArgument(0);
+        }).thenAnswer(invocation -> invocation.getArgument(0));
+
+        UserImportResult result = service.importUsers(csv(), UserImportService.FORMAT_CSV);
+
+        assertThat(result.isAborted()).isTrue();
+        assertThat(result.isFinished()).isTrue();
+        assertThat(result.getAbortReason()).contains("超时");
+        assertThat(result.getImportedRows()).isEqualTo(2);
+        assertThat(result.getFailedRows()).isEqualTo(2);
+        // 终止后不再读取剩余数据
+        assertThat(result.getTotalRows()).isEqualTo(4);
+        assertThat(result.getFailures()).singleElement()
+                .satisfies(failure -> assertThat(failure.getMessage()).startsWith("分块未提交"));
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void testHeaderMatchedUnderTurkishLocale() throws Exception {
+        Locale defaultLocale = Locale.getDefault();
+        // 土耳其语区域下 "EMAIL".toLowerCase() 是 "emaıl"（无点 i）
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            when(userRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+            UserImportResult result = service.importUsers(new ByteArrayInputStream(
+                    "USERNAME,EMAIL,AGE\nali,ali@example.com,25\n".getBytes(StandardCharsets.UTF_8)),
+                    UserImportService.FORMAT_CSV);
+
+            assertThat(result.getImportedRows()).isEqualTo(1);
+            assertThat(result.getFailedRows()).isZero();
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    private static ByteArrayInputStream csv() {
+        return new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.UserBloomFilters;
+import com.example.demo.cache.UserCache;
+import com.example.demo.cache.UserSearchIndex;
+import com.example.demo.cache.UserStatsSnapshot;
+import com.example.demo.datasource.ShardedUserStore;
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.SQLException;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserServiceTest {
+
+    private final User user = new User(null, "alice", "alice@example.com", null, 25, true, null);
+
+    @Test
+    void testUsernameConstraintMapsToUsernameMessage() {
+        assertThat(UserService.duplicateKeyMessage(user, violation("UK_USERS_USERNAME")))
+                .isEqualTo("用户名已存在: alice");
+    }
+
+    @Test
+    void testEmailConstraintMapsToEmailMessage() {
+        assertThat(UserService.duplicateKeyMessage(user, violation(User.UK_EMAIL)))
+                .isEqualTo("邮箱已存在: alice@example.com");
+    }
+
+    @Test
+    void testConstraintNameFallsBackToDriverMessage() {
+        DataIntegrityViolationException e = new DataIntegrityViolationException("could not execute statement",
+                new SQLException("Unique index or primary key violation: \"PUBLIC.UK_USERS_EMAIL_INDEX_4 ON PUBLIC.USERS(EMAIL)\""));
+        assertThat(UserService.duplicateKeyMessage(user, e)).isEqualTo("邮箱已存在: alice@example.com");
+    }
+
+    @Test
+    void testOtherConstraintIsNotMapped() {
+        assertThat(UserService.duplicateKeyMessage(user, violation("users_pkey"))).isNull();
+    }
+
+    @Test
+    void testValidateFirstRejectsExistingUsername() {
+        UserRepository userRepository = mock(UserRepository.class);
+        UserService service = validateFirstService(userRepository);
+        when(userRepository.existsByUsername("alice")).thenReturn(true);
+
+        assertThatThrownBy(() -> service.createUserWithBusinessValidation(user))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("用户名已存在: alice");
+        verify(userRepository).existsByUsername("alice");
+        verify(userRepository, never()).saveAndFlush(any(User.class));
+    }
+
+    @Test
+    void testValidateFirstMapsConstraintViolationAfterPassedCheck() {
+        UserRepository userRepository = mock(UserRepository.class);
+        UserService service = validateFirstService(userRepository);
+        // 查询时还不存在，写入前另一个请求提交了同名用户
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(violation(User.UK_USERNAME));
+
+        assertThatThrownBy(() -> service.createUserWithBusinessValidation(user))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("用户名已存在: alice");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static UserService validateFirstService(UserRepository userRepository) {
+        UserBloomFilters bloomFilters = mock(UserBloomFilters.class);
+        when(bloomFilters.usernameExists(anyString(), any())).thenAnswer(
+                invocation -> ((Predicate<String>) invocation.getArgument(1)).test(invocation.getArgument(0)));
+        when(bloomFilters.emailExists(anyString(), any())).thenAnswer(
+                invocation -> ((Predicate<String>) invocation.getArgument(1)).test(invocation.getArgument(0)));
+        ObjectProvider<UserWriteBehindQueue> writeBehindQueue = mock(ObjectProvider.class);
+        ObjectProvider<ShardedUserStore> shardedUserStore = mock(ObjectProvider.class);
+
+        UserService service = new UserService(userRepository, new SimpleMeterRegistry(), mock(UserCache.class),
+                bloomFilters, mock(UserStatsSnapshot.class), mock(UserSearchIndex.class),
+                mock(OptimisticLockRetrier.class), mock(PlatformTransactionManager.class),
+                writeBehindQueue, shardedUserStore);
+        ReflectionTestUtils.setField(service, "validateInsertFirst", false);
+        return service;
+    }
+
+    private static DataIntegrityViolationException violation(String constraintName) {
+        SQLException sqlException = new SQLException("duplicate key", "23505");
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement", sqlException, constraintName));
+    }
+}
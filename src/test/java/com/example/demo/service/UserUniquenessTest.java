@@ -0,0 +1,42 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 默认的先写入模式下，唯一约束冲突在 H2 上转换为与先查询校验相同的错误，且用户名优先
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class UserUniquenessTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void testUsernameReportedWhenBothDuplicated() {
+        userService.createUserWithBusinessValidation(user("dup_both", "dup_both@example.com"));
+
+        assertThatThrownBy(() -> userService.createUserWithBusinessValidation(user("dup_both", "dup_both@example.com")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("用户名已存在: dup_both");
+    }
+
+    @Test
+    void testEmailReportedWhenOnlyEmailDuplicated() {
+        userService.createUserWithBusinessValidation(user("dup_email", "dup_email@example.com"));
+
+        assertThatThrownBy(() -> userService.createUserWithBusinessValidation(user("dup_email_2", "dup_email@example.com")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("邮箱已存在: dup_email@example.com");
+    }
+
+    private static User user(String username, String email) {
+        return new User(null, username, email, null, 30, true, null);
+    }
+}
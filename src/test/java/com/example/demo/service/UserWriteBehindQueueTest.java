@@ -0,0 +1,166 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.UserCache;
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserWriteBehindQueueTest {
+
+    private final AtomicLong ids = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private UserRepository userRepository;
+    private UserWriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userRepository = mock(UserRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        queue = new UserWriteBehindQueue(userRepository, mock(UserCache.class), transactionManager,
+                meterRegistry, 100, 50, 5, 2000);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        queue.stop();
+    }
+
+    @Test
+    void testConcurrentSubmissionsShareOneBatch() throws Exception {
+        when(userRepository.saveAll(anyList())).thenAnswer(invocation -> assignIds(invocation.getArgument(0)));
+
+        // 后台线程启动前提交，保证它们落在同一批次中
+        List<CompletableFuture<User>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(queue.submit(user("user" + i)));
+        }
+        queue.start();
+
+        for (CompletableFuture<User> future : futures) {
+            assertThat(future.get(1, TimeUnit.SECONDS).getId()).isNotNull();
+        }
+        verify(userRepository, times(1)).saveAll(anyList());
+        assertThat(meterRegistry.get("users.write.behind.batch.size").summary().max()).isEqualTo(5.0);
+    }
+
+    @Test
+    void testFailedBatchRetriedRowByRow() throws Exception {
+        when(userRepository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("uk_users_username"));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            if ("dup".equals(user.getUsername())) {
+                throw new DataIntegrityViolationException("uk_users_username");
+            }
+            return assignIds(List.of(user)).get(0);
+        });
+
+        CompletableFuture<User> first = queue.submit(user("alice"));
+        CompletableFuture<User> duplicate = queue.submit(user("dup"));
+        CompletableFuture<User> last = queue.submit(user("bob"));
+        queue.start();
+
+        assertThat(first.get(1, TimeUnit.SECONDS).getId()).isNotNull();
+        assertThat(last.get(1, TimeUnit.SECONDS).getId()).isNotNull();
+        assertThatThrownBy(() -> duplicate.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(DataIntegrityViolationException.class);
+        assertThat(meterRegistry.get("users.write.behind.individual.retries").counter().count()).isEqualTo(3.0);
+    }
+
+    @Test
+    void testSubmissionsFailOnceFlusherIsDead() throws Exception {
+        queue.start();
+        Thread flusher = (Thread) ReflectionTestUtils.getField(queue, "flusher");
+        flusher.interrupt();
+        flusher.join(1000);
+        assertThat(flusher.isAlive()).isFalse();
+
+        assertThatThrownBy(() -> queue.submit(user("late")).get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+        verify(userRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void testSubmissionsRejectedAfterStop() throws Exception {
+        queue.start();
+        queue.stop();
+
+        assertThatThrownBy(() -> queue.submit(user("late")).get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    void testTimedOutSubmissionIsNotWritten() throws Exception {
+        queue = new UserWriteBehindQueue(userRepository, mock(UserCache.class), mock(PlatformTransactionManager.class),
+                meterRegistry, 100, 50, 5, 20);
+        CompletableFuture<User> future = queue.submit(user("slow"));
+
+        assertThatThrownBy(() -> future.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        queue.start();
+        queue.stop();
+        verify(userRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void testClaimedSubmissionWaitsForCommitInsteadOfTimingOut() throws Exception {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        queue = new UserWriteBehindQueue(userRepository, mock(UserCache.class), transactionManager,
+                meterRegistry, 100, 50, 5, 20);
+        CountDownLatch flushing = new CountDownLatch(1);
+        when(userRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            flushing.countDown();
+            // 写入耗时超过等待上限
+            Thread.sleep(200);
+            return assignIds(invocation.getArgument(0));
+        });
+
+        queue.start();
+        CompletableFuture<User> future = queue.submit(user("slow-commit"));
+
+        assertThat(flushing.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(future.get(1, TimeUnit.SECONDS).getId()).isNotNull();
+    }
+
+    private List<User> assignIds(List<User> users) {
+        users.forEach(user -> user.setId(ids.incrementAndGet()));
+        return users;
+    }
+
+    private static User user(String username) {
+        return new User(null, username, username + "@example.com", null, 30, true, null);
+    }
+}
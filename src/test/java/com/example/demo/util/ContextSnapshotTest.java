@@ -0,0 +1,141 @@
+package com.example.demo.util;
+
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import com.example.demo.jdbc.QueryBudget;
+import io.sentry.IScopes;
+import io.sentry.ISentryLifecycleToken;
+import io.sentry.Sentry;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextSnapshotTest {
+
+    @Test
+    void testContextPropagatedAndClearedOnPooledThread() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        QueryBudget budget = new QueryBudget("GET /api/async-trace/test-executor", 10, 10, violation -> { });
+        try {
+            TraceContext.setTraceId("trace-1");
+            MDC.put("request", "r-1");
+            QueryBudget.bind(budget);
+
+            String seen = executor.submit(ContextSnapshot.wrap(() -> TraceContext.getCurrentTraceId()
+                    + "/" + MDC.get("request") + "/" + (QueryBudget.current() == budget))).get();
+            assertThat(seen).isEqualTo("trace-1/r-1/true");
+
+            // 同一个线程上的下一个任务看不到上一个任务的上下文
+            String leaked = executor.submit(() -> TraceContext.peekTraceId()
+                    + "/" + MDC.get("request") + "/" + QueryBudget.current()).get();
+            assertThat(leaked).isEqualTo("null/null/null");
+        } finally {
+            TraceContext.clear();
+            MDC.clear();
+            QueryBudget.unbind();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testTaskOnCapturingThreadKeepsContext() {
+        TraceContext.setTraceId("trace-2");
+        MDC.put("request", "r-2");
+        try {
+            Map<String, String> mdc = ((LogbackMDCAdapter) MDC.getMDCAdapter()).getPropertyMap();
+            ContextSnapshot.wrap(() -> { }).run();
+            assertThat(TraceContext.peekTraceId()).isEqualTo("trace-2");
+            assertThat(MDC.get("request")).isEqualTo("r-2");
+            // MDC 没有变化，执行前后都没有复制
+            assertThat(((LogbackMDCAdapter) MDC.getMDCAdapter()).getPropertyMap()).isSameAs(mdc);
+        } finally {
+            TraceContext.clear();
+            MDC.clear();
+        }
+    }
+
+    @Test
+    void testChainedAsyncStagesOnSingleThreadPool() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Executor executor = ContextSnapshot.wrap(pool);
+        CountDownLatch dependentRegistered = new CountDownLatch(1);
+        QueryBudget budget = new QueryBudget("GET /api/async-trace/test", 10, 10, violation -> { });
+        try {
+            TraceContext.setTraceId("trace-3");
+            MDC.put("request", "r-3");
+            QueryBudget.bind(budget);
+
+            // 第一阶段等到第二阶段注册后才完成，第二阶段因此由池线程在第一阶段的任务内提交到同一个池
+            CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> {
+                await(dependentRegistered);
+                return Thread.currentThread().getName();
+            }, executor);
+            CompletableFuture<String> second = first.thenApplyAsync(firstThread -> {
+                assertThat(Thread.currentThread().getName()).isEqualTo(firstThread);
+                return TraceContext.peekTraceId() + "/" + MDC.get("request") + "/" + (QueryBudget.current() == budget);
+            }, executor);
+            dependentRegistered.countDown();
+
+            assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("trace-3/r-3/true");
+            assertThat(pool.submit(() -> TraceContext.peekTraceId() + "/" + MDC.get("request")).get())
+                    .isEqualTo("null/null");
+        } finally {
+            TraceContext.clear();
+            MDC.clear();
+            QueryBudget.unbind();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testSentryScopesForkedOnPooledThread() throws Exception {
+        Sentry.init(options -> {
+            options.setDsn("https://key@localhost/0");
+            options.setSendClientReports(false);
+            options.setEnableUncaughtExceptionHandler(false);
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        // 与 Sentry 的 Servlet 过滤器一样为请求 fork Scopes，标签不写入池线程会继承的根 Scopes
+        try (ISentryLifecycleToken ignored = Sentry.forkedScopes("test").makeCurrent()) {
+            Sentry.setTag("request", "r-4");
+
+            Map<String, String> seen = executor.submit(ContextSnapshot.wrap(() -> {
+                Sentry.setTag("task", "t-4");
+                return tags(Sentry.getCurrentScopes());
+            })).get();
+            assertThat(seen).containsEntry("request", "r-4").containsEntry("task", "t-4");
+
+            // 任务中的修改不影响提交线程，也不留在池线程上
+            assertThat(tags(Sentry.getCurrentScopes())).doesNotContainKey("task");
+            assertThat(executor.submit(() -> tags(Sentry.getCurrentScopes())).get())
+                    .doesNotContainKeys("request", "task");
+        } finally {
+            executor.shutdown();
+            Sentry.close();
+        }
+    }
+
+    private static Map<String, String> tags(IScopes scopes) {
+        Map<String, String> tags = new HashMap<>(scopes.getIsolationScope().getTags());
+        tags.putAll(scopes.getScope().getTags());
+        return tags;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
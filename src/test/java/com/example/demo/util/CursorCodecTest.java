@@ -0,0 +1,48 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CursorCodecTest {
+
+    @Test
+    void testRoundTrip() {
+        for (long id : new long[]{1L, 42L, Long.MAX_VALUE}) {
+            String cursor = CursorCodec.encode(id);
+            assertThat(cursor).doesNotContain("=", "+", "/");
+            assertThat(CursorCodec.decode(cursor)).isEqualTo(id);
+        }
+    }
+
+    @Test
+    void testEmptyCursorStartsFromBeginning() {
+        assertThat(CursorCodec.encode(null)).isNull();
+        assertThat(CursorCodec.decode(null)).isZero();
+        assertThat(CursorCodec.decode("")).isZero();
+    }
+
+    @Test
+    void testMalformedCursorIsRejected() {
+        assertThatThrownBy(() -> CursorCodec.decode("not base64!"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("无效的分页游标: not base64!");
+    }
+
+    @Test
+    void testTamperedCursorIsRejected() {
+        String wrongPrefix = encodeRaw("ID:42");
+        String notANumber = encodeRaw("id:42 OR 1=1");
+
+        assertThatThrownBy(() -> CursorCodec.decode(wrongPrefix)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CursorCodec.decode(notANumber)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}